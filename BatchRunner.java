@@ -0,0 +1,222 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * The BatchRunner class runs every replicate of an experiment inside one JVM and
+ * writes the mean final muscle mass per value of the varied parameter, like the scripts
+ * in first-experiment/scripts did with one JVM, one CSV file and one bc call per run.
+ * Runs are independent, so they are simulated in parallel; each draws from its own
+ * stream of the experiment seed, so the results do not depend on the number of threads.
+ * An experiment with a training plan compiles it once, and every run shares the
+ * schedule.
+ */
+public class BatchRunner {
+    private final ExperimentSpec spec; // The experiment to run
+    private final long seed; // The seed of the whole experiment
+    private final TrainingSchedule schedule; // The plan every run follows, or null
+
+    /**
+     * Constructs a new BatchRunner.
+     * @param spec The experiment to run.
+     * @param seed The seed of the whole experiment.
+     * @throws IOException If the plan of the experiment cannot be read.
+     */
+    public BatchRunner(ExperimentSpec spec, long seed) throws IOException {
+        this.spec = spec;
+        this.seed = seed;
+        this.schedule = spec.getPlan() == null ? null
+                : TrainingPlan.load(spec.getPlan()).compile(spec.getDays());
+    }
+
+    /**
+     * Runs every replicate of the experiment.
+     * @return The final muscle mass of every run, replicates of a value next to each other.
+     */
+    public double[] run() {
+        List<String> values = spec.getValues();
+        int replicates = spec.getReplicates();
+        double[] finalMass = new double[values.size() * replicates];
+        IntStream.range(0, finalMass.length).parallel().forEach(run ->
+                finalMass[run] = runOne(values.get(run / replicates), run % replicates, run));
+        return finalMass;
+    }
+
+    /**
+     * Runs one replicate and returns its muscle mass on the final day. Without
+     * trajectories, a replicate already simulated from the same random state is read
+     * from the ResultCache, when one is enabled.
+     * @param value The value of the varied parameter.
+     * @param replicate The number of the replicate.
+     * @param stream The stream of the experiment seed used by the run.
+     * @return The final muscle mass.
+     */
+    private double runOne(String value, int replicate, int stream) {
+        int intensity = Integer.parseInt(spec.parameterValue("intensity", value));
+        boolean lift = Boolean.parseBoolean(spec.parameterValue("lift", value));
+        double hoursOfSleep = Double.parseDouble(spec.parameterValue("hoursOfSleep", value));
+        int daysBetweenWorkouts = Integer.parseInt(
+                spec.parameterValue("daysBetweenWorkouts", value));
+        int slowTwitchPercentage = Integer.parseInt(
+                spec.parameterValue("slowTwitchPercentage", value));
+        int days = spec.getDays();
+
+        SimulationRandom random = SimulationRandom.forStream(seed, stream);
+        if (spec.getTrajectories() == null) {
+            // Reuse the final muscle mass of an earlier run from the same random state
+            ResultCache cache = ResultCache.shared();
+            String key = null;
+            if (cache != null && schedule != null) {
+                key = ResultCache.key("planned", schedule.fingerprint(), slowTwitchPercentage,
+                        days, spec.getGridSize(), 1, random.fingerprint());
+            } else if (cache != null) {
+                key = ResultCache.key("simulation", intensity, lift, hoursOfSleep,
+                        daysBetweenWorkouts, slowTwitchPercentage, days, spec.getGridSize(), 1,
+                        random.fingerprint());
+            }
+            if (cache != null) {
+                double[] values = cache.get(key);
+                if (values != null) {
+                    return values[0];
+                }
+            }
+
+            // Only the final day is read, so the metric sums are skipped before it
+            Simulation simulation = newSimulation(intensity, lift, hoursOfSleep,
+                    daysBetweenWorkouts, slowTwitchPercentage, random);
+            for (int i = 1; i <= days; i++) {
+                simulation.getGrid().setTrackMetrics(i == days);
+                simulation.step(i);
+            }
+            if (cache != null) {
+                cache.put(key, new double[] {
+                        simulation.muscleMass(),
+                        simulation.averageAnabolicHormone(),
+                        simulation.averageCatabolicHormone()
+                });
+            }
+            return simulation.muscleMass();
+        }
+
+        Simulation simulation = newSimulation(intensity, lift, hoursOfSleep,
+                daysBetweenWorkouts, slowTwitchPercentage, random);
+
+        String filename = schedule != null
+                ? String.format("%s/%s_%d_%d_%d", spec.getDataDirectory(), schedule.getName(),
+                        slowTwitchPercentage, days, replicate + 1)
+                : String.format("%s/%d_%s_%s_%d_%d_%d_%d", spec.getDataDirectory(),
+                        intensity, lift ? "true" : "false",
+                        String.valueOf(hoursOfSleep).replace('.', 'n'), daysBetweenWorkouts,
+                        slowTwitchPercentage, days, replicate + 1);
+        try (ResultWriter writer = ResultWriter.open(spec.getTrajectories(), filename,
+                Simulation.RESULT_COLUMNS, days + 1)) {
+            Simulation.writeRow(writer, 0, simulation);
+            for (int i = 1; i <= days; i++) {
+                simulation.step(i);
+                Simulation.writeRow(writer, i, simulation);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return simulation.muscleMass();
+    }
+
+    /**
+     * Returns a new simulation of one run: the base model, or one following the plan of
+     * the experiment, which ignores the other parameters.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param random The random number generator of the run.
+     * @return The simulation.
+     */
+    private Simulation newSimulation(int intensity, boolean lift, double hoursOfSleep,
+                                     int daysBetweenWorkouts, int slowTwitchPercentage,
+                                     SimulationRandom random) {
+        if (schedule != null) {
+            return new PlannedSimulation(schedule, slowTwitchPercentage, spec.getGridSize(), 1,
+                    random);
+        }
+        return new Simulation(intensity, lift, hoursOfSleep, daysBetweenWorkouts,
+                slowTwitchPercentage, spec.getGridSize(), 1, random);
+    }
+
+    /**
+     * Returns the mean of the replicates of one value as the scripts computed it: each
+     * final muscle mass rounded to the two decimals of the CSV file, summed, and divided
+     * with the quotient truncated to two decimals like {@code bc} with scale 2.
+     * @param finalMass The final muscle mass of every run.
+     * @param from The index of the first replicate.
+     * @param replicates The number of replicates.
+     * @return The mean muscle mass.
+     */
+    static BigDecimal meanAsReported(double[] finalMass, int from, int replicates) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int r = from; r < from + replicates; r++) {
+            total = total.add(new BigDecimal(String.format(Locale.ROOT, "%.2f", finalMass[r])));
+        }
+        return total.divide(BigDecimal.valueOf(replicates), 2, RoundingMode.DOWN);
+    }
+
+    /**
+     * Writes the mean final muscle mass of every value to the results file.
+     * @param finalMass The final muscle mass of every run, as returned by run.
+     * @return The name of the results file.
+     * @throws IOException If the file cannot be written.
+     */
+    public String writeResults(double[] finalMass) throws IOException {
+        String filename = spec.getResultsDirectory() + "/" + spec.getName() + "_results.csv";
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.print(spec.getLabel() + ",Mean Muscle Mass\n");
+            List<String> values = spec.getValues();
+            int replicates = spec.getReplicates();
+            for (int v = 0; v < values.size(); v++) {
+                writer.print(values.get(v) + ","
+                        + meanAsReported(finalMass, v * replicates, replicates).toPlainString()
+                        + "\n");
+            }
+        }
+        return filename;
+    }
+
+    /**
+     * The main method for the BatchRunner class.
+     * It runs the experiment described by the spec file named by the first argument and
+     * writes its results. An optional second argument seeds the experiment.
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java BatchRunner <experiment.properties> [seed]");
+            return;
+        }
+
+        try {
+            ExperimentSpec spec = ExperimentSpec.load(args[0]);
+            long seed = args.length > 1 ? Long.parseLong(args[1]) : SimulationRandom.newSeed();
+
+            new File(spec.getResultsDirectory()).mkdirs();
+            if (spec.getTrajectories() != null) {
+                new File(spec.getDataDirectory()).mkdirs();
+            }
+
+            long start = System.nanoTime();
+            BatchRunner runner = new BatchRunner(spec, seed);
+            String filename = runner.writeResults(runner.run());
+            System.out.printf(Locale.ROOT, "%s: %d runs with seed %d in %.2f s. "
+                            + "Results are stored in %s%n", spec.getName(),
+                    spec.getValues().size() * spec.getReplicates(), seed,
+                    (System.nanoTime() - start) / 1e9, filename);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The BinaryResultReader class reads a result written by BinaryResultWriter.
+ * The file is memory-mapped, so opening it does not parse or copy the columns and
+ * the value of any column on any day is read directly from the page cache.
+ */
+public class BinaryResultReader implements AutoCloseable {
+    private final FileChannel channel; // The open result file
+    private final MappedByteBuffer data; // The mapped contents of the file
+    private final String[] columnNames; // The names of the columns
+    private final long capacity; // The number of rows reserved per column
+    private final long rowCount; // The number of rows written
+    private final int headerSize; // The offset of the first column
+
+    /**
+     * Constructs a new BinaryResultReader and maps the given file.
+     * @param filename The name of the file.
+     * @throws IOException If the file cannot be read or is not a binary result.
+     */
+    public BinaryResultReader(String filename) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Result file is too large to map: " + filename);
+            }
+            if (size < BinaryResultWriter.FIXED_HEADER_SIZE) {
+                throw new IOException("Not a binary result file: " + filename);
+            }
+            this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            data.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (data.getInt(0) != BinaryResultWriter.MAGIC) {
+                throw new IOException("Not a binary result file: " + filename);
+            }
+            if (data.getInt(4) != BinaryResultWriter.VERSION) {
+                throw new IOException("Unsupported binary result version " + data.getInt(4)
+                        + ": " + filename);
+            }
+            int columnCount = data.getInt(8);
+            this.headerSize = data.getInt(12);
+            this.capacity = data.getLong(16);
+            this.rowCount = data.getLong(24);
+            if (columnCount < 1 || rowCount < 0 || rowCount > capacity
+                    || headerSize + columnCount * capacity * Double.BYTES > size) {
+                throw new IOException("Corrupt binary result file: " + filename);
+            }
+
+            this.columnNames = new String[columnCount];
+            int position = BinaryResultWriter.FIXED_HEADER_SIZE;
+            for (int c = 0; c < columnCount; c++) {
+                byte[] name = new byte[data.getShort(position)];
+                for (int b = 0; b < name.length; b++) {
+                    name[b] = data.get(position + Short.BYTES + b);
+                }
+                columnNames[c] = new String(name, StandardCharsets.UTF_8);
+                position += Short.BYTES + name.length;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of columns, including the day.
+     * @return The number of columns.
+     */
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    /**
+     * Returns the name of a column.
+     * @param column The index of the column.
+     * @return The name of the column.
+     */
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    /**
+     * Returns the names of all columns.
+     * @return A copy of the column names.
+     */
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    /**
+     * Returns the index of the column with the given name.
+     * @param name The name of the column.
+     * @return The index of the column, or -1 if there is no such column.
+     */
+    public int columnIndex(String name) {
+        for (int c = 0; c < columnNames.length; c++) {
+            if (columnNames[c].equals(name)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of rows in the result.
+     * @return The number of rows.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of rows reserved per column when the file was written.
+     * @return The capacity of the file.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the value of a column on a row.
+     * @param column The index of the column.
+     * @param row The index of the row.
+     * @return The value.
+     */
+    public double get(int column, long row) {
+        if (column < 0 || column >= columnNames.length) {
+            throw new IndexOutOfBoundsException("Column " + column + " of " + columnNames.length);
+        }
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount);
+        }
+        return data.getDouble((int) (headerSize + (column * capacity + row) * Double.BYTES));
+    }
+
+    /**
+     * Returns the day of a row, stored in the first column.
+     * @param row The index of the row.
+     * @return The day.
+     */
+    public long getDay(long row) {
+        return (long) get(0, row);
+    }
+
+    /**
+     * Closes the file. The mapping is released once the reader is unreachable.
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
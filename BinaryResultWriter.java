@@ -0,0 +1,252 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The BinaryResultWriter class writes a simulation result as little-endian double
+ * columns, a compact alternative to CSV that BinaryResultReader can memory-map.
+ *
+ * The file starts with a header:
+ * <pre>
+ *  0  int    magic "MSRB"
+ *  4  int    format version
+ *  8  int    number of columns
+ * 12  int    size of the header in bytes, a multiple of 8
+ * 16  long   rows reserved per column
+ * 24  long   rows written
+ * 32  names  per column a short length and the UTF-8 bytes of its name
+ * </pre>
+ * followed by one block of doubles per column, each holding the reserved number of
+ * rows, so the value of any column on any row is at a fixed offset. The number of
+ * rows must be known when the file is opened; unused rows are left as zeros.
+ *
+ * Rows are collected in a small buffer per column and written through a FileChannel
+ * in one contiguous block per column, so memory use does not depend on the number
+ * of rows.
+ */
+public class BinaryResultWriter implements ResultWriter {
+    static final String EXTENSION = ".bin"; // The extension of binary result files
+    static final int MAGIC = 'M' | 'S' << 8 | 'R' << 16 | 'B' << 24; // The file signature
+    static final int VERSION = 1; // The version of the format
+    static final int FIXED_HEADER_SIZE = 32; // The bytes before the column names
+    private static final int CHUNK_ROWS = 4096; // The rows buffered per column
+
+    private final FileChannel channel; // The file receiving the columns
+    private final ByteBuffer header; // The encoded header, rewritten on close
+    private final ByteBuffer[] columns; // The buffered rows of each column
+    private final long capacity; // The number of rows reserved per column
+    private final int headerSize; // The offset of the first column
+    private long rowCount; // The number of rows written so far
+    private long chunkStart; // The first row held in the column buffers
+    private int column; // The column receiving the next value
+
+    /**
+     * Constructs a new BinaryResultWriter and writes the header.
+     * @param filename The name of the file.
+     * @param columnNames The names of the columns, starting with the day.
+     * @param capacity The number of rows that will be written.
+     * @throws IOException If the file cannot be opened or written.
+     */
+    public BinaryResultWriter(String filename, String[] columnNames, long capacity)
+            throws IOException {
+        this(filename, columnNames, capacity, 0);
+    }
+
+    /**
+     * Constructs a new BinaryResultWriter continuing after the first rows of a file
+     * with the same columns and capacity, which are kept; the header is rewritten.
+     * With no kept rows the file is truncated and started anew.
+     * @param filename The name of the file.
+     * @param columnNames The names of the columns, starting with the day.
+     * @param capacity The number of rows reserved per column.
+     * @param keptRows The number of rows of the file that are kept.
+     * @throws IOException If the file cannot be opened or written.
+     */
+    private BinaryResultWriter(String filename, String[] columnNames, long capacity,
+                               long keptRows) throws IOException {
+        if (columnNames.length == 0) {
+            throw new IllegalArgumentException("A result needs at least one column");
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative number of rows: " + capacity);
+        }
+        this.capacity = capacity;
+
+        // Encode the header once; only the number of rows changes afterwards
+        byte[][] names = new byte[columnNames.length][];
+        int size = FIXED_HEADER_SIZE;
+        for (int c = 0; c < columnNames.length; c++) {
+            names[c] = columnNames[c].getBytes(StandardCharsets.UTF_8);
+            size += Short.BYTES + names[c].length;
+        }
+        this.headerSize = (size + 7) & ~7;
+        this.header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(columnNames.length).putInt(headerSize)
+                .putLong(capacity).putLong(0);
+        for (byte[] name : names) {
+            header.putShort((short) name.length).put(name);
+        }
+
+        this.columns = new ByteBuffer[columnNames.length];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = ByteBuffer.allocate(CHUNK_ROWS * Double.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        this.rowCount = keptRows;
+        this.chunkStart = keptRows;
+        this.channel = keptRows == 0
+                ? FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE);
+        writeHeader();
+    }
+
+    /**
+     * Returns a writer continuing a binary result after a day: the rows of the file up
+     * to the day are kept and the rows after it are dropped. When the file has room
+     * for the new rows it is continued in place; otherwise the kept rows are copied
+     * into a new file reserving room for all of them. A missing file is started anew.
+     * @param filename The name of the file.
+     * @param columnNames The names of the columns, starting with the day.
+     * @param afterDay The last day whose row is kept.
+     * @param rows The number of rows that will be written after the kept ones.
+     * @return The writer.
+     * @throws IOException If the file cannot be read or written, or has other columns.
+     */
+    static BinaryResultWriter resume(String filename, String[] columnNames, long afterDay,
+                                     long rows) throws IOException {
+        if (!new File(filename).exists()) {
+            return new BinaryResultWriter(filename, columnNames, rows);
+        }
+        long kept = 0;
+        long capacity;
+        double[][] values = null;
+        try (BinaryResultReader reader = new BinaryResultReader(filename)) {
+            if (!Arrays.equals(reader.getColumnNames(), columnNames)) {
+                throw new IOException("The result file has other columns: " + filename);
+            }
+            while (kept < reader.getRowCount() && reader.getDay(kept) <= afterDay) {
+                kept++;
+            }
+            capacity = reader.getCapacity();
+            if (kept + rows > capacity) {
+                // The columns have to move apart, so the kept rows are copied
+                values = new double[columnNames.length][(int) kept];
+                for (int c = 0; c < columnNames.length; c++) {
+                    for (int r = 0; r < kept; r++) {
+                        values[c][r] = reader.get(c, r);
+                    }
+                }
+            }
+        }
+        if (values == null) {
+            return new BinaryResultWriter(filename, columnNames, capacity, kept);
+        }
+        BinaryResultWriter writer = new BinaryResultWriter(filename, columnNames, kept + rows);
+        for (int r = 0; r < kept; r++) {
+            writer.startRow((long) values[0][r]);
+            for (int c = 1; c < columnNames.length; c++) {
+                writer.addValue(values[c][r]);
+            }
+            writer.endRow();
+        }
+        return writer;
+    }
+
+    /**
+     * Starts a new row with the day in its first column.
+     * @param day The day of the row.
+     */
+    @Override
+    public void startRow(long day) {
+        if (rowCount >= capacity) {
+            throw new IllegalStateException("All " + capacity + " rows are already written");
+        }
+        columns[0].putDouble(day);
+        column = 1;
+    }
+
+    /**
+     * Adds a column to the current row.
+     * @param value The value of the column.
+     */
+    @Override
+    public void addValue(double value) {
+        if (column >= columns.length) {
+            throw new IllegalStateException("The row has only " + columns.length + " columns");
+        }
+        columns[column++].putDouble(value);
+    }
+
+    /**
+     * Ends the current row and writes the columns out when their buffers are full.
+     * @throws IOException If the columns cannot be written.
+     */
+    @Override
+    public void endRow() throws IOException {
+        if (column != columns.length) {
+            throw new IllegalStateException("The row has " + column + " of "
+                    + columns.length + " columns");
+        }
+        column = 0;
+        rowCount++;
+        if (rowCount - chunkStart == CHUNK_ROWS) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered rows of every column at their place in the file.
+     * @throws IOException If the columns cannot be written.
+     */
+    private void flush() throws IOException {
+        for (int c = 0; c < columns.length; c++) {
+            ByteBuffer buffer = columns[c];
+            buffer.flip();
+            long position = headerSize + (c * capacity + chunkStart) * Double.BYTES;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+        chunkStart = rowCount;
+    }
+
+    /**
+     * Writes the header with the current number of rows at the start of the file.
+     * @throws IOException If the header cannot be written.
+     */
+    private void writeHeader() throws IOException {
+        header.putLong(24, rowCount);
+        header.rewind();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    /**
+     * Writes the remaining rows and the final header, extends the file to its full
+     * size and closes it.
+     * @throws IOException If the file cannot be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            writeHeader();
+            long size = headerSize + columns.length * capacity * Double.BYTES;
+            if (channel.size() < size) {
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
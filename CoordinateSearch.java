@@ -0,0 +1,256 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The CoordinateSearch class is a multi-start noisy coordinate search over the grid of
+ * parameter combinations: intensity, hours of sleep, days between workouts and lift.
+ *
+ * A start evaluates a batch of random combinations and moves to the best one. The
+ * search then samples the points a few steps away on both sides of the incumbent, along
+ * as many consecutive dimensions as fill a batch, and moves to the best of them if it
+ * beats the incumbent; otherwise the steps of the sampled dimensions are halved. Once
+ * every dimension has failed at a step of one the incumbent is a local optimum and the
+ * search restarts elsewhere.
+ * Every combination is simulated at most once, so a noisy lucky result cannot be
+ * re-drawn into an even luckier one, and the search ends when every combination has
+ * been simulated.
+ */
+public class CoordinateSearch implements Optimizer {
+    private static final int DIMENSIONS = 4; // Intensity, sleep, workouts and lift
+    private static final int LINE_POINTS = 2; // The least points sampled on a side of a line
+    private static final int[] SIZES = {
+            ParameterCombo.INTENSITY_STEPS, ParameterCombo.SLEEP_STEPS,
+            ParameterCombo.WORKOUT_STEPS, ParameterCombo.LIFT_STEPS
+    }; // The number of steps in every dimension
+
+    private final SimulationRandom random; // Chooses the starting points
+    private final Map<Integer, Double> results; // The muscle mass of every simulated point
+    private final int[] step; // The current step of every dimension
+    private int[] incumbent; // The coordinates of the best point of this start, or null
+    private double incumbentValue; // The muscle mass of the incumbent
+    private int dimension; // The dimension sampled next
+    private int failures; // The dimensions in a row that failed at a step of one
+    private int[] pending; // The points of the last batch, or null
+    private int pendingLines; // The dimensions sampled by the last batch, from dimension
+    private boolean pendingStart; // Whether the last batch chose a starting point
+
+    /**
+     * Constructs a new CoordinateSearch.
+     * @param random The random number generator choosing the starting points.
+     */
+    public CoordinateSearch(SimulationRandom random) {
+        this.random = random;
+        this.results = new HashMap<>();
+        this.step = new int[DIMENSIONS];
+    }
+
+    /**
+     * Returns the next combinations to simulate.
+     * @param maxBatch The largest number of combinations the batch may hold.
+     * @return The indices of the combinations, or an empty array when the search is over.
+     */
+    @Override
+    public int[] propose(int maxBatch) {
+        if (pending != null) {
+            absorb();
+        }
+        if (maxBatch < 1 || results.size() == ParameterCombo.COUNT) {
+            return new int[0];
+        }
+
+        if (incumbent == null) {
+            pending = randomPoints(maxBatch);
+            pendingStart = true;
+            return pending;
+        }
+
+        // Sample the lines that still have unvisited points, from the current dimension
+        for (int tries = 0; tries < DIMENSIONS * 8; tries++) {
+            int[] lines = linePoints(maxBatch);
+            if (lines.length > 0) {
+                pending = lines;
+                pendingStart = false;
+                return pending;
+            }
+            fail();
+            if (incumbent == null) {
+                return propose(maxBatch);
+            }
+        }
+        restart();
+        return propose(maxBatch);
+    }
+
+    /**
+     * Records the result of a proposed combination.
+     * @param index The index of the combination.
+     * @param data The result of simulating it.
+     */
+    @Override
+    public void report(int index, Data data) {
+        results.put(index, data.getMuscleMass());
+    }
+
+    /**
+     * Moves the search according to the results of the last batch.
+     */
+    private void absorb() {
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int index : pending) {
+            Double value = results.get(index);
+            if (value != null && value > bestValue) {
+                best = index;
+                bestValue = value;
+            }
+        }
+        pending = null;
+
+        if (pendingStart) {
+            if (best >= 0) {
+                incumbent = coordinates(best);
+                incumbentValue = bestValue;
+                for (int d = 0; d < DIMENSIONS; d++) {
+                    step[d] = Math.max(1, SIZES[d] / 4);
+                }
+                dimension = 0;
+                failures = 0;
+            }
+            return;
+        }
+
+        if (best >= 0 && bestValue > incumbentValue) {
+            incumbent = coordinates(best);
+            incumbentValue = bestValue;
+            failures = 0;
+            dimension = (dimension + 1) % DIMENSIONS;
+        } else {
+            fail();
+        }
+    }
+
+    /**
+     * Records that the sampled dimensions gave no improvement: their steps are halved,
+     * and the leading ones already at a step of one are passed over so the next batch
+     * starts at a dimension that can still be refined. The search restarts once every
+     * dimension has failed at a step of one.
+     */
+    private void fail() {
+        int first = dimension;
+        boolean halved = false;
+        for (int l = 0; l < pendingLines; l++) {
+            int d = (first + l) % DIMENSIONS;
+            if (step[d] > 1) {
+                step[d] /= 2;
+                halved = true;
+            } else if (!halved) {
+                failures++;
+                dimension = (d + 1) % DIMENSIONS;
+            }
+        }
+        if (failures >= DIMENSIONS) {
+            restart();
+        }
+    }
+
+    /**
+     * Abandons the current local optimum so the next batch chooses a new start.
+     */
+    private void restart() {
+        incumbent = null;
+        failures = 0;
+    }
+
+    /**
+     * Returns unvisited points on the lines through the incumbent, nearest first on
+     * alternating sides, along the current dimension and then the next ones until the
+     * batch is full. A large batch also reaches further along every line, so the whole
+     * pool is kept busy; the number of dimensions sampled is kept in pendingLines.
+     * @param maxBatch The largest number of points to return.
+     * @return The indices of the points.
+     */
+    private int[] linePoints(int maxBatch) {
+        int reach = Math.max(LINE_POINTS, maxBatch / (2 * DIMENSIONS));
+        int[] points = new int[maxBatch];
+        int count = 0;
+        pendingLines = 0;
+        while (pendingLines < DIMENSIONS && count < maxBatch) {
+            int d = (dimension + pendingLines) % DIMENSIONS;
+            pendingLines++;
+            for (int k = 1; k <= reach && count < maxBatch; k++) {
+                for (int sign = -1; sign <= 1 && count < maxBatch; sign += 2) {
+                    int[] point = incumbent.clone();
+                    point[d] += sign * k * step[d];
+                    if (point[d] < 0 || point[d] >= SIZES[d]) {
+                        continue;
+                    }
+                    int index = index(point);
+                    if (!results.containsKey(index) && !contains(points, count, index)) {
+                        points[count++] = index;
+                    }
+                }
+            }
+        }
+        int[] lines = new int[count];
+        System.arraycopy(points, 0, lines, 0, count);
+        return lines;
+    }
+
+    /**
+     * Returns distinct unvisited points chosen at random.
+     * @param maxBatch The largest number of points to return.
+     * @return The indices of the points.
+     */
+    private int[] randomPoints(int maxBatch) {
+        int[] points = new int[Math.min(maxBatch, ParameterCombo.COUNT - results.size())];
+        int count = 0;
+        while (count < points.length) {
+            int index = (int) (random.nextDouble() * ParameterCombo.COUNT);
+            if (!results.containsKey(index) && !contains(points, count, index)) {
+                points[count++] = index;
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Returns whether the first entries of an array hold a value.
+     * @param values The array.
+     * @param count The number of entries to search.
+     * @param value The value to find.
+     * @return Whether the value is among the first entries.
+     */
+    private static boolean contains(int[] values, int count, int value) {
+        for (int k = 0; k < count; k++) {
+            if (values[k] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the coordinates of a combination in steps of every dimension.
+     * @param index The index of the combination.
+     * @return The intensity, sleep, workout and lift steps.
+     */
+    private static int[] coordinates(int index) {
+        int[] point = new int[DIMENSIONS];
+        point[3] = index % ParameterCombo.LIFT_STEPS;
+        index /= ParameterCombo.LIFT_STEPS;
+        point[2] = index % ParameterCombo.WORKOUT_STEPS;
+        index /= ParameterCombo.WORKOUT_STEPS;
+        point[1] = index % ParameterCombo.SLEEP_STEPS;
+        point[0] = index / ParameterCombo.SLEEP_STEPS;
+        return point;
+    }
+
+    /**
+     * Returns the index of the combination at the given coordinates.
+     * @param point The intensity, sleep, workout and lift steps.
+     * @return The index of the combination.
+     */
+    private static int index(int[] point) {
+        return ParameterCombo.toIndex(point[0], point[1], point[2], point[3]);
+    }
+}
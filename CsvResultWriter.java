@@ -0,0 +1,248 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * The CsvResultWriter class streams the rows of a simulation result to a CSV file
+ * as they are produced, so memory use does not depend on the number of days.
+ * Rows are encoded straight into a reusable byte buffer by a fixed-precision number
+ * formatter instead of PrintWriter.printf, which parses its format string and boxes
+ * its arguments on every row. Numbers are rounded like {@code %.Nf}: half up on the
+ * shortest decimal representation of the double, with a '.' decimal separator.
+ *
+ * A row is written with startRow, one addValue per column and endRow.
+ */
+public class CsvResultWriter implements ResultWriter {
+    private static final int BUFFER_SIZE = 1 << 16; // The size of the byte buffer
+    private static final int MAX_ROW_SIZE = 1024; // Room kept free for one row
+    private static final double FAST_PATH_LIMIT = 1e9; // Larger scaled values use Formatter
+    private static final double TIE_WINDOW = 1e-6; // Distance from .5 treated as a tie
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L
+    };
+
+    private final OutputStream out; // The stream receiving the encoded rows
+    private final byte[] buffer; // The reusable buffer holding rows not yet written
+    private final byte[] digits; // The scratch space used to print integers
+    private final int decimals; // The number of digits after the decimal point
+    private int position; // The number of bytes used in the buffer
+
+    /**
+     * Constructs a new CsvResultWriter on the given file, printing two decimals, and
+     * writes the header line.
+     * @param filename The name of the CSV file.
+     * @param header The header line, without the line break.
+     * @throws IOException If the file cannot be opened or written.
+     */
+    public CsvResultWriter(String filename, String header) throws IOException {
+        this(new FileOutputStream(filename), header, 2);
+    }
+
+    /**
+     * Returns a writer continuing a CSV result after a day: the rows of the file up to
+     * the day are kept, the rows after it, including a row cut short by a stopped run,
+     * are removed, and new rows are appended. A missing or empty file is started with
+     * the header line.
+     * @param filename The name of the CSV file.
+     * @param header The header line, without the line break.
+     * @param afterDay The last day whose row is kept.
+     * @return The writer.
+     * @throws IOException If the file cannot be read, opened or written.
+     */
+    static CsvResultWriter resume(String filename, String header, long afterDay)
+            throws IOException {
+        File file = new File(filename);
+        if (file.length() == 0) {
+            return new CsvResultWriter(filename, header);
+        }
+        long kept = keptLength(file, afterDay);
+        try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+            truncated.setLength(kept);
+        }
+        return new CsvResultWriter(new FileOutputStream(file, true), kept == 0 ? header : null,
+                2);
+    }
+
+    /**
+     * Returns the length of the header and of the complete rows up to a day at the
+     * start of a CSV result, whose rows are in day order.
+     * @param file The CSV file.
+     * @param afterDay The last day whose row is kept.
+     * @return The number of bytes to keep, or 0 if the file has no complete header.
+     * @throws IOException If the file cannot be read.
+     */
+    private static long keptLength(File file, long afterDay) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            long length = 0;
+            long kept = 0;
+            boolean header = true;
+            long day = 0;
+            boolean inDay = true;
+            for (int b = in.read(); b >= 0; b = in.read()) {
+                length++;
+                if (b == '\n') {
+                    if (!header && day > afterDay) {
+                        break;
+                    }
+                    kept = length;
+                    header = false;
+                    day = 0;
+                    inDay = true;
+                } else if (!header && inDay) {
+                    if (b >= '0' && b <= '9') {
+                        day = day * 10 + b - '0';
+                    } else {
+                        inDay = false;
+                    }
+                }
+            }
+            return kept;
+        }
+    }
+
+    /**
+     * Constructs a new CsvResultWriter on the given stream and writes the header line.
+     * @param out The stream receiving the rows; it is closed with the writer.
+     * @param header The header line, without the line break, or null when the rows
+     *               are appended to a file that already has one.
+     * @param decimals The number of digits after the decimal point, from 0 to 8.
+     * @throws IOException If the header cannot be written.
+     */
+    public CsvResultWriter(OutputStream out, String header, int decimals) throws IOException {
+        if (decimals < 0 || decimals >= POWERS_OF_TEN.length) {
+            throw new IllegalArgumentException("Unsupported number of decimals: " + decimals);
+        }
+        this.out = out;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.digits = new byte[20];
+        this.decimals = decimals;
+        if (header != null) {
+            byte[] headerBytes = (header + "\n").getBytes(StandardCharsets.US_ASCII);
+            out.write(headerBytes);
+        }
+    }
+
+    /**
+     * Starts a new row with the day in its first column.
+     * @param day The day of the row.
+     */
+    @Override
+    public void startRow(long day) {
+        appendLong(day);
+    }
+
+    /**
+     * Adds a column to the current row.
+     * @param value The value of the column.
+     */
+    @Override
+    public void addValue(double value) {
+        buffer[position++] = ',';
+        appendFixed(value);
+    }
+
+    /**
+     * Ends the current row and writes the buffer out when it is nearly full.
+     * @throws IOException If the buffer cannot be written.
+     */
+    @Override
+    public void endRow() throws IOException {
+        buffer[position++] = '\n';
+        if (position > BUFFER_SIZE - MAX_ROW_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered rows to the underlying stream.
+     * @throws IOException If the rows cannot be written.
+     */
+    public void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    /**
+     * Writes the buffered rows and closes the underlying stream.
+     * @throws IOException If the rows cannot be written or the stream cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Appends a double with the configured number of decimals.
+     * @param value The value to append.
+     */
+    private void appendFixed(double value) {
+        double magnitude = Math.abs(value);
+        double scaled = magnitude * POWERS_OF_TEN[decimals];
+        double whole = Math.floor(scaled);
+        double fraction = scaled - whole;
+        if (!(scaled < FAST_PATH_LIMIT) || Math.abs(fraction - 0.5) < TIE_WINDOW) {
+            // NaN, infinite, huge or too close to a tie to trust the binary product:
+            // let Formatter round the shortest decimal string
+            appendAscii(String.format(Locale.ROOT, "%." + decimals + "f", value));
+            return;
+        }
+
+        long units = (long) whole + (fraction > 0.5 ? 1 : 0);
+        if (Double.doubleToRawLongBits(value) < 0) {
+            buffer[position++] = '-';
+        }
+        long divisor = POWERS_OF_TEN[decimals];
+        appendLong(units / divisor);
+        if (decimals > 0) {
+            buffer[position++] = '.';
+            long fractionDigits = units % divisor;
+            for (long d = divisor / 10; d > 0; d /= 10) {
+                buffer[position++] = (byte) ('0' + (fractionDigits / d) % 10);
+            }
+        }
+    }
+
+    /**
+     * Appends a whole number.
+     * @param value The number to append.
+     */
+    private void appendLong(long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                appendAscii(Long.toString(value));
+                return;
+            }
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (count > 0) {
+            buffer[position++] = digits[--count];
+        }
+    }
+
+    /**
+     * Appends an ASCII string, used by the slow paths.
+     * @param text The text to append.
+     */
+    private void appendAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer[position++] = (byte) text.charAt(i);
+        }
+    }
+}
@@ -13,6 +13,8 @@ public class Data {
     private double muscleMass; // The mass of the muscles
     private double anabolicHormone; // The level of anabolic hormones
     private double catabolicHormone; // The level of catabolic hormones
+    private double muscleMassStandardDeviation; // The spread of the muscle mass over rounds
+    private double muscleMassConfidence; // The half width of the 95% interval of the mean
 
     /**
      * Constructs a new Data object with the given parameters.
@@ -166,6 +168,56 @@ public class Data {
         this.catabolicHormone = catabolicHormone;
     }
 
+    /**
+     * Returns the standard deviation of the muscle mass over the rounds.
+     * @return The standard deviation of the muscle mass.
+     */
+    public double getMuscleMassStandardDeviation() {
+        return muscleMassStandardDeviation;
+    }
+
+    /**
+     * Sets the standard deviation of the muscle mass over the rounds.
+     * @param muscleMassStandardDeviation The standard deviation of the muscle mass.
+     */
+    public void setMuscleMassStandardDeviation(double muscleMassStandardDeviation) {
+        this.muscleMassStandardDeviation = muscleMassStandardDeviation;
+    }
+
+    /**
+     * Returns the half width of the 95% confidence interval of the mean muscle mass.
+     * @return The half width of the confidence interval.
+     */
+    public double getMuscleMassConfidence() {
+        return muscleMassConfidence;
+    }
+
+    /**
+     * Sets the half width of the 95% confidence interval of the mean muscle mass.
+     * @param muscleMassConfidence The half width of the confidence interval.
+     */
+    public void setMuscleMassConfidence(double muscleMassConfidence) {
+        this.muscleMassConfidence = muscleMassConfidence;
+    }
+
+    /**
+     * Returns the better of two results, preferring the first one on ties, so a sweep
+     * keeps the combination that comes first in sweep order whatever order its
+     * combinations finish in.
+     * @param first The result that comes first in sweep order, or null.
+     * @param second The result that comes second in sweep order, or null.
+     * @return The result with the higher muscle mass.
+     */
+    static Data better(Data first, Data second) {
+        if (first == null) {
+            return second;
+        }
+        if (second != null && second.getMuscleMass() > first.getMuscleMass()) {
+            return second;
+        }
+        return first;
+    }
+
     /**
      * Returns a string representation of the Data object.
      * @return A string representation of the Data object.
@@ -179,6 +231,8 @@ public class Data {
                 ", daysBetweenWorkouts=" + daysBetweenWorkouts +
                 ", slowTwitchPercentage=" + slowTwitchPercentage +
                 ", muscleMass=" + muscleMass +
+                ", muscleMassSd=" + muscleMassStandardDeviation +
+                ", muscleMassCi95=+-" + muscleMassConfidence +
                 ", anabolicHormone=" + anabolicHormone +
                 ", catabolicHormone=" + catabolicHormone +
                 '}';
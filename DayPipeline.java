@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The DayPipeline class steps the days of a simulation as a fixed sequence of stages
+ * over one MuscleGrid: daily activity, lifting, sleep, diffusion and growth, followed
+ * by the observers. The model variants differ only in their LiftPolicy and
+ * SleepPolicy, so all of them run on the same grid kernels, including the fused step.
+ *
+ * The policies draw from the random number generator of the simulation in the order
+ * the stages run. The fused step decides the workout and the night before the grid
+ * sweep, so a day on which both the workout is done and the night is drawn from the
+ * generator the lifts share is stepped stage by stage, which keeps the draws in order;
+ * every other day is fused. Either way the results are the same.
+ */
+public class DayPipeline {
+    /**
+     * The Observer interface is notified at the end of every day stepped by the pipeline.
+     */
+    public interface Observer {
+        /**
+         * Observes the grid at the end of a day.
+         * @param day The day that was simulated.
+         * @param grid The grid of the simulation.
+         */
+        void dayEnded(int day, MuscleGrid grid);
+    }
+
+    private final MuscleGrid grid; // The hormones and muscle fibers in the grid
+    private final int intensity; // The intensity of the workout
+    private final LiftPolicy liftPolicy; // Decides the workouts
+    private final SleepPolicy sleepPolicy; // Decides the nights
+    private final SimulationRandom random; // The random number generator of the policies
+    private final List<Observer> observers; // Notified at the end of every day
+
+    /**
+     * Constructs a new DayPipeline.
+     * @param grid The grid of the simulation.
+     * @param intensity The intensity of the workout, unless the lift policy gives the
+     *                  workouts their own.
+     * @param liftPolicy The policy deciding the workouts.
+     * @param sleepPolicy The policy deciding the nights.
+     * @param random The random number generator of the policies.
+     */
+    public DayPipeline(MuscleGrid grid, int intensity, LiftPolicy liftPolicy,
+                       SleepPolicy sleepPolicy, SimulationRandom random) {
+        this.grid = grid;
+        this.intensity = intensity;
+        this.liftPolicy = liftPolicy;
+        this.sleepPolicy = sleepPolicy;
+        this.random = random;
+        this.observers = new ArrayList<>();
+    }
+
+    /**
+     * Returns the policy deciding the workouts.
+     * @return The lift policy.
+     */
+    public LiftPolicy getLiftPolicy() {
+        return liftPolicy;
+    }
+
+    /**
+     * Returns the policy deciding the nights.
+     * @return The sleep policy.
+     */
+    public SleepPolicy getSleepPolicy() {
+        return sleepPolicy;
+    }
+
+    /**
+     * Adds an observer notified at the end of every day stepped by step.
+     * @param observer The observer.
+     */
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    /**
+     * Updates the hormones in the grid based on daily activities.
+     */
+    public void performDailyActivity() {
+        grid.performDailyActivity();
+    }
+
+    /**
+     * Lifts weights at the intensity of the day if the lift policy does the workout,
+     * without checking the schedule.
+     * @param day The number of the day.
+     */
+    public void liftWeights(int day) {
+        if (liftPolicy.attends(random)) {
+            grid.liftWeights(liftPolicy.intensity(day, intensity));
+        }
+    }
+
+    /**
+     * Sleeps the hours decided by the sleep policy for the night of a day, after scaling
+     * the hormones by its factors for the night.
+     * @param day The number of the day.
+     */
+    public void sleep(int day) {
+        double hours = sleepPolicy.hours(day, random);
+        double anabolicFactor = sleepPolicy.anabolicFactor(hours);
+        double catabolicFactor = sleepPolicy.catabolicFactor(hours);
+        if (anabolicFactor != 1.0 || catabolicFactor != 1.0) {
+            grid.scaleHormones(anabolicFactor, catabolicFactor);
+        }
+        grid.sleep(hours);
+    }
+
+    /**
+     * Diffuses the hormones in the grid and balances them.
+     */
+    public void regulateHormones() {
+        grid.regulateHormones();
+    }
+
+    /**
+     * Develops the muscle fibers based on the hormones in the grid.
+     */
+    public void developMuscle() {
+        grid.developMuscle();
+    }
+
+    /**
+     * Simulates one day: daily activity, lifting on the workout days the lift policy
+     * does, sleep, hormone regulation and muscle development, then notifies the
+     * observers.
+     * @param day The number of the day, starting at 1.
+     * @param fused Whether the day is stepped by MuscleGrid.stepFused when it can be.
+     */
+    public void step(int day, boolean fused) {
+        if (fused) {
+            boolean liftToday = liftPolicy.isWorkoutDay(day) && liftPolicy.attends(random);
+            if (liftToday && sleepPolicy.isRandom()) {
+                // The lifts draw before the night in the stage order
+                performDailyActivity();
+                grid.liftWeights(liftPolicy.intensity(day, intensity));
+                sleep(day);
+                regulateHormones();
+                developMuscle();
+            } else {
+                double hours = sleepPolicy.hours(day, random);
+                grid.stepFused(liftToday, liftPolicy.intensity(day, intensity),
+                        sleepPolicy.anabolicFactor(hours), sleepPolicy.catabolicFactor(hours),
+                        hours);
+            }
+        } else {
+            performDailyActivity();
+            if (liftPolicy.isWorkoutDay(day)) {
+                liftWeights(day);
+            }
+            sleep(day);
+            regulateHormones();
+            developMuscle();
+        }
+        for (Observer observer : observers) {
+            observer.dayEnded(day, grid);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * The DiffusionKernel class spreads a hormone field to the eight neighbours of every
+ * cell of a square grid, like Patch.diffuse, and clamps the result like
+ * Patch.balanceHormones.
+ * The kernel reads from one preallocated buffer and writes to another, so a simulated
+ * day does not allocate anything. Interior cells always have eight neighbours and use
+ * fixed offsets; only the border rows and columns check which neighbours exist, so the
+ * kernel needs no per-cell tables and scales to very large grids.
+ * Rows can be diffused in independent bands: a band only writes its own rows and reads
+ * the row above and below it as halo rows from the source buffer.
+ * The kernel can also add every value it writes to a running KahanSum, so the total
+ * of the diffused field is known without another pass over the grid.
+ */
+public class DiffusionKernel {
+    private final int gridSize; // The number of rows and columns in the grid
+
+    // Offsets of the eight neighbours, in the order Patch.diffuse visits them
+    static final int[] DX = {-1, -1, -1, 0, 0, 1, 1, 1};
+    static final int[] DY = {-1, 0, 1, -1, 1, -1, 0, 1};
+
+    /**
+     * Constructs a new DiffusionKernel for a square grid of the given size.
+     * @param gridSize The number of rows and columns in the grid.
+     */
+    public DiffusionKernel(int gridSize) {
+        this.gridSize = gridSize;
+    }
+
+    /**
+     * Returns the number of rows and columns in the grid.
+     * @return The grid size.
+     */
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * Diffuses the hormone field in {@code src} into {@code dst} and clamps every
+     * cell to the given limits. {@code src} is not modified.
+     * The result is bit-identical to Patch.diffuse followed by Patch.balanceHormones.
+     * @param src The hormone levels before diffusion.
+     * @param dst The array receiving the hormone levels after diffusion.
+     * @param min The lower limit of the hormone.
+     * @param max The upper limit of the hormone.
+     */
+    public void diffuse(double[] src, double[] dst, double min, double max) {
+        diffuseRows(src, dst, min, max, 0, gridSize, null);
+    }
+
+    /**
+     * Diffuses the rows {@code [fromRow, toRow)} of the hormone field in {@code src}
+     * into the same rows of {@code dst}. The rows next to the band are only read.
+     * @param src The hormone levels before diffusion.
+     * @param dst The array receiving the hormone levels after diffusion.
+     * @param min The lower limit of the hormone.
+     * @param max The upper limit of the hormone.
+     * @param fromRow The first row to diffuse, inclusive.
+     * @param toRow The last row to diffuse, exclusive.
+     * @param total The sum receiving the written values in row-major order, or null.
+     */
+    public void diffuseRows(double[] src, double[] dst, double min, double max,
+                            int fromRow, int toRow, KahanSum total) {
+        int n = gridSize;
+        for (int i = fromRow; i < toRow; i++) {
+            int row = i * n;
+            if (i == 0 || i == n - 1 || n < 3) {
+                for (int j = 0; j < n; j++) {
+                    dst[row + j] = diffuseBorderCell(src, i, j, min, max);
+                }
+                if (total != null) {
+                    total.add(dst, row, row + n);
+                }
+                continue;
+            }
+
+            dst[row] = diffuseBorderCell(src, i, 0, min, max);
+            for (int k = row + 1; k < row + n - 1; k++) {
+                double share = (src[k] * Patch.DIFFUSE_RATE) / 8.0;
+                double remaining = src[k];
+                for (int c = 0; c < 8; c++) {
+                    remaining -= share;
+                }
+
+                // The shares are added in the order the scatter formulation added them
+                double received = (src[k - n - 1] * Patch.DIFFUSE_RATE) / 8.0;
+                received += (src[k - n] * Patch.DIFFUSE_RATE) / 8.0;
+                received += (src[k - n + 1] * Patch.DIFFUSE_RATE) / 8.0;
+                received += (src[k - 1] * Patch.DIFFUSE_RATE) / 8.0;
+                received += (src[k + 1] * Patch.DIFFUSE_RATE) / 8.0;
+                received += (src[k + n - 1] * Patch.DIFFUSE_RATE) / 8.0;
+                received += (src[k + n] * Patch.DIFFUSE_RATE) / 8.0;
+                received += (src[k + n + 1] * Patch.DIFFUSE_RATE) / 8.0;
+
+                dst[k] = Math.max(min, Math.min(remaining + received, max));
+            }
+            dst[row + n - 1] = diffuseBorderCell(src, i, n - 1, min, max);
+
+            // The row was just written, so summing it again reads from the cache
+            if (total != null) {
+                total.add(dst, row, row + n);
+            }
+        }
+    }
+
+    /**
+     * Diffuses a cell on the border of the grid, which has fewer than eight neighbours.
+     * @param src The hormone levels before diffusion.
+     * @param i The row of the cell.
+     * @param j The column of the cell.
+     * @param min The lower limit of the hormone.
+     * @param max The upper limit of the hormone.
+     * @return The clamped hormone level of the cell after diffusion.
+     */
+    private double diffuseBorderCell(double[] src, int i, int j, double min, double max) {
+        int k = i * gridSize + j;
+        double share = (src[k] * Patch.DIFFUSE_RATE) / 8.0;
+        double remaining = src[k];
+        double received = 0.0;
+        for (int n = 0; n < 8; n++) {
+            int nx = i + DX[n];
+            int ny = j + DY[n];
+            if (nx >= 0 && nx < gridSize && ny >= 0 && ny < gridSize) {
+                remaining -= share;
+                received += (src[nx * gridSize + ny] * Patch.DIFFUSE_RATE) / 8.0;
+            }
+        }
+        return Math.max(min, Math.min(remaining + received, max));
+    }
+}
@@ -1,17 +1,14 @@
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Random;
 
 /**
  * The DisorderedLiftSimulation class extends the Simulation class and represents a simulation
- * where the decision to lift weights is random.
+ * where the decision to lift weights is random. It is the base model with the
+ * disordered LiftPolicy: a workout is scheduled every daysBetweenWorkouts days and done
+ * with the exercise probability, like in the sweeps of FindBestComboSimulation with
+ * {@code -DexerciseProbability}. Earlier versions drew whether to lift every day.
  */
 public class DisorderedLiftSimulation extends Simulation {
-    private double exerciseProbability; // The probability of exercising
-    private Random random; // Random number generator
-
     /**
      * Constructs a new DisorderedLiftSimulation with the given parameters.
      * @param intensity The intensity of the workout.
@@ -19,41 +16,34 @@ public class DisorderedLiftSimulation extends Simulation {
      * @param daysBetweenWorkouts The days between workouts.
      * @param slowTwitchPercentage The percentage of slow twitch muscles.
      * @param exerciseProbability The probability of exercising.
+     * @param random The random number generator of the simulation.
      */
     public DisorderedLiftSimulation(
             int intensity,
             double hoursOfSleep,
             int daysBetweenWorkouts,
             int slowTwitchPercentage,
-            double exerciseProbability
+            double exerciseProbability,
+            SimulationRandom random
     ) {
-        super(intensity, true, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage);
-        this.exerciseProbability = exerciseProbability;
-        this.random = new Random();
-    }
-
-    /**
-     * Overrides the liftWeights method from the Simulation class.
-     * The decision to lift weights is random, based on the exerciseProbability.
-     */
-    @Override
-    public void liftWeights() {
-        if (random.nextFloat() < exerciseProbability) {
-            super.liftWeights();
-        }
+        super(intensity, true, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage, random,
+                LiftPolicy.disordered(daysBetweenWorkouts, exerciseProbability),
+                SleepPolicy.regular(hoursOfSleep));
     }
 
     /**
      * The main method for the DisorderedLiftSimulation class.
      * It takes command line arguments for the simulation parameters, runs the simulation,
      * and writes the results to a CSV file.
+     * An optional seventh argument seeds the random number generator and an optional
+     * eighth sets the format of the result file: "csv" or "binary".
      * @param args The command line arguments.
      */
     public static void main(String[] args) {
         if (args.length < 6) {
             System.out.println("Usage: java DisorderedLiftSimulation <intensity> <hoursOfSleep> " +
                     "<daysBetweenWorkouts> <slowTwitchPercentage> <daysToSimulate> " +
-                    "<exerciseProbability>");
+                    "<exerciseProbability> [seed] [csv|binary]");
             return;
         }
 
@@ -63,36 +53,18 @@ public class DisorderedLiftSimulation extends Simulation {
         int slowTwitchPercentage = Integer.parseInt(args[3]);
         int days = Integer.parseInt(args[4]);
         double exerciseProbability = Double.parseDouble(args[5]);
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : SimulationRandom.newSeed();
+        String format = args.length > 7 ? args[7] : "csv";
 
         DisorderedLiftSimulation simulation = new DisorderedLiftSimulation(
                 intensity,
                 hoursOfSleep,
                 daysBetweenWorkouts,
                 slowTwitchPercentage,
-                exerciseProbability
+                exerciseProbability,
+                new SimulationRandom(seed)
         );
-
-        double[] muscleMass = new double[days + 1];
-        double[] averageAnabolicHormone = new double[days + 1];
-        double[] averageCatabolicHormone = new double[days + 1];
-
-        simulation.performDailyActivity(); // Perform initial daily activity
-        muscleMass[0] = simulation.muscleMass();
-        averageAnabolicHormone[0] = simulation.averageAnabolicHormone();
-        averageCatabolicHormone[0] = simulation.averageCatabolicHormone();
-
-        // Run the simulation for the specified number of days
-        for (int i = 1; i <= days; i++) {
-            simulation.performDailyActivity();
-            simulation.liftWeights();
-            simulation.sleep();
-            simulation.regulateHormones();
-            simulation.developMuscle();
-
-            muscleMass[i] = simulation.muscleMass();
-            averageAnabolicHormone[i] = simulation.averageAnabolicHormone();
-            averageCatabolicHormone[i] = simulation.averageCatabolicHormone();
-        }
+        simulation.fusedStep = true;
 
         String directoryPath = "DisorderedLiftExperiment";
         File directory = new File(directoryPath);
@@ -100,7 +72,7 @@ public class DisorderedLiftSimulation extends Simulation {
             directory.mkdirs(); // Create the directory if it doesn't exist
         }
 
-        String filename = String.format("%s/%d_%s_%.1f_%d_%d_%d_%.2f.csv",
+        String filename = String.format("%s/%d_%s_%.1f_%d_%d_%d_%.2f",
                 directoryPath,
                 intensity,
                 "true",
@@ -109,12 +81,16 @@ public class DisorderedLiftSimulation extends Simulation {
                 slowTwitchPercentage,
                 days,
                 exerciseProbability);
-        // Write the results to a CSV file
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            writer.println("Day,Muscle Mass,Anabolic Hormone,Catabolic Hormone");
-            for (int i = 0; i <= days; i++) {
-                writer.printf("%d,%.2f,%.2f,%.2f\n", i, muscleMass[i],
-                        averageAnabolicHormone[i], averageCatabolicHormone[i]);
+        // Stream the results to a file as each day is simulated
+        try (ResultWriter writer = ResultWriter.open(format, filename,
+                Simulation.RESULT_COLUMNS, days + 1)) {
+            simulation.performDailyActivity(); // Perform initial daily activity
+            Simulation.writeRow(writer, 0, simulation);
+
+            // Run the simulation for the specified number of days
+            for (int i = 1; i <= days; i++) {
+                simulation.step(i);
+                Simulation.writeRow(writer, i, simulation);
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -1,18 +1,14 @@
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.Random;
 
 /**
  * The DisorderedSleepingHours class extends the Simulation class and represents a simulation
- * where the sleep hours are irregular.
+ * where the sleep hours are irregular. It is the base model with the irregular
+ * SleepPolicy, which keeps the hours of the last night; they are written to the row of
+ * every day as it is simulated, so memory use does not depend on the number of days.
  */
 public class DisorderedSleepingHours extends Simulation {
-    private boolean irregularSleep; // Indicates if sleep is irregular
-    private Random random; // Random number generator
-    public ArrayList<Double> dailyAdjustedSleepHours; // Stores daily adjusted sleep hours
+    private final SleepPolicy.Irregular sleepPolicy; // Decides the nights, keeps the last
 
     /**
      * Constructs a new DisorderedSleepingHours with the given parameters.
@@ -22,6 +18,7 @@ public class DisorderedSleepingHours extends Simulation {
      * @param daysBetweenWorkouts The days between workouts.
      * @param slowTwitchPercentage The percentage of slow twitch muscles.
      * @param irregularSleep Whether the sleep is irregular.
+     * @param random The random number generator of the simulation.
      */
     public DisorderedSleepingHours(
             int intensity,
@@ -29,49 +26,51 @@ public class DisorderedSleepingHours extends Simulation {
             double hoursOfSleep,
             int daysBetweenWorkouts,
             int slowTwitchPercentage,
-            boolean irregularSleep
+            boolean irregularSleep,
+            SimulationRandom random
     ) {
-        super(intensity, lift, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage);
-        this.irregularSleep = irregularSleep;
-        this.random = new Random();
-        this.dailyAdjustedSleepHours = new ArrayList<>();
+        this(intensity, lift, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage,
+                random, new SleepPolicy.Irregular(hoursOfSleep, irregularSleep));
     }
 
     /**
-     * Overrides the sleep method from the Simulation class.
-     * Adjusts sleep hours if sleep is irregular.
+     * Constructs a new DisorderedSleepingHours with the given sleep policy.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param random The random number generator of the simulation.
+     * @param sleepPolicy The policy deciding the nights.
      */
-    @Override
-    public void sleep() {
-        double adjustedSleep = getHoursOfSleep();
-        if (irregularSleep) {
-            // Generate a random value between -5 and 5
-            double randomAdjustment = -5 + random.nextDouble() * 10;
-            adjustedSleep += randomAdjustment;
-            // Ensure that sleep hours do not go below 0
-            adjustedSleep = Math.max(adjustedSleep, 0);
-        }
-        dailyAdjustedSleepHours.add(adjustedSleep); // Record adjusted sleep hours
+    private DisorderedSleepingHours(
+            int intensity,
+            boolean lift,
+            double hoursOfSleep,
+            int daysBetweenWorkouts,
+            int slowTwitchPercentage,
+            SimulationRandom random,
+            SleepPolicy.Irregular sleepPolicy
+    ) {
+        super(intensity, lift, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage, random,
+                LiftPolicy.scheduled(lift, daysBetweenWorkouts), sleepPolicy);
+        this.sleepPolicy = sleepPolicy;
+    }
 
-        // Adjust hormone levels based on sleep quality
-        double sleepFactor = adjustedSleep / getHoursOfSleep();
-        for (int i = 0; i < getGridSize(); i++) {
-            for (int j = 0; j < getGridSize(); j++) {
-                double currentAnabolic = getPatches()[i][j].getAnabolicHormone();
-                double currentCatabolic = getPatches()[i][j].getCatabolicHormone();
-                getPatches()[i][j].setAnabolicHormone(currentAnabolic *
-                        (1 + 0.1 * (sleepFactor - 1)));
-                getPatches()[i][j].setCatabolicHormone(currentCatabolic *
-                        (1 - 0.1 * (sleepFactor - 1)));
-                getPatches()[i][j].updateHormonesFromSleep(adjustedSleep);
-            }
-        }
+    /**
+     * Returns the adjusted sleep hours of the last night.
+     * @return The hours slept the last night, or NaN before the first sleep.
+     */
+    public double getLastSleepHours() {
+        return sleepPolicy.getLastHours();
     }
 
     /**
      * The main method for the DisorderedSleepingHours class.
      * It takes command line arguments for the simulation parameters, runs the simulation,
      * and writes the results to a CSV file.
+     * An optional eighth argument seeds the random number generator and an optional
+     * ninth sets the format of the result file: "csv" or "binary".
      * @param args The command line arguments.
      */
     public static void main(String[] args) {
@@ -79,7 +78,7 @@ public class DisorderedSleepingHours extends Simulation {
             System.out.println("Usage: java DisorderedSleepingHours " +
                     "<intensity> <lift> <hoursOfSleep> " +
                     "<daysBetweenWorkouts> <slowTwitchPercentage> " +
-                    "<daysToSimulate> <irregularSleep>");
+                    "<daysToSimulate> <irregularSleep> [seed] [csv|binary]");
             return;
         }
 
@@ -90,6 +89,8 @@ public class DisorderedSleepingHours extends Simulation {
         int slowTwitchPercentage = Integer.parseInt(args[4]);
         int days = Integer.parseInt(args[5]);
         boolean irregularSleep = Boolean.parseBoolean(args[6]);
+        long seed = args.length > 7 ? Long.parseLong(args[7]) : SimulationRandom.newSeed();
+        String format = args.length > 8 ? args[8] : "csv";
 
         DisorderedSleepingHours simulation = new DisorderedSleepingHours(
                 intensity,
@@ -97,37 +98,10 @@ public class DisorderedSleepingHours extends Simulation {
                 hoursOfSleep,
                 daysBetweenWorkouts,
                 slowTwitchPercentage,
-                irregularSleep
+                irregularSleep,
+                new SimulationRandom(seed)
         );
 
-        double[] muscleMass = new double[days + 1];
-        double[] averageAnabolicHormone = new double[days + 1];
-        double[] averageCatabolicHormone = new double[days + 1];
-        double[] sleepingHours = new double[days + 1];
-
-        simulation.sleep(); // Perform initial sleep
-
-        muscleMass[0] = simulation.muscleMass();
-        averageAnabolicHormone[0] = simulation.averageAnabolicHormone();
-        averageCatabolicHormone[0] = simulation.averageCatabolicHormone();
-        sleepingHours[0] = simulation.getHoursOfSleep();
-
-        // Run the simulation for the specified number of days
-        for (int i = 0; i < days; i++) {
-            simulation.performDailyActivity();
-            if (lift && i % daysBetweenWorkouts == 0) {
-                simulation.liftWeights();
-            }
-            simulation.sleep();
-            simulation.regulateHormones();
-            simulation.developMuscle();
-
-            muscleMass[i] = simulation.muscleMass();
-            averageAnabolicHormone[i] = simulation.averageAnabolicHormone();
-            averageCatabolicHormone[i] = simulation.averageCatabolicHormone();
-            sleepingHours[i] = simulation.dailyAdjustedSleepHours.get(i);
-        }
-
         String directoryPath = "DisorderedSleepingExperiments";
         File directory = new File(directoryPath);
         if (!directory.exists()) {
@@ -136,7 +110,7 @@ public class DisorderedSleepingHours extends Simulation {
 
         String sleepHoursFormatted = String.format("%.1f", hoursOfSleep).
                 replace('.', 'n');
-        String filename = String.format("%s/%d_%s_%s_%d_%d_%d_%s.csv",
+        String filename = String.format("%s/%d_%s_%s_%d_%d_%d_%s",
                 directoryPath,
                 intensity,
                 lift ? "true" : "false",
@@ -145,15 +119,46 @@ public class DisorderedSleepingHours extends Simulation {
                 slowTwitchPercentage,
                 days,
                 irregularSleep ? "true" : "false");
-        // Write the results to a CSV file
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            writer.println("Day,Sleeping Hours,Muscle Mass,Anabolic Hormone,Catabolic Hormone");
-            for (int i = 0; i <= days; i++) {
-                writer.printf("%d,%.2f,%.2f,%.2f,%.2f\n", i, sleepingHours[i], muscleMass[i],
-                        averageAnabolicHormone[i], averageCatabolicHormone[i]);
+        // Stream the results to a file as each day is simulated
+        try (ResultWriter writer = ResultWriter.open(format, filename, new String[] {
+                "Day", "Sleeping Hours", "Muscle Mass", "Anabolic Hormone", "Catabolic Hormone"
+        }, days + 1)) {
+            simulation.sleep(0); // Perform initial sleep
+            writeRow(writer, 0, simulation);
+
+            // Run the simulation for the specified number of days; the metrics after
+            // the day simulated by iteration i belong to day i + 1
+            for (int i = 0; i < days; i++) {
+                simulation.performDailyActivity();
+                if (lift && i % daysBetweenWorkouts == 0) {
+                    simulation.liftWeights(i + 1);
+                }
+                simulation.sleep(i + 1);
+                simulation.regulateHormones();
+                simulation.developMuscle();
+
+                writeRow(writer, i + 1, simulation);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes the sleep and metrics of a simulation at the end of a day as one result row.
+     * The sleep is the night that ended the day.
+     * @param writer The writer receiving the row.
+     * @param day The day that was simulated; day 0 is the initial sleep.
+     * @param simulation The simulation to report.
+     * @throws IOException If the row cannot be written.
+     */
+    private static void writeRow(ResultWriter writer, int day,
+                                 DisorderedSleepingHours simulation) throws IOException {
+        writer.startRow(day);
+        writer.addValue(simulation.getLastSleepHours());
+        writer.addValue(simulation.muscleMass());
+        writer.addValue(simulation.averageAnabolicHormone());
+        writer.addValue(simulation.averageCatabolicHormone());
+        writer.endRow();
+    }
+}
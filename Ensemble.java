@@ -0,0 +1,247 @@
+import java.util.function.IntFunction;
+
+/**
+ * The Ensemble class runs N replicates of one configuration and summarizes each metric
+ * across the replicates with streaming statistics: the mean, standard deviation and
+ * 95% confidence interval on the final day and, optionally, on every day.
+ * Replicates are simulated one after the other, or a few at a time in the lanes of a
+ * LaneSimulation, and only their running statistics are kept, so memory is O(days)
+ * with per-day statistics and O(1) without, whatever the number of replicates.
+ */
+public class Ensemble {
+    static final int MUSCLE_MASS = 0; // The index of the muscle mass metric
+    static final int ANABOLIC_HORMONE = 1; // The index of the anabolic hormone metric
+    static final int CATABOLIC_HORMONE = 2; // The index of the catabolic hormone metric
+    static final int METRICS = 3; // The number of metrics
+
+    /**
+     * The ModelFactory interface creates the simulation of one replicate.
+     */
+    public interface ModelFactory {
+        /**
+         * Returns a new simulation for a replicate.
+         * @param random The random number generator of the replicate.
+         * @param initialState The pooled state the replicate starts from, or null.
+         * @return The simulation.
+         */
+        SimulationModel create(SimulationRandom random, InitialStatePool.Replicate initialState);
+    }
+
+    /**
+     * The LaneFactory interface creates a LaneSimulation stepping several replicates
+     * together.
+     */
+    public interface LaneFactory {
+        /**
+         * Returns a new lane simulation with one lane per generator.
+         * @param random The random number generator of every replicate.
+         * @param initialStates The pooled state every replicate starts from, or null.
+         * @return The lane simulation.
+         */
+        LaneSimulation create(SimulationRandom[] random,
+                              InitialStatePool.Replicate[] initialStates);
+    }
+
+    private final int replicates; // The number of replicates to run
+    private final int days; // The number of days every replicate simulates
+    private final boolean perDay; // Whether statistics are kept for every day
+    private final EnsembleResult previous; // The statistics the replicates extend, or null
+
+    /**
+     * Constructs a new Ensemble.
+     * @param replicates The number of replicates to run.
+     * @param days The number of days every replicate simulates.
+     * @param perDay Whether statistics are kept for every day, not only the final one.
+     */
+    public Ensemble(int replicates, int days, boolean perDay) {
+        this(replicates, days, perDay, null);
+    }
+
+    /**
+     * Constructs a new Ensemble whose replicates are added to the statistics of an
+     * earlier run of the same days, after its replicates. Continuing with the next
+     * replicates gives the same statistics as one run of all of them.
+     * @param replicates The number of replicates to run.
+     * @param days The number of days every replicate simulates.
+     * @param previous The statistics of the earlier run, which are updated.
+     */
+    public Ensemble(int replicates, int days, EnsembleResult previous) {
+        this(replicates, days, previous.hasDaily(), previous);
+    }
+
+    /**
+     * Constructs a new Ensemble.
+     * @param replicates The number of replicates to run.
+     * @param days The number of days every replicate simulates.
+     * @param perDay Whether statistics are kept for every day, not only the final one.
+     * @param previous The statistics the replicates are added to, or null.
+     */
+    private Ensemble(int replicates, int days, boolean perDay, EnsembleResult previous) {
+        if (replicates < 1) {
+            throw new IllegalArgumentException("An ensemble needs at least one replicate");
+        }
+        this.replicates = replicates;
+        this.days = days;
+        this.perDay = perDay;
+        this.previous = previous;
+    }
+
+    /**
+     * Returns the number of replicates.
+     * @return The number of replicates.
+     */
+    public int getReplicates() {
+        return replicates;
+    }
+
+    /**
+     * Returns the number of days every replicate simulates.
+     * @return The number of days.
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * Returns the statistics the replicates are added to.
+     * @return The statistics of the earlier run, or new empty statistics.
+     */
+    private EnsembleResult newResult() {
+        return previous != null ? previous : new EnsembleResult(perDay ? days : -1);
+    }
+
+    /**
+     * Runs every replicate. Replicate r draws from the r-th generator split off
+     * {@code random}, so the ensemble is reproducible from the state of {@code random}.
+     * @param factory The factory creating the simulation of each replicate.
+     * @param random The random number generator the replicates are split from.
+     * @return The statistics of the ensemble.
+     */
+    public EnsembleResult run(ModelFactory factory, SimulationRandom random) {
+        return run(factory, r -> random.split(), null);
+    }
+
+    /**
+     * Runs every replicate from the states of an InitialStatePool. Replicate r starts
+     * from the state of pool replicate {@code first + r}, so ensembles of different
+     * configurations run on common random numbers.
+     * @param factory The factory creating the simulation of each replicate.
+     * @param pool The pool of starting states.
+     * @param first The pool replicate of the first replicate.
+     * @return The statistics of the ensemble.
+     */
+    public EnsembleResult run(ModelFactory factory, InitialStatePool pool, int first) {
+        return run(factory, r -> pool.replicate(first + r).random(),
+                r -> pool.replicate(first + r));
+    }
+
+    /**
+     * Runs every replicate, one after the other.
+     * @param factory The factory creating the simulation of each replicate.
+     * @param source Returns the generator of every replicate, in order.
+     * @param states Returns the pooled state of every replicate, or null.
+     * @return The statistics of the ensemble.
+     */
+    private EnsembleResult run(ModelFactory factory, IntFunction<SimulationRandom> source,
+                               IntFunction<InitialStatePool.Replicate> states) {
+        EnsembleResult result = newResult();
+        for (int r = 0; r < replicates; r++) {
+            SimulationModel model = factory.create(source.apply(r),
+                    states != null ? states.apply(r) : null);
+            if (perDay) {
+                model.setTrackMetrics(true);
+                result.addDay(0, model);
+            }
+            for (int i = 1; i <= days; i++) {
+                if (!perDay) {
+                    model.setTrackMetrics(i == days);
+                }
+                model.step(i);
+                if (perDay) {
+                    result.addDay(i, model);
+                }
+            }
+            result.addFinal(model);
+        }
+        return result;
+    }
+
+    /**
+     * Runs every replicate in batches of lanes stepped together. Replicates draw from
+     * the same generators as with run and are added to the statistics in the same
+     * order, so the result is identical to running the corresponding models one by one.
+     * @param factory The factory creating the lane simulation of each batch.
+     * @param random The random number generator the replicates are split from.
+     * @param lanes The largest number of replicates stepped together.
+     * @return The statistics of the ensemble.
+     */
+    public EnsembleResult runLanes(LaneFactory factory, SimulationRandom random, int lanes) {
+        return runLanes(factory, r -> random.split(), null, lanes);
+    }
+
+    /**
+     * Runs every replicate from the states of an InitialStatePool in batches of lanes
+     * stepped together, with the same results as run with the same pool.
+     * @param factory The factory creating the lane simulation of each batch.
+     * @param pool The pool of starting states.
+     * @param first The pool replicate of the first replicate.
+     * @param lanes The largest number of replicates stepped together.
+     * @return The statistics of the ensemble.
+     */
+    public EnsembleResult runLanes(LaneFactory factory, InitialStatePool pool, int first,
+                                   int lanes) {
+        return runLanes(factory, r -> pool.replicate(first + r).random(),
+                r -> pool.replicate(first + r), lanes);
+    }
+
+    /**
+     * Runs every replicate in batches of lanes stepped together.
+     * @param factory The factory creating the lane simulation of each batch.
+     * @param source Returns the generator of every replicate, in order.
+     * @param states Returns the pooled state of every replicate, or null.
+     * @param lanes The largest number of replicates stepped together.
+     * @return The statistics of the ensemble.
+     */
+    private EnsembleResult runLanes(LaneFactory factory, IntFunction<SimulationRandom> source,
+                                    IntFunction<InitialStatePool.Replicate> states,
+                                    int lanes) {
+        EnsembleResult result = newResult();
+        for (int first = 0; first < replicates; first += lanes) {
+            SimulationRandom[] batch = new SimulationRandom[Math.min(lanes, replicates - first)];
+            InitialStatePool.Replicate[] batchStates = states != null
+                    ? new InitialStatePool.Replicate[batch.length] : null;
+            for (int l = 0; l < batch.length; l++) {
+                batch[l] = source.apply(first + l);
+                if (batchStates != null) {
+                    batchStates[l] = states.apply(first + l);
+                }
+            }
+            LaneSimulation simulation = factory.create(batch, batchStates);
+            if (perDay) {
+                addLanes(result, 0, simulation);
+            }
+            for (int i = 1; i <= days; i++) {
+                simulation.step(i);
+                if (perDay) {
+                    addLanes(result, i, simulation);
+                }
+            }
+            for (int l = 0; l < batch.length; l++) {
+                result.addFinal(simulation.lane(l));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the metrics of every lane on one day, in lane order.
+     * @param result The statistics of the ensemble.
+     * @param day The day that was simulated.
+     * @param simulation The lanes after that day.
+     */
+    private static void addLanes(EnsembleResult result, int day, LaneSimulation simulation) {
+        for (int l = 0; l < simulation.getLanes(); l++) {
+            result.addDay(day, simulation.lane(l));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * The EnsembleResult class holds the statistics of an Ensemble run: one
+ * RunningStatistics per metric for the final day and, if requested, per metric for
+ * every day. Metrics are indexed by Ensemble.MUSCLE_MASS, Ensemble.ANABOLIC_HORMONE
+ * and Ensemble.CATABOLIC_HORMONE.
+ */
+public class EnsembleResult {
+    private final RunningStatistics[] finalDay; // The statistics of the final day
+    private final RunningStatistics[][] daily; // The statistics per day, or null
+
+    /**
+     * Constructs a new, empty EnsembleResult.
+     * @param days The final day if statistics are kept for every day, otherwise -1.
+     */
+    EnsembleResult(int days) {
+        this.finalDay = newStatistics();
+        if (days >= 0) {
+            daily = new RunningStatistics[days + 1][];
+            for (int d = 0; d <= days; d++) {
+                daily[d] = newStatistics();
+            }
+        } else {
+            daily = null;
+        }
+    }
+
+    /**
+     * Returns one empty RunningStatistics per metric.
+     * @return The statistics.
+     */
+    private static RunningStatistics[] newStatistics() {
+        RunningStatistics[] statistics = new RunningStatistics[Ensemble.METRICS];
+        for (int m = 0; m < statistics.length; m++) {
+            statistics[m] = new RunningStatistics();
+        }
+        return statistics;
+    }
+
+    /**
+     * Adds the metrics of a model to the given statistics.
+     * @param statistics The statistics of each metric.
+     * @param model The model to read.
+     */
+    private static void add(RunningStatistics[] statistics, SimulationMetrics model) {
+        statistics[Ensemble.MUSCLE_MASS].add(model.muscleMass());
+        statistics[Ensemble.ANABOLIC_HORMONE].add(model.averageAnabolicHormone());
+        statistics[Ensemble.CATABOLIC_HORMONE].add(model.averageCatabolicHormone());
+    }
+
+    /**
+     * Adds the final metrics of a replicate.
+     * @param model The replicate after its final day.
+     */
+    void addFinal(SimulationMetrics model) {
+        add(finalDay, model);
+    }
+
+    /**
+     * Adds the metrics of a replicate on one day.
+     * @param day The day that was simulated.
+     * @param model The replicate after that day.
+     */
+    void addDay(int day, SimulationMetrics model) {
+        add(daily[day], model);
+    }
+
+    /**
+     * Returns the statistics of a metric on the final day.
+     * @param metric The index of the metric.
+     * @return The statistics.
+     */
+    public RunningStatistics getFinal(int metric) {
+        return finalDay[metric];
+    }
+
+    /**
+     * Returns whether statistics were kept for every day.
+     * @return Whether per-day statistics are available.
+     */
+    public boolean hasDaily() {
+        return daily != null;
+    }
+
+    /**
+     * Returns the statistics of a metric on a given day.
+     * @param metric The index of the metric.
+     * @param day The day, from 0 to the final day.
+     * @return The statistics.
+     */
+    public RunningStatistics getDaily(int metric, int day) {
+        if (daily == null) {
+            throw new IllegalStateException("The ensemble did not keep per-day statistics");
+        }
+        return daily[day][metric];
+    }
+
+    /**
+     * Returns the statistics of the final muscle mass.
+     * @return The statistics.
+     */
+    public RunningStatistics getMuscleMass() {
+        return finalDay[Ensemble.MUSCLE_MASS];
+    }
+
+    /**
+     * Returns the statistics of the final average anabolic hormone level.
+     * @return The statistics.
+     */
+    public RunningStatistics getAnabolicHormone() {
+        return finalDay[Ensemble.ANABOLIC_HORMONE];
+    }
+
+    /**
+     * Returns the statistics of the final average catabolic hormone level.
+     * @return The statistics.
+     */
+    public RunningStatistics getCatabolicHormone() {
+        return finalDay[Ensemble.CATABOLIC_HORMONE];
+    }
+}
@@ -0,0 +1,271 @@
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The ExperimentSpec class describes a one-parameter experiment: which simulation
+ * parameter is varied and over which values, how many replicates are averaged per
+ * value and the fixed values of every other parameter.
+ * Specs are read from properties files such as:
+ * <pre>
+ * name=intensity_various
+ * parameter=intensity
+ * label=Intensity
+ * range=50:100:5
+ * replicates=10
+ * </pre>
+ * The varied values are given either as {@code range=start:end:step} or as a comma
+ * separated {@code values} list. The fixed parameters default to the values used by
+ * the first experiment: intensity 95, lift true, 8.0 hours of sleep, 5 days between
+ * workouts, 50% slow twitch fibers and 365 days. The summary is written to
+ * {@code <results>/<name>_results.csv} and, if {@code trajectories} is csv or binary,
+ * every run to {@code <data>/<name>/}; both directories default to the ones of the
+ * first experiment.
+ * With {@code plan=<file>} every run follows the TrainingPlan in the file instead of
+ * the intensity, lifting, sleep and workout parameters, so only the slow twitch
+ * percentage can be varied.
+ */
+public class ExperimentSpec {
+    // The parameters that can be varied, named like the Simulation fields
+    static final String[] PARAMETERS = {
+            "intensity", "lift", "hoursOfSleep", "daysBetweenWorkouts", "slowTwitchPercentage"
+    };
+
+    private final String name; // The name of the experiment and its result file
+    private final String parameter; // The varied parameter
+    private final String label; // The header of the varied parameter in the results
+    private final List<String> values; // The values of the varied parameter
+    private final int replicates; // The number of runs averaged per value
+    private final Properties fixed; // The fixed parameters
+    private final int days; // The number of days to simulate
+    private final int gridSize; // The number of rows and columns of the grid
+    private final String trajectories; // The format of per-run trajectories, or null
+    private final String resultsDirectory; // The directory receiving the summary
+    private final String dataDirectory; // The directory receiving the trajectories
+    private final String plan; // The file of the plan every run follows, or null
+
+    /**
+     * Constructs a new ExperimentSpec from parsed properties.
+     * @param properties The properties of the spec.
+     */
+    public ExperimentSpec(Properties properties) {
+        this.name = require(properties, "name");
+        this.parameter = require(properties, "parameter");
+        if (!isParameter(parameter)) {
+            throw new IllegalArgumentException("Unknown parameter to vary: " + parameter);
+        }
+        this.label = properties.getProperty("label", parameter);
+        this.values = parseValues(properties);
+        this.replicates = Integer.parseInt(properties.getProperty("replicates", "10"));
+        if (replicates < 1) {
+            throw new IllegalArgumentException("An experiment needs at least one replicate");
+        }
+        this.fixed = properties;
+        this.days = Integer.parseInt(properties.getProperty("days", "365"));
+        this.gridSize = Integer.parseInt(properties.getProperty("gridSize",
+                String.valueOf(Simulation.DEFAULT_GRID_SIZE)));
+        this.trajectories = properties.getProperty("trajectories");
+        this.resultsDirectory = properties.getProperty("results", "first-experiment/results");
+        this.dataDirectory = properties.getProperty("data", "first-experiment/data_generated")
+                + "/" + name;
+        this.plan = properties.getProperty("plan");
+        if (plan != null && !parameter.equals("slowTwitchPercentage")) {
+            throw new IllegalArgumentException("A plan sets every parameter but "
+                    + "slowTwitchPercentage, so " + parameter + " cannot be varied");
+        }
+    }
+
+    /**
+     * Reads an ExperimentSpec from a properties file.
+     * @param filename The name of the file.
+     * @return The spec.
+     * @throws IOException If the file cannot be read.
+     */
+    public static ExperimentSpec load(String filename) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(filename)) {
+            properties.load(reader);
+        }
+        return new ExperimentSpec(properties);
+    }
+
+    /**
+     * Returns the name of the experiment.
+     * @return The name of the experiment.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the varied parameter.
+     * @return The varied parameter.
+     */
+    public String getParameter() {
+        return parameter;
+    }
+
+    /**
+     * Returns the header of the varied parameter in the results.
+     * @return The label of the varied parameter.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns the values of the varied parameter, as they are written to the results.
+     * @return The values of the varied parameter.
+     */
+    public List<String> getValues() {
+        return values;
+    }
+
+    /**
+     * Returns the number of runs averaged per value.
+     * @return The number of replicates.
+     */
+    public int getReplicates() {
+        return replicates;
+    }
+
+    /**
+     * Returns the number of days to simulate.
+     * @return The number of days.
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * Returns the number of rows and columns of the grid.
+     * @return The grid size.
+     */
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * Returns the format per-run trajectories are kept in.
+     * @return "csv" or "binary", or null if only the summary is written.
+     */
+    public String getTrajectories() {
+        return trajectories;
+    }
+
+    /**
+     * Returns the directory receiving the summary.
+     * @return The results directory.
+     */
+    public String getResultsDirectory() {
+        return resultsDirectory;
+    }
+
+    /**
+     * Returns the directory receiving the per-run trajectories.
+     * @return The data directory.
+     */
+    public String getDataDirectory() {
+        return dataDirectory;
+    }
+
+    /**
+     * Returns the file of the training plan every run follows.
+     * @return The name of the plan file, or null if the runs follow the parameters.
+     */
+    public String getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns the value of a parameter in the run for the given value of the varied one.
+     * @param name The name of the parameter.
+     * @param value The value of the varied parameter.
+     * @return The value of the parameter.
+     */
+    public String parameterValue(String name, String value) {
+        if (name.equals(parameter)) {
+            return value;
+        }
+        switch (name) {
+            case "intensity":
+                return fixed.getProperty(name, "95");
+            case "lift":
+                return fixed.getProperty(name, "true");
+            case "hoursOfSleep":
+                return fixed.getProperty(name, "8.0");
+            case "daysBetweenWorkouts":
+                return fixed.getProperty(name, "5");
+            case "slowTwitchPercentage":
+                return fixed.getProperty(name, "50");
+            default:
+                throw new IllegalArgumentException("Unknown parameter: " + name);
+        }
+    }
+
+    /**
+     * Returns whether the name is a parameter that can be varied.
+     * @param name The name to check.
+     * @return Whether it is a parameter.
+     */
+    private static boolean isParameter(String name) {
+        for (String p : PARAMETERS) {
+            if (p.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a property that must be present.
+     * @param properties The properties of the spec.
+     * @param key The key of the property.
+     * @return The value of the property.
+     */
+    private static String require(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Experiment spec is missing " + key);
+        }
+        return value.trim();
+    }
+
+    /**
+     * Returns the values of the varied parameter from a range or a list. Ranges are
+     * stepped in decimal, so a step of 0.5 yields exactly 4, 4.5, 5 and so on.
+     * @param properties The properties of the spec.
+     * @return The values of the varied parameter.
+     */
+    private static List<String> parseValues(Properties properties) {
+        List<String> values = new ArrayList<>();
+        String range = properties.getProperty("range");
+        if (range != null) {
+            String[] parts = range.trim().split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("A range is start:end:step, not " + range);
+            }
+            BigDecimal start = new BigDecimal(parts[0].trim());
+            BigDecimal end = new BigDecimal(parts[1].trim());
+            BigDecimal step = new BigDecimal(parts[2].trim());
+            if (step.signum() <= 0) {
+                throw new IllegalArgumentException("A range needs a positive step: " + range);
+            }
+            for (BigDecimal v = start; v.compareTo(end) <= 0; v = v.add(step)) {
+                values.add(v.stripTrailingZeros().toPlainString());
+            }
+        } else {
+            for (String value : require(properties, "values").split(",")) {
+                values.add(value.trim());
+            }
+        }
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("The experiment has no values to run");
+        }
+        return values;
+    }
+}
@@ -1,6 +1,7 @@
 import java.io.File;
 import java.io.IOException;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
@@ -8,285 +9,338 @@ import java.util.logging.SimpleFormatter;
 /**
  * The FindBestComboSimulation class represents a simulation to find the best combination
  * of workout parameters to maximize muscle mass.
+ * Every combination is a Simulation on the default grid, stepped by the fused
+ * DayPipeline, of the ModelVariant chosen for the sweep.
  */
-public class FindBestComboSimulation {
-    private static final int GRID_SIZE = 17; // The size of the grid
-    private Patch[][] patches; // The patches in the grid
-    private MuscleFiber[][] muscleFibers; // The muscle fibers in the grid
-    private int intensity; // The intensity of the workout
-    private boolean lift; // Whether the person lifts or not
-    private double hoursOfSleep; // The hours of sleep the person gets
-    private int daysBetweenWorkouts; // The days between workouts
-    private int slowTwitchPercentage; // The percentage of slow twitch muscles
-
+public class FindBestComboSimulation extends Simulation {
     // Constants for the simulation parameters
     private static final boolean INIT_LIFT = false;
-    private static final double INIT_HOURSOFSLEEP = 4.0;
-    private static final int INIT_DAYSBETWEENWORKOUTS = 1;
-    private static final int INIT_INTENSITY = 50;
-    private static final double FINAL_HOURSOFSLEEP = 12.0;
-    private static final int FINAL_DAYSBETWEENWORKOUTS = 30;
-    private static final int FINAL_INTENSITY = 100;
+    static final double INIT_HOURSOFSLEEP = 4.0;
+    static final int INIT_DAYSBETWEENWORKOUTS = 1;
+    static final int INIT_INTENSITY = 50;
+    static final double FINAL_HOURSOFSLEEP = 12.0;
+    static final int FINAL_DAYSBETWEENWORKOUTS = 30;
+    static final int FINAL_INTENSITY = 100;
+    static final double SLEEP_STEP = 0.5;
 
 
     /**
-     * Constructs a new FindBestComboSimulation with the given parameters.
+     * Constructs a new FindBestComboSimulation of the base model with the given parameters.
      * @param intensity The intensity of the workout.
      * @param lift Whether the person lifts or not.
      * @param hoursOfSleep The hours of sleep the person gets.
      * @param daysBetweenWorkouts The days between workouts.
      * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param random The random number generator of the simulation.
      */
     public FindBestComboSimulation(
             int intensity,
             boolean lift,
             double hoursOfSleep,
             int daysBetweenWorkouts,
-            int slowTwitchPercentage
+            int slowTwitchPercentage,
+            SimulationRandom random
     ) {
-        this.intensity = intensity;
-        this.lift = lift;
-        this.hoursOfSleep = hoursOfSleep;
-        this.daysBetweenWorkouts = daysBetweenWorkouts;
-        this.slowTwitchPercentage = slowTwitchPercentage;
-
-        // Initialize the patches and muscle fibers
-        patches = new Patch[GRID_SIZE][GRID_SIZE];
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                patches[i][j] = new Patch();
-            }
-        }
-
-        // Initialize the muscle fibers
-        muscleFibers = new MuscleFiber[17][17];
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                muscleFibers[i][j] = new MuscleFiber(slowTwitchPercentage);
-            }
-        }
-
+        this(intensity, lift, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage,
+                ModelVariant.BASE, random);
     }
 
     /**
-     * Performs the daily activity for the simulation.
-     */
-    public void performDailyActivity() {
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                patches[i][j].updateHormonesFromDailyActivities(muscleFibers[i][j].getFiberSize());
-            }
-        }
-    }
-
-    /**
-     * Lifts weights for the simulation.
+     * Constructs a new FindBestComboSimulation of a model variant with the given parameters.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param variant The variant of the model.
+     * @param random The random number generator of the simulation.
      */
-    public void liftWeights() {
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                patches[i][j]
-                        .updateHormonesFromWeightLifting(
-                                muscleFibers[i][j].getFiberSize(),
-                                intensity
-                        );
-            }
-        }
+    public FindBestComboSimulation(
+            int intensity,
+            boolean lift,
+            double hoursOfSleep,
+            int daysBetweenWorkouts,
+            int slowTwitchPercentage,
+            ModelVariant variant,
+            SimulationRandom random
+    ) {
+        this(intensity, lift, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage, variant,
+                random, null);
     }
 
     /**
-     * Sleeps for the simulation.
+     * Constructs a new FindBestComboSimulation of a model variant whose grid starts from
+     * the muscle fibers of a replicate of an InitialStatePool, when one is given.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param variant The variant of the model.
+     * @param random The random number generator of the simulation.
+     * @param initialState The pooled state the grid starts from, or null.
      */
-    public void sleep() {
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                patches[i][j].updateHormonesFromSleep(hoursOfSleep);
-            }
-        }
+    public FindBestComboSimulation(
+            int intensity,
+            boolean lift,
+            double hoursOfSleep,
+            int daysBetweenWorkouts,
+            int slowTwitchPercentage,
+            ModelVariant variant,
+            SimulationRandom random,
+            InitialStatePool.Replicate initialState
+    ) {
+        super(intensity, lift, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage,
+                DEFAULT_GRID_SIZE, 1, random, initialState,
+                variant.liftPolicy(lift, daysBetweenWorkouts), variant.sleepPolicy(hoursOfSleep));
+        this.fusedStep = true;
     }
 
     /**
-     * Regulates the hormones for the simulation.
+     * Simulates the given parameters over an ensemble of rounds and returns the best data.
+     * The data of the combination holds the mean of every metric on the final day over
+     * the rounds, and the standard deviation and 95% confidence interval of the muscle
+     * mass. The model is the current ModelVariant. With a shared InitialStatePool the
+     * rounds start from its states instead of streams split from {@code random}.
+     * When a ResultCache is enabled, a combination already simulated from the same
+     * random state is not simulated again.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param days The number of days to simulate.
+     * @param max_round The number of rounds to simulate.
+     * @param random The random number generator of the combination; every round
+     *               runs on its own stream split from it.
+     * @param bestData The best data found so far.
+     * @param logger The logger to log the results.
+     * @return The best data found.
      */
-    public void regulateHormones() {
-        // buffer matrix to store the diffused hormones
-        Patch[][] bufferPatches = new Patch[GRID_SIZE][GRID_SIZE];
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                bufferPatches[i][j] = new Patch(0.0, 0.0);
-            }
-        }
-
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                patches[i][j].diffuse(bufferPatches, i, j);
-            }
+    public static Data simulate(int intensity,
+                                boolean lift, double hoursOfSleep,
+                                int daysBetweenWorkouts,
+                                int slowTwitchPercentage,
+                                int days,
+                                int max_round,
+                                SimulationRandom random,
+                                Data bestData,
+                                Logger logger) {
+        // Reuse the result of an earlier run of the same combination and random stream
+        ModelVariant variant = ModelVariant.current();
+        InitialStatePool initialStates = InitialStatePool.shared();
+        ResultCache cache = ResultCache.shared();
+        String key = null;
+        double[] values = null;
+        if (cache != null) {
+            key = cacheKey(variant, intensity, lift, hoursOfSleep, daysBetweenWorkouts,
+                    slowTwitchPercentage, days, max_round, random, initialStates);
+            values = cache.get(key);
         }
-
-        // combine the remaining hormones with the diffused hormones
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                patches[i][j].setAnabolicHormone(
-                        patches[i][j]
-                                .getAnabolicHormone()
-                                + bufferPatches[i][j].getAnabolicHormone()
-                );
-                patches[i][j].setCatabolicHormone(
-                        patches[i][j].getCatabolicHormone()
-                                + bufferPatches[i][j].getCatabolicHormone()
-                );
-                patches[i][j].balanceHormones();
+        if (values == null) {
+            EnsembleResult result = simulateRounds(intensity, lift, hoursOfSleep,
+                    daysBetweenWorkouts, slowTwitchPercentage, days, max_round, random,
+                    initialStates, 0, null);
+            values = summarize(result);
+            if (cache != null) {
+                cache.put(key, values);
             }
         }
-    }
 
-    /**
-     * Develops muscle for the simulation.
-     */
-    public void developMuscle() {
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                muscleFibers[i][j]
-                        .developMuscle(
-                                patches[i][j].getAnabolicHormone(),
-                                patches[i][j].getCatabolicHormone()
-                        );
-            }
+        Data curData = report(intensity, lift, hoursOfSleep, daysBetweenWorkouts,
+                slowTwitchPercentage, values, logger);
+        if (bestData == null || curData.getMuscleMass() > bestData.getMuscleMass()) {
+            bestData = curData;
         }
+        return bestData;
     }
 
     /**
-     * Returns the muscle mass for the simulation.
-     * @return The muscle mass for the simulation.
+     * Simulates rounds of a combination of the current ModelVariant. The rounds run on
+     * streams split from {@code random} in order, or start from the states of
+     * {@code initialStates} from replicate {@code first}, so simulating the rounds of
+     * a combination in several calls, each adding to the result of the previous one,
+     * gives the same statistics as one call.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param days The number of days to simulate.
+     * @param rounds The number of rounds to simulate.
+     * @param random The random number generator the rounds are split from.
+     * @param initialStates The pool the rounds start from, or null.
+     * @param first The pooled state of the first round.
+     * @param previous The statistics of the earlier rounds the rounds are added to, or
+     *                 null.
+     * @return The statistics of the rounds, with the earlier ones if any.
      */
-    public double muscleMass() {
-        double mass = 0;
-        for (int i = 0; i < patches.length; i++) {
-            for (int j = 0; j < patches[0].length; j++) {
-                mass += muscleFibers[i][j].getFiberSize();
-            }
+    static EnsembleResult simulateRounds(int intensity, boolean lift, double hoursOfSleep,
+                                         int daysBetweenWorkouts, int slowTwitchPercentage,
+                                         int days, int rounds, SimulationRandom random,
+                                         InitialStatePool initialStates, int first,
+                                         EnsembleResult previous) {
+        // The rounds of the base model are stepped together in lanes, each
+        // bit-identical to a FindBestComboSimulation on the same generator
+        ModelVariant variant = ModelVariant.current();
+        Ensemble ensemble = previous == null ? new Ensemble(rounds, days, false)
+                : new Ensemble(rounds, days, previous);
+        Ensemble.LaneFactory lanes = (roundRandom, roundStates) -> new LaneSimulation(
+                intensity,
+                lift,
+                hoursOfSleep,
+                daysBetweenWorkouts,
+                slowTwitchPercentage,
+                DEFAULT_GRID_SIZE,
+                roundRandom,
+                roundStates
+        );
+        Ensemble.ModelFactory models = (roundRandom, roundState) -> new FindBestComboSimulation(
+                intensity,
+                lift,
+                hoursOfSleep,
+                daysBetweenWorkouts,
+                slowTwitchPercentage,
+                variant,
+                roundRandom,
+                roundState
+        );
+        if (initialStates != null) {
+            // Every combination starts its rounds from the same pooled states
+            return variant.isBase()
+                    ? ensemble.runLanes(lanes, initialStates, first, LaneSimulation.DEFAULT_LANES)
+                    : ensemble.run(models, initialStates, first);
         }
-        // Assume Muscle Mass in the NetLogo plot is calculated as:
-        // sum of all fiber sizes / 100
-        return mass / 100.0;
+        return variant.isBase()
+                ? ensemble.runLanes(lanes, random, LaneSimulation.DEFAULT_LANES)
+                : ensemble.run(models, random);
     }
 
     /**
-     * Returns the average anabolic hormone for the simulation.
-     * @return The average anabolic hormone for the simulation.
+     * Returns the result cache key of a combination. Without lifting the intensity and
+     * the days between workouts are left out, since they do not change the result.
+     * @param variant The variant of the model.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param days The number of days to simulate.
+     * @param max_round The number of rounds to simulate.
+     * @param random The random number generator of the combination.
+     * @param initialStates The pool the rounds start from, or null.
+     * @return The key.
      */
-    public double averageAnabolicHormone() {
-        double total = 0;
-        for (int i = 0; i < patches.length; i++) {
-            for (int j = 0; j < patches[0].length; j++) {
-                total += patches[i][j].getAnabolicHormone();
-            }
-        }
-        return total / (patches.length * patches[0].length);
+    static String cacheKey(ModelVariant variant, int intensity, boolean lift,
+                           double hoursOfSleep, int daysBetweenWorkouts,
+                           int slowTwitchPercentage, int days, int max_round,
+                           SimulationRandom random, InitialStatePool initialStates) {
+        return ResultCache.key("combo", variant, lift ? intensity : 0, lift, hoursOfSleep,
+                lift ? daysBetweenWorkouts : 0, slowTwitchPercentage, days, max_round,
+                initialStates == null ? random.fingerprint()
+                        : "pool=" + initialStates.fingerprint());
     }
 
     /**
-     * Returns the average catabolic hormone for the simulation.
-     * @return The average catabolic hormone for the simulation.
+     * Returns the values reported for a combination: the mean of every metric on the
+     * final day, and the standard deviation and 95% confidence half-width of the
+     * muscle mass.
+     * @param result The statistics of the rounds of the combination.
+     * @return The values, in the order report reads them.
      */
-    public double averageCatabolicHormone() {
-        double total = 0;
-        for (int i = 0; i < patches.length; i++) {
-            for (int j = 0; j < patches[0].length; j++) {
-                total += patches[i][j].getCatabolicHormone();
-            }
-        }
-        return total / (patches.length * patches[0].length);
+    static double[] summarize(EnsembleResult result) {
+        return new double[] {
+                result.getMuscleMass().getMean(),
+                result.getAnabolicHormone().getMean(),
+                result.getCatabolicHormone().getMean(),
+                result.getMuscleMass().getStandardDeviation(),
+                result.getMuscleMass().getConfidenceHalfWidth()
+        };
     }
 
     /**
-     * Simulates the given parameters and returns the best data.
+     * Returns the data of a combination from its summarized values and logs it.
      * @param intensity The intensity of the workout.
      * @param lift Whether the person lifts or not.
      * @param hoursOfSleep The hours of sleep the person gets.
      * @param daysBetweenWorkouts The days between workouts.
      * @param slowTwitchPercentage The percentage of slow twitch muscles.
-     * @param days The number of days to simulate.
-     * @param max_round The number of rounds to simulate.
-     * @param bestData The best data found so far.
-     * @param logger The logger to log the results.
-     * @return The best data found.
+     * @param values The values returned by summarize.
+     * @param logger The logger to log the data.
+     * @return The data of the combination.
      */
-    public static Data simulate(int intensity,
-                                boolean lift, double hoursOfSleep,
-                                int daysBetweenWorkouts,
-                                int slowTwitchPercentage,
-                                int days,
-                                int max_round,
-                                Data bestData,
-                                Logger logger) {
-        double totalMuscleMass = 0.0;
-        double totalAnabolicHormone = 0.0;
-        double totalCatabolicHormone = 0.0;
-        for (int j = 0; j < max_round; j++) {
-            FindBestComboSimulation simulation = new FindBestComboSimulation(
-                    intensity,
-                    lift,
-                    hoursOfSleep,
-                    daysBetweenWorkouts,
-                    slowTwitchPercentage
-            );
-            double[] muscleMass = new double[days + 1];
-            double[] averageAnabolicHormone = new double[days + 1];
-            double[] averageCatabolicHormone = new double[days + 1];
-
-            muscleMass[0] = simulation.muscleMass();
-            averageAnabolicHormone[0] = simulation.averageAnabolicHormone();
-            averageCatabolicHormone[0] = simulation.averageCatabolicHormone();
-
-            // Run the simulation for the given number of days
-            for (int i = 1; i <= days; i++) {
-                simulation.performDailyActivity();
-                if (lift && i % daysBetweenWorkouts == 0) {
-                    simulation.liftWeights();
-                }
-                simulation.sleep();
-                simulation.regulateHormones();
-                simulation.developMuscle();
-
-                muscleMass[i] = simulation.muscleMass();
-                averageAnabolicHormone[i] = simulation.averageAnabolicHormone();
-                averageCatabolicHormone[i] = simulation.averageCatabolicHormone();
-            }
-
-            totalMuscleMass += muscleMass[days];
-            totalAnabolicHormone += averageAnabolicHormone[days];
-            totalCatabolicHormone += averageCatabolicHormone[days];
-        }
-        // Calculate the average muscle mass, anabolic hormone, and catabolic hormone
+    static Data report(int intensity, boolean lift, double hoursOfSleep,
+                       int daysBetweenWorkouts, int slowTwitchPercentage, double[] values,
+                       Logger logger) {
+        // Report the mean of every metric over the rounds
         Data curData =  new Data(
                 intensity,
                 lift,
                 hoursOfSleep,
                 daysBetweenWorkouts,
                 slowTwitchPercentage,
-                totalMuscleMass / days,
-                totalAnabolicHormone / 10,
-                totalCatabolicHormone / 10
+                values[0],
+                values[1],
+                values[2]
         );
+        curData.setMuscleMassStandardDeviation(values[3]);
+        curData.setMuscleMassConfidence(values[4]);
         logger.info("Current Data: " + curData.toString());
-        if (bestData == null || curData.getMuscleMass() > bestData.getMuscleMass()) {
-            bestData = curData;
-        }
-        return bestData;
+        return curData;
+    }
+
+    /**
+     * Logs how many days a planned sweep simulated.
+     * @param logger The logger.
+     * @param planner The planner of the sweep.
+     */
+    private static void logPlan(Logger logger, SweepPlanner planner) {
+        logger.info("Simulated days: " + planner.getSimulatedDays() + " of "
+                + planner.getExhaustiveDays() + " without planning");
     }
 
     /**
      * The main method for the FindBestComboSimulation class.
      * It takes command line arguments for the simulation parameters, runs the simulation,
      * and writes the results to a log file.
+     * The combinations are simulated in parallel on a ForkJoinPool; the optional fourth
+     * argument sets its number of threads and defaults to the number of processors.
+     * The optional fifth argument is the master seed; every combination draws from the
+     * stream of its hours of sleep, so the result does not depend on the number of
+     * threads.
+     * The optional sixth argument selects the search: "exhaustive" simulates max_round
+     * rounds of every combination, planned by a SweepPlanner so equivalent combinations
+     * and the days shared before the first workout are simulated once, "racing" prunes
+     * weak combinations early with a RacingSearch and "optimize" runs a CoordinateSearch
+     * within the budget given by the optional seventh argument: a number of simulated
+     * days, or seconds ending in "s" (by default a tenth of the days of the exhaustive
+     * sweep).
+     * When Java is run with {@code -Dcheckpoint=<file>} the exhaustive sweep records its
+     * finished combinations and best data in a SweepCheckpoint every checkpointEvery
+     * combinations (16 by default), and a sweep started with the checkpoint of the same
+     * arguments and seed only simulates the combinations that are left.
+     * The variant of the model that is swept is set by the exerciseProbability and
+     * irregularSleep system properties of ModelVariant; by default it is the base model.
+     * With {@code -DinitialStates=pool} every search starts the rounds of all
+     * combinations from the same states of an InitialStatePool.
      * @param args The command line arguments.
      */
     public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: java FindBestComboSimulation " +
+                    "<slowTwitchPercentage> <daysToSimulate> <maxRound> [threads] [seed] " +
+                    "[exhaustive|racing|optimize] [budgetDays|budgetSeconds s]");
+            return;
+        }
+
         Locale.setDefault(new Locale("en", "US"));
         int slowTwitchPercentage = Integer.parseInt(args[0]);
         int days = Integer.parseInt(args[1]);
         int max_round = Integer.parseInt(args[2]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : SimulationRandom.newSeed();
+        String mode = args.length > 5 ? args[5] : "exhaustive";
         Data bestData = null;
         Logger logger = Logger.getLogger("MyLog");
         FileHandler fh;
@@ -310,22 +364,67 @@ public class FindBestComboSimulation {
             e.printStackTrace();
         }
 
+        logger.info("Seed: " + seed);
+        logger.info("Model: " + ModelVariant.current());
+        InitialStatePool initialStates = InitialStatePool.configure(slowTwitchPercentage,
+                DEFAULT_GRID_SIZE, seed);
+        if (initialStates != null) {
+            logger.info("Initial states: pooled, shared by every combination");
+        }
+
         // Run the simulation for all possible combinations of parameters
-        for (int intensity = INIT_INTENSITY; intensity <= FINAL_INTENSITY; intensity++) {
-            for (double hoursOfSleep = INIT_HOURSOFSLEEP;
-                 hoursOfSleep <= FINAL_HOURSOFSLEEP; hoursOfSleep += 0.5) {
-                for (int daysBetweenWorkouts = INIT_DAYSBETWEENWORKOUTS;
-                     daysBetweenWorkouts <= FINAL_DAYSBETWEENWORKOUTS; daysBetweenWorkouts++) {
-                    bestData = simulate(intensity, false, hoursOfSleep,
-                            daysBetweenWorkouts, slowTwitchPercentage, days,
-                            max_round, bestData, logger);
-                    bestData = simulate(intensity, true, hoursOfSleep,
-                            daysBetweenWorkouts, slowTwitchPercentage, days,
-                            max_round, bestData, logger);
-                }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            if (mode.equalsIgnoreCase("optimize")) {
+                SearchBudget budget = args.length > 6 ? SearchBudget.parse(args[6])
+                        : new SearchBudget((long) ParameterCombo.COUNT * max_round * days / 10, 0);
+                bestData = new OptimizerSearch(slowTwitchPercentage, days, max_round, seed,
+                        logger, pool).run(new CoordinateSearch(new SimulationRandom(seed)),
+                        budget);
+                logger.info("Simulated days: " + budget.getSpentDays());
+            } else if (mode.equalsIgnoreCase("racing")) {
+                RacingSearch search = new RacingSearch(slowTwitchPercentage, days, max_round,
+                        seed, logger, pool);
+                bestData = search.run();
+                logger.info("Simulated days: " + search.getSimulatedDays() + " of "
+                        + search.getExhaustiveDays() + " for the exhaustive sweep");
+            } else if (SimulationCheckpoint.configuredFile() != null) {
+                // Continue the sweep saved in the checkpoint and keep it up to date
+                SweepCheckpoint checkpoint = SweepCheckpoint.open(
+                        SimulationCheckpoint.configuredFile(), slowTwitchPercentage, days,
+                        max_round, seed, ModelVariant.current(), initialStates != null,
+                        SimulationCheckpoint.configuredInterval(SweepCheckpoint.DEFAULT_INTERVAL));
+                logger.info("Resuming with " + checkpoint.getDoneCount() + " of "
+                        + ParameterCombo.COUNT + " combinations done");
+                SweepPlanner planner = new SweepPlanner(slowTwitchPercentage, days, max_round,
+                        seed, logger, checkpoint);
+                planner.run(pool);
+                checkpoint.save();
+                bestData = checkpoint.getBestData();
+                logPlan(logger, planner);
+            } else {
+                SweepPlanner planner = new SweepPlanner(slowTwitchPercentage, days, max_round,
+                        seed, logger, null);
+                bestData = planner.run(pool);
+                logPlan(logger, planner);
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            pool.shutdown();
+        }
+        if (bestData == null) {
+            // Only a search budget can end before the first combination
+            logger.info("Budget too small, nothing simulated");
+        } else {
+            logger.info("Best Data: " + bestData.toString());
+        }
+        ResultCache cache = ResultCache.shared();
+        if (cache != null) {
+            logger.info("Result cache: " + cache.getHits() + " hits, " + cache.getMisses()
+                    + " misses, " + cache.size() + " results stored");
         }
-        logger.info("Best Data: " + bestData.toString());
     }
 }
 
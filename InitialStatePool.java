@@ -0,0 +1,250 @@
+import java.util.ArrayList;
+
+/**
+ * The InitialStatePool class holds the starting states shared by every combination of
+ * a search, so combinations are compared on common random numbers: replicate r of
+ * every combination starts from the same grid of muscle fibers and then draws its
+ * lifts from the same stream. Differences between combinations are then not buried
+ * in the noise of their starting grids, and fewer replicates rank them reliably.
+ *
+ * The maximum size of a fiber is 4 plus the number of its 20 draws that are fast
+ * twitch, which is binomially distributed, so the pool samples it with one draw from
+ * the cumulative distribution instead of 20 draws. The states are drawn once, in
+ * replicate order, and copied into every grid started from them, so creating a grid
+ * costs two array copies instead of 21 draws per cell.
+ *
+ * The pool is used by the searches of FindBestComboSimulation when Java is run with
+ * {@code -DinitialStates=pool}. Its states have the same distribution as the grids
+ * drawn by MuscleGrid, but other values, so the results differ from those without
+ * the pool. Instances are thread-safe.
+ */
+public class InitialStatePool {
+    static final String PROPERTY = "initialStates"; // The system property enabling the pool
+    static final long POOL_STREAM = -1; // The stream of the master seed the pool draws from
+    private static final int FIBER_DRAWS = 20; // The draws deciding a maximum fiber size
+
+    private static volatile InitialStatePool shared; // The pool of the running search
+
+    private final int slowTwitchPercentage; // The percentage of slow twitch muscles
+    private final int gridSize; // The number of rows and columns of every state
+    private final long fingerprint; // Identifies the states, for result cache keys
+    private final double[] cumulative; // The probability of at most n fast twitch draws
+    private final SimulationRandom master; // The generator the replicates are split from
+    private final ArrayList<Replicate> states; // The starting state of every replicate
+
+    /**
+     * Constructs a new, empty InitialStatePool; states are drawn when first needed.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param gridSize The number of rows and columns of the grids.
+     * @param seed The master seed of the search.
+     */
+    public InitialStatePool(int slowTwitchPercentage, int gridSize, long seed) {
+        this.slowTwitchPercentage = slowTwitchPercentage;
+        this.gridSize = gridSize;
+        this.master = SimulationRandom.forStream(seed, POOL_STREAM);
+        this.fingerprint = master.fingerprint();
+        this.states = new ArrayList<>();
+
+        // A draw is fast twitch when it exceeds the slow twitch percentage
+        double p = Math.min(Math.max(1 - slowTwitchPercentage / 100.0, 0), 1);
+        this.cumulative = new double[FIBER_DRAWS + 1];
+        double sum = 0;
+        double choose = 1;
+        for (int n = 0; n <= FIBER_DRAWS; n++) {
+            sum += choose * Math.pow(p, n) * Math.pow(1 - p, FIBER_DRAWS - n);
+            cumulative[n] = sum;
+            choose = choose * (FIBER_DRAWS - n) / (n + 1);
+        }
+        cumulative[FIBER_DRAWS] = 1.0;
+    }
+
+    /**
+     * Enables the shared pool of a search if Java was run with
+     * {@code -DinitialStates=pool}.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param gridSize The number of rows and columns of the grids.
+     * @param seed The master seed of the search.
+     * @return The shared pool, or null if it is not enabled.
+     */
+    public static InitialStatePool configure(int slowTwitchPercentage, int gridSize,
+                                             long seed) {
+        String value = System.getProperty(PROPERTY);
+        if (value == null || value.equals("fresh")) {
+            shared = null;
+        } else if (value.equals("pool")) {
+            shared = new InitialStatePool(slowTwitchPercentage, gridSize, seed);
+        } else {
+            throw new IllegalArgumentException("Unknown initial states: " + value
+                    + " (expected pool or fresh)");
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the pool the searches start their replicates from.
+     * @return The shared pool, or null if every replicate draws its own grid.
+     */
+    public static InitialStatePool shared() {
+        return shared;
+    }
+
+    /**
+     * Sets the pool the searches start their replicates from.
+     * @param pool The pool, or null to draw a grid per replicate.
+     */
+    public static void setShared(InitialStatePool pool) {
+        shared = pool;
+    }
+
+    /**
+     * Returns the percentage of slow twitch muscles of the states.
+     * @return The slow twitch percentage.
+     */
+    public int getSlowTwitchPercentage() {
+        return slowTwitchPercentage;
+    }
+
+    /**
+     * Returns the number of rows and columns of the states.
+     * @return The grid size.
+     */
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * Returns a digest identifying the states of the pool, so results simulated from
+     * it can be looked up later.
+     * @return The fingerprint of the pool.
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the starting state of a replicate. Replicate r of every combination gets
+     * the same state, whose fibers are copied into its grid and whose generator it
+     * draws from.
+     * @param replicate The number of the replicate.
+     * @return The starting state of the replicate.
+     */
+    public Replicate replicate(int replicate) {
+        synchronized (states) {
+            // Draw the missing states in order, so they do not depend on the callers
+            while (states.size() <= replicate) {
+                states.add(draw(master.split()));
+            }
+            return states.get(replicate);
+        }
+    }
+
+    /**
+     * Draws a starting state in row-major order and keeps the generator after it.
+     * @param rng The generator of the replicate.
+     * @return The state.
+     */
+    private Replicate draw(SimulationRandom rng) {
+        int cellCount = gridSize * gridSize;
+        double[] maxSize = new double[cellCount];
+        double[] fiberSize = new double[cellCount];
+        for (int k = 0; k < cellCount; k++) {
+            double u = rng.nextDouble();
+            int fastTwitch = 0;
+            while (fastTwitch < FIBER_DRAWS && u >= cumulative[fastTwitch]) {
+                fastTwitch++;
+            }
+            double max = 4.0 + fastTwitch;
+            maxSize[k] = max;
+            fiberSize[k] = MuscleGrid.regulateFiber((0.2 + rng.nextDouble() * 0.4) * max, max);
+        }
+        return new Replicate(rng, this, maxSize, fiberSize);
+    }
+
+    /**
+     * The Replicate class is the starting state of one replicate: the muscle fibers its
+     * grid starts from and the generator it continues with. It is passed to MuscleGrid
+     * and LaneSimulation next to the generator, and they copy the fibers instead of
+     * drawing new ones. A state is never modified, so it is shared by every
+     * combination.
+     */
+    public static final class Replicate {
+        private final SimulationRandom random; // The generator after the draws, never drawn from
+        private final InitialStatePool pool; // The pool the state was drawn by
+        private final double[] maxSize; // The maximum fiber size of every cell, shared
+        private final double[] fiberSize; // The starting fiber size of every cell, shared
+
+        /**
+         * Constructs a new Replicate.
+         * @param random The generator state the replicate continues from.
+         * @param pool The pool the state was drawn by.
+         * @param maxSize The maximum fiber size of every cell.
+         * @param fiberSize The starting fiber size of every cell.
+         */
+        private Replicate(SimulationRandom random, InitialStatePool pool, double[] maxSize,
+                          double[] fiberSize) {
+            this.random = random;
+            this.pool = pool;
+            this.maxSize = maxSize;
+            this.fiberSize = fiberSize;
+        }
+
+        /**
+         * Returns a new generator for a simulation of the replicate. Every call returns
+         * a generator at the start of the replicate's stream, so replicate r of every
+         * combination draws the same values.
+         * @return The generator of the replicate.
+         */
+        public SimulationRandom random() {
+            return random.copy();
+        }
+
+        /**
+         * Copies the starting fibers into row-major grid arrays.
+         * @param gridSize The number of rows and columns of the grid.
+         * @param slowTwitchPercentage The slow twitch percentage of the grid.
+         * @param max The maximum fiber sizes of the grid.
+         * @param fiber The fiber sizes of the grid.
+         * @throws IllegalArgumentException If the state was drawn for another grid.
+         */
+        void copyInto(int gridSize, int slowTwitchPercentage, double[] max,
+                      double[] fiber) {
+            check(gridSize, slowTwitchPercentage);
+            System.arraycopy(maxSize, 0, max, 0, maxSize.length);
+            System.arraycopy(fiberSize, 0, fiber, 0, fiberSize.length);
+        }
+
+        /**
+         * Copies the starting fibers into one lane of interleaved lane arrays.
+         * @param gridSize The number of rows and columns of the grid.
+         * @param slowTwitchPercentage The slow twitch percentage of the grid.
+         * @param max The maximum fiber sizes of every cell and lane.
+         * @param fiber The fiber sizes of every cell and lane.
+         * @param lane The lane to fill.
+         * @param lanes The number of lanes.
+         * @throws IllegalArgumentException If the state was drawn for another grid.
+         */
+        void copyInto(int gridSize, int slowTwitchPercentage, double[] max, double[] fiber,
+                      int lane, int lanes) {
+            check(gridSize, slowTwitchPercentage);
+            for (int k = 0, x = lane; k < maxSize.length; k++, x += lanes) {
+                max[x] = maxSize[k];
+                fiber[x] = fiberSize[k];
+            }
+        }
+
+        /**
+         * Checks that the state was drawn for a grid.
+         * @param gridSize The number of rows and columns of the grid.
+         * @param slowTwitchPercentage The slow twitch percentage of the grid.
+         * @throws IllegalArgumentException If the state was drawn for another grid.
+         */
+        private void check(int gridSize, int slowTwitchPercentage) {
+            if (gridSize != pool.gridSize || slowTwitchPercentage != pool.slowTwitchPercentage) {
+                throw new IllegalArgumentException("The initial state was drawn for a "
+                        + pool.gridSize + " grid with " + pool.slowTwitchPercentage
+                        + "% slow twitch fibers, not a " + gridSize + " grid with "
+                        + slowTwitchPercentage + "%");
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * The KahanSum class accumulates a sum of doubles with Kahan compensated summation.
+ * The rounding error of every addition is kept in a compensation term and fed back
+ * into the next one, so the error of a long sum stays at a few ulps instead of
+ * growing with the number of terms.
+ * Hot loops can copy the sum and compensation into locals with getSum and
+ * getCompensation, run the same recurrence and store them back with set.
+ */
+public class KahanSum {
+    private double sum; // The running sum
+    private double compensation; // The negated low-order bits lost by the running sum
+
+    /**
+     * Adds a value to the sum.
+     * @param value The value to add.
+     */
+    public void add(double value) {
+        double y = value - compensation;
+        double t = sum + y;
+        compensation = (t - sum) - y;
+        sum = t;
+    }
+
+    /**
+     * Adds another compensated sum, including its compensation, to this one.
+     * @param other The sum to add.
+     */
+    public void add(KahanSum other) {
+        add(other.sum);
+        add(-other.compensation);
+    }
+
+    /**
+     * Adds the values {@code [from, to)} of an array to the sum, in index order.
+     * @param values The array holding the values.
+     * @param from The first index, inclusive.
+     * @param to The last index, exclusive.
+     */
+    public void add(double[] values, int from, int to) {
+        double s = sum;
+        double c = compensation;
+        for (int k = from; k < to; k++) {
+            double y = values[k] - c;
+            double t = s + y;
+            c = (t - s) - y;
+            s = t;
+        }
+        sum = s;
+        compensation = c;
+    }
+
+    /**
+     * Resets the sum to zero.
+     */
+    public void reset() {
+        sum = 0;
+        compensation = 0;
+    }
+
+    /**
+     * Returns the compensated value of the sum.
+     * @return The sum.
+     */
+    public double value() {
+        return sum - compensation;
+    }
+
+    /**
+     * Returns the running sum without its compensation.
+     * @return The running sum.
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the compensation term.
+     * @return The compensation term.
+     */
+    public double getCompensation() {
+        return compensation;
+    }
+
+    /**
+     * Sets the running sum and its compensation, after a loop that inlined add.
+     * @param sum The running sum.
+     * @param compensation The compensation term.
+     */
+    public void set(double sum, double compensation) {
+        this.sum = sum;
+        this.compensation = compensation;
+    }
+}
@@ -0,0 +1,528 @@
+import java.util.Arrays;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The LaneSimulation class runs several replicates of one configuration of the base
+ * model, as simulated by FindBestComboSimulation, in lockstep. The state of the
+ * replicates, called lanes, is interleaved: the value of cell k in lane l is at index
+ * k * lanes + l, so daily activity, sleep, diffusion and muscle development apply
+ * the same arithmetic to the lanes of a cell with DoubleVector operations, as many lanes
+ * per instruction as the CPU holds doubles. The diffusion stencil reads the eight
+ * neighbours of a cell once for all lanes. The class uses the incubating vector API,
+ * so it is compiled and run with {@code --add-modules jdk.incubator.vector}.
+ *
+ * Every lane draws from its own generator in the order the corresponding
+ * FindBestComboSimulation would, and the phases and metrics repeat the arithmetic of
+ * its MuscleGrid exactly, lane by lane, so each lane is bit-identical to one replicate
+ * simulated on its own, unless the MathBackend approximates log10 or evaluates it with
+ * VectorOperators.LOG10. The fiber logarithms of daily activity are always reused by
+ * lifting, since that gives the same values. Instances are not thread-safe.
+ */
+public class LaneSimulation {
+    static final int DEFAULT_LANES = 8; // The replicates stepped together by default
+    private static final VectorSpecies<Double> SPECIES =
+            DoubleVector.SPECIES_PREFERRED; // The widest vectors of the CPU
+
+    private final int gridSize; // The number of rows and columns in the grid
+    private final int cellCount; // The number of cells in the grid
+    private final int lanes; // The number of replicates stepped together
+    private double[] anabolic; // The anabolic hormone of every cell and lane
+    private double[] catabolic; // The catabolic hormone of every cell and lane
+    private double[] anabolicNext; // The buffer receiving the diffused anabolic hormone
+    private double[] catabolicNext; // The buffer receiving the diffused catabolic hormone
+    private final double[] fiberSize; // The muscle fiber size of every cell and lane
+    private final double[] maxSize; // The maximum fiber size of every cell and lane
+    private final double[] logFiberSize; // The log10 of every fiber size, from daily activity
+    private final double[] logAnabolic; // The log10 of every anabolic hormone level
+    private final double[] logCatabolic; // The log10 of every catabolic hormone level
+    private final double[] received; // The diffused shares received by every lane of a cell
+    private final int[][] neighbours; // The first index of every neighbour of every cell
+    private final SimulationRandom[] random; // The random number generator of every lane
+    private final LiftSampler[] samplers; // The lift sampler of every lane, or null
+    private final MathBackend math; // How the logarithms are evaluated
+    private final int intensity; // The intensity of the workout
+    private final boolean lift; // Whether the person lifts or not
+    private final double hoursOfSleep; // The hours of sleep the person gets
+    private final int daysBetweenWorkouts; // The days between workouts
+
+    /**
+     * Constructs a new LaneSimulation with one lane per generator.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param gridSize The number of rows and columns of the grid.
+     * @param random The random number generator of every lane.
+     */
+    public LaneSimulation(int intensity, boolean lift, double hoursOfSleep,
+                          int daysBetweenWorkouts, int slowTwitchPercentage, int gridSize,
+                          SimulationRandom[] random) {
+        this(intensity, lift, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage,
+                gridSize, random, null);
+    }
+
+    /**
+     * Constructs a new LaneSimulation with one lane per generator whose lanes start from
+     * the muscle fibers of replicates of an InitialStatePool, when they are given.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param gridSize The number of rows and columns of the grid.
+     * @param random The random number generator of every lane.
+     * @param initialStates The pooled state of every lane, or null to draw the fibers.
+     */
+    public LaneSimulation(int intensity, boolean lift, double hoursOfSleep,
+                          int daysBetweenWorkouts, int slowTwitchPercentage, int gridSize,
+                          SimulationRandom[] random, InitialStatePool.Replicate[] initialStates) {
+        if (random.length == 0) {
+            throw new IllegalArgumentException("A lane simulation needs at least one lane");
+        }
+        this.intensity = intensity;
+        this.lift = lift;
+        this.hoursOfSleep = hoursOfSleep;
+        this.daysBetweenWorkouts = daysBetweenWorkouts;
+        this.gridSize = gridSize;
+        this.cellCount = gridSize * gridSize;
+        this.lanes = random.length;
+        this.random = random.clone();
+        this.samplers = newSamplers(lanes);
+        this.math = MathBackend.current();
+        int size = cellCount * lanes;
+        this.anabolic = new double[size];
+        this.catabolic = new double[size];
+        this.anabolicNext = new double[size];
+        this.catabolicNext = new double[size];
+        this.fiberSize = new double[size];
+        this.maxSize = new double[size];
+        this.logFiberSize = new double[size];
+        this.logAnabolic = new double[size];
+        this.logCatabolic = new double[size];
+        this.received = new double[lanes];
+
+        // The neighbours of every cell, in the order Patch.diffuse visits them
+        this.neighbours = new int[cellCount][];
+        int[] found = new int[8];
+        for (int i = 0; i < gridSize; i++) {
+            for (int j = 0; j < gridSize; j++) {
+                int count = 0;
+                for (int d = 0; d < 8; d++) {
+                    int ni = i + DiffusionKernel.DX[d];
+                    int nj = j + DiffusionKernel.DY[d];
+                    if (ni >= 0 && ni < gridSize && nj >= 0 && nj < gridSize) {
+                        found[count++] = (ni * gridSize + nj) * lanes;
+                    }
+                }
+                neighbours[i * gridSize + j] = Arrays.copyOf(found, count);
+            }
+        }
+
+        // Every lane draws its fibers in row-major order, like MuscleGrid, or copies
+        // those of its pooled replicate
+        Arrays.fill(anabolic, Patch.ANABOLIC_HORMONE_START);
+        Arrays.fill(catabolic, Patch.CATABOLIC_HORMONE_START);
+        for (int l = 0; l < lanes; l++) {
+            if (initialStates != null) {
+                initialStates[l].copyInto(gridSize, slowTwitchPercentage, maxSize, fiberSize,
+                        l, lanes);
+                continue;
+            }
+            SimulationRandom rng = random[l];
+            for (int k = 0; k < cellCount; k++) {
+                int x = k * lanes + l;
+                double max = 4.0;
+                for (int n = 0; n < 20; n++) {
+                    if (rng.nextDouble() * 100.0 > slowTwitchPercentage) {
+                        max++;
+                    }
+                }
+                maxSize[x] = max;
+                fiberSize[x] = MuscleGrid.regulateFiber((0.2 + rng.nextDouble() * 0.4) * max,
+                        max);
+            }
+        }
+    }
+
+    /**
+     * Constructs a copy of a LaneSimulation with another workout schedule. The state
+     * and the generators are copied, so the copy continues independently from the
+     * same point.
+     * @param other The simulation to copy.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param daysBetweenWorkouts The days between workouts.
+     */
+    private LaneSimulation(LaneSimulation other, int intensity, boolean lift,
+                           int daysBetweenWorkouts) {
+        this.intensity = intensity;
+        this.lift = lift;
+        this.hoursOfSleep = other.hoursOfSleep;
+        this.daysBetweenWorkouts = daysBetweenWorkouts;
+        this.gridSize = other.gridSize;
+        this.cellCount = other.cellCount;
+        this.lanes = other.lanes;
+        this.math = other.math;
+        this.random = new SimulationRandom[lanes];
+        for (int l = 0; l < lanes; l++) {
+            random[l] = other.random[l].copy();
+        }
+        this.samplers = other.samplers == null ? null : newSamplers(lanes);
+        this.anabolic = other.anabolic.clone();
+        this.catabolic = other.catabolic.clone();
+        this.anabolicNext = new double[anabolic.length];
+        this.catabolicNext = new double[catabolic.length];
+        this.fiberSize = other.fiberSize.clone();
+        this.maxSize = other.maxSize.clone();
+        this.logFiberSize = new double[fiberSize.length];
+        this.logAnabolic = new double[fiberSize.length];
+        this.logCatabolic = new double[fiberSize.length];
+        this.received = new double[lanes];
+        this.neighbours = other.neighbours;
+    }
+
+    /**
+     * Returns a copy of the lanes at their current day that continues with another
+     * workout schedule. Schedules that have not lifted yet share every earlier day, so
+     * a sweep can simulate those days once and fork at the first workout.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @return The copy.
+     */
+    public LaneSimulation fork(int intensity, boolean lift, int daysBetweenWorkouts) {
+        return new LaneSimulation(this, intensity, lift, daysBetweenWorkouts);
+    }
+
+    /**
+     * Returns the number of lanes.
+     * @return The number of replicates stepped together.
+     */
+    public int getLanes() {
+        return lanes;
+    }
+
+    /**
+     * Simulates one day in every lane: daily activity, lifting on workout days, sleep,
+     * hormone regulation and muscle development.
+     * @param day The number of the day, starting at 1.
+     */
+    public void step(int day) {
+        performDailyActivity();
+        if (lift && day % daysBetweenWorkouts == 0) {
+            liftWeights();
+        }
+        sleep();
+        regulateHormones();
+        developMuscle();
+    }
+
+    /**
+     * Updates the hormones of every cell and lane based on daily activities, keeping
+     * the logarithms of the fiber sizes for lifting, which does not change them.
+     */
+    private void performDailyActivity() {
+        log10(fiberSize, logFiberSize);
+        int x = 0;
+        for (int bound = SPECIES.loopBound(fiberSize.length); x < bound;
+                x += SPECIES.length()) {
+            DoubleVector logSize = DoubleVector.fromArray(SPECIES, logFiberSize, x);
+            DoubleVector.fromArray(SPECIES, anabolic, x).add(logSize.mul(2.5))
+                    .intoArray(anabolic, x);
+            DoubleVector.fromArray(SPECIES, catabolic, x).add(logSize.mul(2.0))
+                    .intoArray(catabolic, x);
+        }
+        for (; x < fiberSize.length; x++) {
+            anabolic[x] += 2.5 * logFiberSize[x];
+            catabolic[x] += 2.0 * logFiberSize[x];
+        }
+    }
+
+    /**
+     * Takes the base 10 logarithm of every value with the MathBackend, a vector of
+     * lanes at a time if it evaluates VectorOperators.LOG10.
+     * @param values The values.
+     * @param logs The array receiving the logarithms.
+     */
+    private void log10(double[] values, double[] logs) {
+        int x = 0;
+        if (math.isVectorized()) {
+            for (int bound = SPECIES.loopBound(values.length); x < bound;
+                    x += SPECIES.length()) {
+                DoubleVector.fromArray(SPECIES, values, x).lanewise(VectorOperators.LOG10)
+                        .intoArray(logs, x);
+            }
+        }
+        for (; x < values.length; x++) {
+            logs[x] = math.log10(values[x]);
+        }
+    }
+
+    /**
+     * Returns a lift sampler per lane when the current sampling skips to the activated
+     * cells.
+     * @param lanes The number of lanes.
+     * @return The samplers, or null if every cell draws its activation.
+     */
+    private static LiftSampler[] newSamplers(int lanes) {
+        if (!LiftSampler.isSkipping()) {
+            return null;
+        }
+        LiftSampler[] samplers = new LiftSampler[lanes];
+        for (int l = 0; l < lanes; l++) {
+            samplers[l] = new LiftSampler();
+        }
+        return samplers;
+    }
+
+    /**
+     * Updates the hormones of every cell and lane based on weight lifting. Each lane
+     * draws from its own generator, in cell order.
+     */
+    private void liftWeights() {
+        double probability = LiftSampler.probability(intensity);
+        if (samplers != null) {
+            // Every lane visits only its events, like MuscleGrid
+            for (int l = 0; l < lanes; l++) {
+                LiftSampler sampler = samplers[l];
+                sampler.start(probability, random[l], 0);
+                if (!sampler.isRare()) {
+                    int event = sampler.first();
+                    for (int k = 0; k < cellCount; k++) {
+                        if (k != event) {
+                            liftCell(k * lanes + l);
+                        } else {
+                            event = sampler.next(event);
+                        }
+                    }
+                    continue;
+                }
+                for (int event = sampler.first(); event < cellCount;
+                        event = sampler.next(event)) {
+                    liftCell(event * lanes + l);
+                }
+            }
+            return;
+        }
+        for (int k = 0; k < cellCount; k++) {
+            int base = k * lanes;
+            for (int l = 0; l < lanes; l++) {
+                if (random[l].nextDouble() < probability) {
+                    int x = base + l;
+                    anabolic[x] += logFiberSize[x] * 55.0;
+                    catabolic[x] += logFiberSize[x] * 44.0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the hormones of a cell of a lane activated by weight lifting.
+     * @param x The index of the cell and lane.
+     */
+    private void liftCell(int x) {
+        anabolic[x] += logFiberSize[x] * 55.0;
+        catabolic[x] += logFiberSize[x] * 44.0;
+    }
+
+    /**
+     * Updates the hormones of every cell and lane based on sleep.
+     */
+    private void sleep() {
+        log10(anabolic, logAnabolic);
+        log10(catabolic, logCatabolic);
+        int x = 0;
+        for (int bound = SPECIES.loopBound(anabolic.length); x < bound;
+                x += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, anabolic, x)
+                    .sub(DoubleVector.fromArray(SPECIES, logAnabolic, x).mul(0.48)
+                            .mul(hoursOfSleep))
+                    .intoArray(anabolic, x);
+            DoubleVector.fromArray(SPECIES, catabolic, x)
+                    .sub(DoubleVector.fromArray(SPECIES, logCatabolic, x).mul(0.5)
+                            .mul(hoursOfSleep))
+                    .intoArray(catabolic, x);
+        }
+        for (; x < anabolic.length; x++) {
+            anabolic[x] -= 0.48 * logAnabolic[x] * hoursOfSleep;
+            catabolic[x] -= 0.5 * logCatabolic[x] * hoursOfSleep;
+        }
+    }
+
+    /**
+     * Diffuses the hormones of every lane to the neighbouring cells and balances them
+     * within the allowed limits, then makes the buffers the current hormones.
+     */
+    private void regulateHormones() {
+        diffuse(anabolic, anabolicNext, Patch.ANABOLIC_HORMONE_MIN, Patch.ANABOLIC_HORMONE_MAX);
+        diffuse(catabolic, catabolicNext,
+                Patch.CATABOLIC_HORMONE_MIN, Patch.CATABOLIC_HORMONE_MAX);
+        double[] swap = anabolic;
+        anabolic = anabolicNext;
+        anabolicNext = swap;
+        swap = catabolic;
+        catabolic = catabolicNext;
+        catabolicNext = swap;
+    }
+
+    /**
+     * Diffuses one hormone field of every lane like DiffusionKernel: each cell keeps
+     * what it does not share and receives the shares of its neighbours in the order
+     * Patch.diffuse visits them, then is clamped. The shares of a neighbour are added
+     * to a vector of lanes at once; lanes left over after the last full vector are
+     * diffused one at a time.
+     * @param src The hormone levels before diffusion.
+     * @param dst The array receiving the hormone levels after diffusion.
+     * @param min The lower limit of the hormone.
+     * @param max The upper limit of the hormone.
+     */
+    private void diffuse(double[] src, double[] dst, double min, double max) {
+        for (int k = 0; k < cellCount; k++) {
+            int[] cellNeighbours = neighbours[k];
+            int base = k * lanes;
+            int l = 0;
+            for (int bound = SPECIES.loopBound(lanes); l < bound; l += SPECIES.length()) {
+                DoubleVector sum = DoubleVector.zero(SPECIES);
+                for (int neighbour : cellNeighbours) {
+                    sum = sum.add(DoubleVector.fromArray(SPECIES, src, neighbour + l)
+                            .mul(Patch.DIFFUSE_RATE).div(8.0));
+                }
+                DoubleVector own = DoubleVector.fromArray(SPECIES, src, base + l);
+                DoubleVector share = own.mul(Patch.DIFFUSE_RATE).div(8.0);
+                DoubleVector remaining = own;
+                for (int c = 0; c < cellNeighbours.length; c++) {
+                    remaining = remaining.sub(share);
+                }
+                remaining.add(sum).min(max).max(min).intoArray(dst, base + l);
+            }
+            int first = l;
+            for (; l < lanes; l++) {
+                received[l] = 0.0;
+            }
+            for (int neighbour : cellNeighbours) {
+                for (l = first; l < lanes; l++) {
+                    received[l] += (src[neighbour + l] * Patch.DIFFUSE_RATE) / 8.0;
+                }
+            }
+            for (l = first; l < lanes; l++) {
+                double share = (src[base + l] * Patch.DIFFUSE_RATE) / 8.0;
+                double remaining = src[base + l];
+                for (int c = 0; c < cellNeighbours.length; c++) {
+                    remaining -= share;
+                }
+                dst[base + l] = Math.max(min, Math.min(remaining + received[l], max));
+            }
+        }
+    }
+
+    /**
+     * Develops the muscle fiber of every cell and lane based on its hormones.
+     */
+    private void developMuscle() {
+        log10(anabolic, logAnabolic);
+        log10(catabolic, logCatabolic);
+        int x = 0;
+        for (int bound = SPECIES.loopBound(fiberSize.length); x < bound;
+                x += SPECIES.length()) {
+            DoubleVector logC = DoubleVector.fromArray(SPECIES, logCatabolic, x);
+            DoubleVector logA = DoubleVector.fromArray(SPECIES, logAnabolic, x);
+            DoubleVector size = DoubleVector.fromArray(SPECIES, fiberSize, x)
+                    .sub(logC.mul(0.20))
+                    .add(logA.min(logC.mul(1.05)).mul(0.20));
+            // The clamp of MuscleGrid.regulateFiber
+            size.max(MuscleFiber.MIN_SIZE).min(DoubleVector.fromArray(SPECIES, maxSize, x))
+                    .intoArray(fiberSize, x);
+        }
+        for (; x < fiberSize.length; x++) {
+            double size = fiberSize[x];
+            size -= 0.20 * logCatabolic[x];
+            size += 0.20 * Math.min(logAnabolic[x], 1.05 * logCatabolic[x]);
+            fiberSize[x] = MuscleGrid.regulateFiber(size, maxSize[x]);
+        }
+    }
+
+    /**
+     * Returns the muscle mass of a lane.
+     * @param lane The number of the lane.
+     * @return The sum of the fiber sizes of the lane divided by 100.
+     */
+    public double muscleMass(int lane) {
+        return sum(fiberSize, lane) / 100.0;
+    }
+
+    /**
+     * Returns the average anabolic hormone level of a lane.
+     * @param lane The number of the lane.
+     * @return The average anabolic hormone level.
+     */
+    public double averageAnabolicHormone(int lane) {
+        return sum(anabolic, lane) / cellCount;
+    }
+
+    /**
+     * Returns the average catabolic hormone level of a lane.
+     * @param lane The number of the lane.
+     * @return The average catabolic hormone level.
+     */
+    public double averageCatabolicHormone(int lane) {
+        return sum(catabolic, lane) / cellCount;
+    }
+
+    /**
+     * Adds the values of one lane in row-major order with the compensated sums of a
+     * MuscleGrid of one band: a KahanSum of the cells, added into the total.
+     * @param values The interleaved values.
+     * @param lane The number of the lane.
+     * @return The sum.
+     */
+    private double sum(double[] values, int lane) {
+        KahanSum cells = new KahanSum();
+        for (int x = lane; x < values.length; x += lanes) {
+            cells.add(values[x]);
+        }
+        KahanSum total = new KahanSum();
+        total.add(cells);
+        return total.value();
+    }
+
+    /**
+     * Returns a read-only view of the metrics of one lane, so it can be added to
+     * statistics like any replicate. Lanes are only stepped together, by step.
+     * @param lane The number of the lane.
+     * @return The metrics of the lane.
+     */
+    public SimulationMetrics lane(int lane) {
+        return new SimulationMetrics() {
+            /**
+             * Returns the muscle mass of the lane.
+             * @return The muscle mass.
+             */
+            @Override
+            public double muscleMass() {
+                return LaneSimulation.this.muscleMass(lane);
+            }
+
+            /**
+             * Returns the average anabolic hormone level of the lane.
+             * @return The average anabolic hormone level.
+             */
+            @Override
+            public double averageAnabolicHormone() {
+                return LaneSimulation.this.averageAnabolicHormone(lane);
+            }
+
+            /**
+             * Returns the average catabolic hormone level of the lane.
+             * @return The average catabolic hormone level.
+             */
+            @Override
+            public double averageCatabolicHormone() {
+                return LaneSimulation.this.averageCatabolicHormone(lane);
+            }
+        };
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * The LiftPolicy interface is the lifting stage of a DayPipeline: it decides on which
+ * days the person is scheduled to work out, whether a scheduled workout is done and
+ * at which intensity.
+ * The pipeline only asks whether the workout is done on scheduled days, so a policy
+ * drawing that decision from the random number generator draws once per workout.
+ */
+public interface LiftPolicy {
+    /**
+     * Returns whether a workout is scheduled on a day.
+     * @param day The number of the day, starting at 1.
+     * @return Whether the person is scheduled to lift weights.
+     */
+    boolean isWorkoutDay(int day);
+
+    /**
+     * Returns whether a scheduled workout is done.
+     * @param random The random number generator of the simulation.
+     * @return Whether the person lifts weights.
+     */
+    boolean attends(SimulationRandom random);
+
+    /**
+     * Returns the intensity of the workout of a day.
+     * @param day The number of the day, starting at 1.
+     * @param intensity The intensity of the simulation.
+     * @return The intensity of the workout.
+     */
+    int intensity(int day, int intensity);
+
+    /**
+     * Returns the number of days after which the decisions of the policy repeat, or 0
+     * if they are drawn from the random number generator and never repeat.
+     * @return The period of the policy in days, or 0.
+     */
+    int period();
+
+    /**
+     * Returns the policy of the base model: a workout every daysBetweenWorkouts days,
+     * always done, or no workouts at all.
+     * @param lift Whether the person lifts or not.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @return The policy.
+     */
+    static LiftPolicy scheduled(boolean lift, int daysBetweenWorkouts) {
+        return new Scheduled(lift, daysBetweenWorkouts);
+    }
+
+    /**
+     * Returns the policy of DisorderedLiftSimulation: a workout every
+     * daysBetweenWorkouts days, done with the given probability.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param exerciseProbability The probability of doing a scheduled workout.
+     * @return The policy.
+     */
+    static LiftPolicy disordered(int daysBetweenWorkouts, double exerciseProbability) {
+        return new Disordered(daysBetweenWorkouts, exerciseProbability);
+    }
+
+    /**
+     * Returns the policy of a PlannedSimulation: the workouts of a compiled
+     * TrainingSchedule, each at its own intensity, always done.
+     * @param schedule The schedule.
+     * @return The policy.
+     */
+    static LiftPolicy planned(TrainingSchedule schedule) {
+        return new Planned(schedule);
+    }
+
+    /**
+     * The Scheduled class lifts on every scheduled day.
+     */
+    final class Scheduled implements LiftPolicy {
+        private final boolean lift; // Whether the person lifts or not
+        private final int daysBetweenWorkouts; // The days between workouts
+
+        /**
+         * Constructs a new Scheduled policy.
+         * @param lift Whether the person lifts or not.
+         * @param daysBetweenWorkouts The days between workouts.
+         */
+        Scheduled(boolean lift, int daysBetweenWorkouts) {
+            this.lift = lift;
+            this.daysBetweenWorkouts = daysBetweenWorkouts;
+        }
+
+        /**
+         * Returns whether a workout is scheduled on a day.
+         * @param day The number of the day, starting at 1.
+         * @return Whether the person lifts and the day is a workout day.
+         */
+        @Override
+        public boolean isWorkoutDay(int day) {
+            return lift && day % daysBetweenWorkouts == 0;
+        }
+
+        /**
+         * Returns true: every scheduled workout is done.
+         * @param random The random number generator of the simulation, not used.
+         * @return Always true.
+         */
+        @Override
+        public boolean attends(SimulationRandom random) {
+            return true;
+        }
+
+        /**
+         * Returns the intensity of the simulation: every workout is the same.
+         * @param day The number of the day, starting at 1.
+         * @param intensity The intensity of the simulation.
+         * @return The intensity of the simulation.
+         */
+        @Override
+        public int intensity(int day, int intensity) {
+            return intensity;
+        }
+
+        /**
+         * Returns the days between workouts, or 1 without lifting.
+         * @return The period of the policy in days.
+         */
+        @Override
+        public int period() {
+            return lift ? daysBetweenWorkouts : 1;
+        }
+    }
+
+    /**
+     * The Disordered class skips scheduled workouts at random.
+     */
+    final class Disordered implements LiftPolicy {
+        private final int daysBetweenWorkouts; // The days between workouts
+        private final double exerciseProbability; // The probability of exercising
+
+        /**
+         * Constructs a new Disordered policy.
+         * @param daysBetweenWorkouts The days between workouts.
+         * @param exerciseProbability The probability of doing a scheduled workout.
+         */
+        Disordered(int daysBetweenWorkouts, double exerciseProbability) {
+            this.daysBetweenWorkouts = daysBetweenWorkouts;
+            this.exerciseProbability = exerciseProbability;
+        }
+
+        /**
+         * Returns whether a workout is scheduled on a day.
+         * @param day The number of the day, starting at 1.
+         * @return Whether the day is a workout day.
+         */
+        @Override
+        public boolean isWorkoutDay(int day) {
+            return day % daysBetweenWorkouts == 0;
+        }
+
+        /**
+         * Returns whether a scheduled workout is done, drawing one float.
+         * @param random The random number generator of the simulation.
+         * @return Whether the draw is below the exercise probability.
+         */
+        @Override
+        public boolean attends(SimulationRandom random) {
+            return random.nextFloat() < exerciseProbability;
+        }
+
+        /**
+         * Returns the intensity of the simulation: every workout is the same.
+         * @param day The number of the day, starting at 1.
+         * @param intensity The intensity of the simulation.
+         * @return The intensity of the simulation.
+         */
+        @Override
+        public int intensity(int day, int intensity) {
+            return intensity;
+        }
+
+        /**
+         * Returns 0: the workouts done are random.
+         * @return Always 0.
+         */
+        @Override
+        public int period() {
+            return 0;
+        }
+    }
+
+    /**
+     * The Planned class lifts on the workout days of a TrainingSchedule.
+     */
+    final class Planned implements LiftPolicy {
+        private final TrainingSchedule schedule; // The compiled workouts
+
+        /**
+         * Constructs a new Planned policy.
+         * @param schedule The schedule.
+         */
+        Planned(TrainingSchedule schedule) {
+            this.schedule = schedule;
+        }
+
+        /**
+         * Returns whether the schedule has a workout on a day.
+         * @param day The number of the day, from 1 to the last day of the schedule.
+         * @return Whether the day is a workout day.
+         */
+        @Override
+        public boolean isWorkoutDay(int day) {
+            return schedule.isWorkoutDay(day);
+        }
+
+        /**
+         * Returns true: every planned workout is done.
+         * @param random The random number generator of the simulation, not used.
+         * @return Always true.
+         */
+        @Override
+        public boolean attends(SimulationRandom random) {
+            return true;
+        }
+
+        /**
+         * Returns the intensity the schedule gives the workout of a day.
+         * @param day The number of the day, from 1 to the last day of the schedule.
+         * @param intensity The intensity of the simulation, not used.
+         * @return The intensity of the workout.
+         */
+        @Override
+        public int intensity(int day, int intensity) {
+            return schedule.intensity(day);
+        }
+
+        /**
+         * Returns the period of the schedule, which also covers its nights.
+         * @return The period of the policy in days.
+         */
+        @Override
+        public int period() {
+            return schedule.period();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * The LiftSampler class decides which cells a workout activates. A cell is activated
+ * with probability (intensity / 100)^2, the same for the whole grid, so the
+ * probability is computed once per workout.
+ * <ul>
+ * <li>"cells" draws one value per cell, like Patch. This is the default.</li>
+ * <li>"skip" draws the gaps between activated cells from the geometric distribution,
+ * so a workout costs one draw per activated cell instead of one per cell, and visits
+ * only those cells. When more than three quarters of the cells are activated it draws
+ * the gaps between the cells that are not activated instead, so a workout never
+ * draws for more than about three quarters of the cells, and for none at intensity
+ * 100. The activated cells have exactly the same distribution as with "cells", but
+ * other values for the same seed.</li>
+ * </ul>
+ * The sampling is chosen by running Java with {@code -DliftSampling=<name>}; grids take
+ * the current sampling when they are constructed. A sampler walks the cells of one
+ * workout in increasing order, so the fused and the phase by phase steps draw the same
+ * values. Instances are not thread-safe; every band or lane has its own.
+ */
+public final class LiftSampler {
+    static final String PROPERTY = "liftSampling"; // The system property naming the sampling
+    private static final int TABLE_SIZE = 64; // The gaps drawn from the table
+    private static final int GUIDE_SIZE = 64; // The intervals of the guide to the table
+    private static final double RARE_MAX = 0.75; // The largest probability of drawn activations
+
+    private static volatile boolean skipping = parse(System.getProperty(PROPERTY, "cells"));
+
+    private SimulationRandom random; // The generator of the current workout
+    private double probability = Double.NaN; // The activation probability of the workout
+    private boolean rare; // Whether the drawn events are activations, not inactive cells
+    private double logMiss; // The log of the probability that a cell is not an event
+    private final double[] cumulative; // The probability of a gap of at most g cells
+    private final int[] guide; // The smallest gap of every interval of the draws
+    private int next; // The next cell that is an event
+
+    /**
+     * Constructs a new LiftSampler.
+     */
+    public LiftSampler() {
+        this.cumulative = new double[TABLE_SIZE];
+        this.guide = new int[GUIDE_SIZE];
+    }
+
+    /**
+     * Returns whether a sampling name selects geometric skipping.
+     * @param name "cells" or "skip".
+     * @return Whether the name is "skip".
+     */
+    public static boolean parse(String name) {
+        switch (name.toLowerCase()) {
+            case "cells":
+                return false;
+            case "skip":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown lift sampling: " + name);
+        }
+    }
+
+    /**
+     * Returns whether grids constructed from now on skip to the activated cells.
+     * @return Whether the sampling is "skip".
+     */
+    public static boolean isSkipping() {
+        return skipping;
+    }
+
+    /**
+     * Sets whether grids constructed from now on skip to the activated cells.
+     * @param skip Whether the sampling is "skip".
+     */
+    public static void setSkipping(boolean skip) {
+        skipping = skip;
+    }
+
+    /**
+     * Returns the probability that a workout activates a cell.
+     * @param intensity The intensity of the workout.
+     * @return The activation probability.
+     */
+    public static double probability(int intensity) {
+        return Math.pow(intensity / 100.0, 2);
+    }
+
+    /**
+     * Starts a workout, drawing the first event at or after the first cell.
+     * @param probability The activation probability of the workout.
+     * @param random The generator the workout draws from.
+     * @param firstCell The first cell the workout visits.
+     */
+    public void start(double probability, SimulationRandom random, int firstCell) {
+        if (probability != this.probability) {
+            this.probability = probability;
+            rare = probability <= RARE_MAX;
+            double event = rare ? probability : 1 - probability;
+            logMiss = event > 0 ? Math.log1p(-event) : 0;
+            for (int g = 0; g < TABLE_SIZE; g++) {
+                cumulative[g] = -Math.expm1((g + 1) * logMiss);
+            }
+            for (int j = 0, g = 0; j < GUIDE_SIZE; j++) {
+                while (g < TABLE_SIZE && cumulative[g] <= (double) j / GUIDE_SIZE) {
+                    g++;
+                }
+                guide[j] = g;
+            }
+        }
+        this.random = random;
+        next = gap(firstCell);
+    }
+
+    /**
+     * Returns whether the events are the activated cells; otherwise they are the cells
+     * that are not activated.
+     * @return Whether the events are activations.
+     */
+    public boolean isRare() {
+        return rare;
+    }
+
+    /**
+     * Returns the first event of the workout.
+     * @return The cell of the event, or Integer.MAX_VALUE if there is none.
+     */
+    public int first() {
+        return next;
+    }
+
+    /**
+     * Draws the event after an event. Walking the events with first and next draws the
+     * same values as visiting every cell with activates.
+     * @param event The cell of the current event.
+     * @return The cell of the next event, or Integer.MAX_VALUE if there is none.
+     */
+    public int next(int event) {
+        next = gap(event + 1);
+        return next;
+    }
+
+    /**
+     * Returns whether the workout activates a cell. The cells must be visited one by
+     * one, in increasing order, from the first cell, like the fused step does.
+     * @param cell The cell.
+     * @return Whether the cell is activated.
+     */
+    public boolean activates(int cell) {
+        if (cell < next) {
+            return !rare;
+        }
+        next = gap(cell + 1);
+        return rare;
+    }
+
+    /**
+     * Returns the next event at or after a cell: the cell plus a geometric number of
+     * cells that are not events. The number is looked up in the table of the
+     * cumulative distribution from the guide entry of the draw, which is at most a few
+     * entries away, or taken from the logarithm of the same draw beyond the table.
+     * @param cell The first cell that can be an event.
+     * @return The cell of the event, or Integer.MAX_VALUE if there is none.
+     */
+    private int gap(int cell) {
+        if (logMiss == 0) {
+            // Every cell, or none, is activated; nothing is drawn
+            return Integer.MAX_VALUE;
+        }
+        double u = random.nextDouble();
+        int g = guide[(int) (u * GUIDE_SIZE)];
+        while (g < TABLE_SIZE && u >= cumulative[g]) {
+            g++;
+        }
+        if (g < TABLE_SIZE) {
+            return cell + g;
+        }
+        double skipped = Math.floor(Math.log1p(-u) / logMiss);
+        return (int) Math.min(cell + Math.max(skipped, TABLE_SIZE), Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,122 @@
+import java.util.Locale;
+
+/**
+ * The MathAccuracyReport class measures the MathBackend backends: the error of the
+ * approximate log10 on the hormone and fiber ranges of the model, and how far each
+ * backend moves the final muscle mass of simulations compared with the exact one.
+ * Every run is simulated once per backend from the same seed; lifting draws the same
+ * number of random values whatever the hormone levels, so the runs only differ by the
+ * arithmetic of the logarithms.
+ */
+public class MathAccuracyReport {
+    private static final MathBackend[] BACKENDS = {
+            MathBackend.EXACT, MathBackend.CACHED, MathBackend.APPROXIMATE
+    }; // The backends compared, the reference first
+
+    /**
+     * Returns the largest absolute error of the approximate log10 over a range, sampled
+     * at evenly spaced points and at random points.
+     * @param from The lower end of the range.
+     * @param to The upper end of the range.
+     * @param random The random number generator choosing the random points.
+     * @return The largest absolute error found.
+     */
+    static double maxLog10Error(double from, double to, SimulationRandom random) {
+        int points = 2_000_000;
+        double maxError = 0;
+        for (int k = 0; k <= points; k++) {
+            double x = from + (to - from) * k / points;
+            maxError = Math.max(maxError,
+                    Math.abs(MathBackend.approximateLog10(x) - Math.log10(x)));
+            double y = from + (to - from) * random.nextDouble();
+            maxError = Math.max(maxError,
+                    Math.abs(MathBackend.approximateLog10(y) - Math.log10(y)));
+        }
+        return maxError;
+    }
+
+    /**
+     * Simulates a run with the given backend and returns its final muscle mass.
+     * @param backend The backend of the run.
+     * @param combo The parameters of the run.
+     * @param days The number of days to simulate.
+     * @param seed The seed of the run.
+     * @return The final muscle mass.
+     */
+    static double finalMuscleMass(MathBackend backend, ParameterCombo combo, int days, long seed) {
+        MathBackend previous = MathBackend.current();
+        MathBackend.setCurrent(backend);
+        try {
+            Simulation simulation = new Simulation(combo.getIntensity(), combo.isLift(),
+                    combo.getHoursOfSleep(), combo.getDaysBetweenWorkouts(), 50,
+                    new SimulationRandom(seed));
+            for (int i = 1; i <= days; i++) {
+                simulation.setTrackMetrics(i == days);
+                simulation.step(i);
+            }
+            return simulation.muscleMass();
+        } finally {
+            MathBackend.setCurrent(previous);
+        }
+    }
+
+    /**
+     * The main method for the MathAccuracyReport class.
+     * The optional arguments are the number of days of every run (365 by default), the
+     * number of runs (100) and the seed choosing the parameters of the runs.
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        int days = args.length > 0 ? Integer.parseInt(args[0]) : 365;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        SimulationRandom random = new SimulationRandom(seed);
+
+        System.out.printf(Locale.ROOT, "Approximate log10, bound %.2e:%n", MathBackend.MAX_ERROR);
+        System.out.printf(Locale.ROOT, "  hormones [50, 250]: max error %.2e%n",
+                maxLog10Error(50, 250, random));
+        System.out.printf(Locale.ROOT, "  fibers [1, 24]:     max error %.2e%n",
+                maxLog10Error(1, 24, random));
+
+        // Every run with every backend, on the same parameters and seed
+        ParameterCombo[] combos = new ParameterCombo[runs];
+        long[] seeds = new long[runs];
+        for (int r = 0; r < runs; r++) {
+            combos[r] = ParameterCombo.fromIndex(
+                    (int) (random.nextDouble() * ParameterCombo.COUNT));
+            seeds[r] = random.nextLong();
+        }
+        double[][] mass = new double[BACKENDS.length][runs];
+        double[] seconds = new double[BACKENDS.length];
+        for (int round = 0; round < 2; round++) {
+            // The first round warms up the JIT compiler; the second is timed
+            for (int b = 0; b < BACKENDS.length; b++) {
+                long start = System.nanoTime();
+                for (int r = 0; r < runs; r++) {
+                    mass[b][r] = finalMuscleMass(BACKENDS[b], combos[r], days, seeds[r]);
+                }
+                seconds[b] = (System.nanoTime() - start) / 1e9;
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "Final muscle mass of %d runs of %d days:%n", runs, days);
+        for (int b = 0; b < BACKENDS.length; b++) {
+            double maxDifference = 0;
+            double meanDifference = 0;
+            double maxRelative = 0;
+            int identical = 0;
+            for (int r = 0; r < runs; r++) {
+                double difference = Math.abs(mass[b][r] - mass[0][r]);
+                maxDifference = Math.max(maxDifference, difference);
+                meanDifference += difference / runs;
+                maxRelative = Math.max(maxRelative, difference / Math.abs(mass[0][r]));
+                if (mass[b][r] == mass[0][r]) {
+                    identical++;
+                }
+            }
+            System.out.printf(Locale.ROOT, "  %-11s %6.2f s  identical %d/%d  mean |diff| %.2e"
+                            + "  max |diff| %.2e  max relative %.2e%n", BACKENDS[b].getName(),
+                    seconds[b], identical, runs, meanDifference, maxDifference, maxRelative);
+        }
+    }
+}
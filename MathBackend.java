@@ -0,0 +1,180 @@
+/**
+ * The MathBackend class selects how the grid kernels evaluate log10, the most
+ * expensive operation of a simulated day.
+ * <ul>
+ * <li>"exact" calls Math.log10 wherever the model takes a logarithm.</li>
+ * <li>"cached" also calls Math.log10, but takes the logarithm of every fiber size only
+ * once a day: lifting reuses the values of daily activity, which does not change the
+ * fibers. The results are identical to "exact". This is the default.</li>
+ * <li>"approximate" reuses the fiber logarithms too and evaluates every log10 from a
+ * table of log2 over the top TABLE_BITS bits of the mantissa with linear
+ * interpolation. For every positive normal double, which includes the hormone range
+ * [50, 250] and the fiber range [1, 24], the absolute error is at most MAX_ERROR.</li>
+ * <li>"vector" is "cached" in grids, but LaneSimulation evaluates its logarithms with
+ * VectorOperators.LOG10, a vector of lanes at a time. Those can differ from
+ * Math.log10 in the last bit, depending on the CPU, so sweeps and racing searches give
+ * slightly other results than with the default.</li>
+ * </ul>
+ * The backend is chosen by running Java with {@code -DmathBackend=<name>}; grids take
+ * the current backend when they are constructed. MathAccuracyReport measures how far
+ * the approximation moves the final muscle mass.
+ */
+public final class MathBackend {
+    static final String PROPERTY = "mathBackend"; // The system property naming the backend
+    static final int TABLE_BITS = 10; // The mantissa bits indexing the log2 table
+
+    /**
+     * The bound on the absolute error of the approximate log10: the interpolation error
+     * of log2(1 + t) on steps of 2^-TABLE_BITS, (h^2 / 8) / ln 2, converted to log10,
+     * plus a margin for rounding.
+     */
+    public static final double MAX_ERROR = 5.3e-8;
+
+    private static final double LOG10_2 = 0.30102999566398120; // log10(2)
+    private static final int FRACTION_BITS = 52 - TABLE_BITS; // The bits below the index
+    private static final double[] LOG2_TABLE =
+            new double[(1 << TABLE_BITS) + 1]; // log2(1 + i / 2^TABLE_BITS)
+
+    static {
+        for (int i = 0; i < LOG2_TABLE.length; i++) {
+            LOG2_TABLE[i] = Math.log1p((double) i / (1 << TABLE_BITS)) / Math.log(2.0);
+        }
+    }
+
+    public static final MathBackend EXACT =
+            new MathBackend("exact", false, false, false); // Math.log10 everywhere
+    public static final MathBackend CACHED =
+            new MathBackend("cached", true, false, false); // Fiber logarithms once a day
+    public static final MathBackend APPROXIMATE =
+            new MathBackend("approximate", true, true, false); // The table log10
+    public static final MathBackend VECTOR =
+            new MathBackend("vector", true, false, true); // VectorOperators.LOG10 in lanes
+
+    private static volatile MathBackend current = parse(System.getProperty(PROPERTY, "cached"));
+
+    private final String name; // The name of the backend
+    private final boolean cachesLogs; // Whether lifting reuses the fiber logarithms
+    private final boolean approximate; // Whether log10 is approximated
+    private final boolean vectorized; // Whether lanes take log10 with VectorOperators.LOG10
+
+    /**
+     * Constructs a new MathBackend.
+     * @param name The name of the backend.
+     * @param cachesLogs Whether lifting reuses the fiber logarithms of daily activity.
+     * @param approximate Whether log10 is approximated.
+     * @param vectorized Whether lanes take log10 with VectorOperators.LOG10.
+     */
+    private MathBackend(String name, boolean cachesLogs, boolean approximate,
+                        boolean vectorized) {
+        this.name = name;
+        this.cachesLogs = cachesLogs;
+        this.approximate = approximate;
+        this.vectorized = vectorized;
+    }
+
+    /**
+     * Returns the backend with the given name.
+     * @param name "exact", "cached", "approximate" or "vector".
+     * @return The backend.
+     */
+    public static MathBackend parse(String name) {
+        switch (name.toLowerCase()) {
+            case "exact":
+                return EXACT;
+            case "cached":
+                return CACHED;
+            case "approximate":
+                return APPROXIMATE;
+            case "vector":
+                return VECTOR;
+            default:
+                throw new IllegalArgumentException("Unknown math backend: " + name);
+        }
+    }
+
+    /**
+     * Returns the backend taken by grids constructed from now on.
+     * @return The current backend.
+     */
+    public static MathBackend current() {
+        return current;
+    }
+
+    /**
+     * Sets the backend taken by grids constructed from now on.
+     * @param backend The backend.
+     */
+    public static void setCurrent(MathBackend backend) {
+        current = backend;
+    }
+
+    /**
+     * Returns the name of the backend.
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns whether lifting reuses the fiber logarithms of daily activity.
+     * @return Whether fiber logarithms are cached for the day.
+     */
+    public boolean cachesLogs() {
+        return cachesLogs;
+    }
+
+    /**
+     * Returns whether log10 is approximated, so results differ from Math.log10.
+     * @return Whether the backend is approximate.
+     */
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    /**
+     * Returns whether LaneSimulation takes log10 with VectorOperators.LOG10, so its
+     * results can differ from Math.log10 in the last bit.
+     * @return Whether the backend is vectorized.
+     */
+    public boolean isVectorized() {
+        return vectorized;
+    }
+
+    /**
+     * Returns the base 10 logarithm of a value with this backend.
+     * @param x The value.
+     * @return The logarithm.
+     */
+    public double log10(double x) {
+        return approximate ? approximateLog10(x) : Math.log10(x);
+    }
+
+    /**
+     * Returns the base 10 logarithm of a value from the log2 table, within MAX_ERROR for
+     * positive normal values; other values are passed to Math.log10.
+     * @param x The value.
+     * @return The approximate logarithm.
+     */
+    static double approximateLog10(double x) {
+        long bits = Double.doubleToRawLongBits(x);
+        if (bits < 0x0010000000000000L || bits >= 0x7ff0000000000000L) {
+            return Math.log10(x);
+        }
+        int exponent = (int) (bits >>> 52) - 1023;
+        int index = (int) ((bits >>> FRACTION_BITS) & ((1 << TABLE_BITS) - 1));
+        double fraction = (bits & ((1L << FRACTION_BITS) - 1)) * (1.0 / (1L << FRACTION_BITS));
+        double low = LOG2_TABLE[index];
+        double log2 = exponent + low + fraction * (LOG2_TABLE[index + 1] - low);
+        return log2 * LOG10_2;
+    }
+
+    /**
+     * Returns the name of the backend.
+     * @return The name.
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * The ModelVariant class selects which variant of the model the searches of
+ * FindBestComboSimulation sweep: the base model, or workouts skipped at random like in
+ * DisorderedLiftSimulation, irregular nights like in DisorderedSleepingHours, or both.
+ * A variant only chooses the LiftPolicy and SleepPolicy of the DayPipeline, so every
+ * variant runs on the same grid kernels.
+ *
+ * The variant is chosen by running Java with {@code -DexerciseProbability=<p>}, the
+ * probability of doing a scheduled workout, and {@code -DirregularSleep=true}.
+ */
+public final class ModelVariant {
+    static final String EXERCISE_PROPERTY = "exerciseProbability"; // The workout property
+    static final String SLEEP_PROPERTY = "irregularSleep"; // The irregular sleep property
+
+    public static final ModelVariant BASE = new ModelVariant(1.0, false); // The base model
+
+    private static volatile ModelVariant current = new ModelVariant(
+            Double.parseDouble(System.getProperty(EXERCISE_PROPERTY, "1")),
+            Boolean.parseBoolean(System.getProperty(SLEEP_PROPERTY, "false")));
+
+    private final double exerciseProbability; // The probability of doing a scheduled workout
+    private final boolean irregularSleep; // Whether the sleep is irregular
+
+    /**
+     * Constructs a new ModelVariant.
+     * @param exerciseProbability The probability of doing a scheduled workout; at 1 every
+     *                            workout is done without drawing.
+     * @param irregularSleep Whether the sleep is irregular.
+     */
+    public ModelVariant(double exerciseProbability, boolean irregularSleep) {
+        if (!(exerciseProbability >= 0 && exerciseProbability <= 1)) {
+            throw new IllegalArgumentException("The exercise probability must be in [0, 1]: "
+                    + exerciseProbability);
+        }
+        this.exerciseProbability = exerciseProbability;
+        this.irregularSleep = irregularSleep;
+    }
+
+    /**
+     * Returns the variant swept by the searches.
+     * @return The current variant.
+     */
+    public static ModelVariant current() {
+        return current;
+    }
+
+    /**
+     * Sets the variant swept by the searches.
+     * @param variant The variant.
+     */
+    public static void setCurrent(ModelVariant variant) {
+        current = variant;
+    }
+
+    /**
+     * Returns the probability of doing a scheduled workout.
+     * @return The exercise probability.
+     */
+    public double getExerciseProbability() {
+        return exerciseProbability;
+    }
+
+    /**
+     * Returns whether the sleep is irregular.
+     * @return Whether the nights are drawn at random.
+     */
+    public boolean isIrregularSleep() {
+        return irregularSleep;
+    }
+
+    /**
+     * Returns whether this is the base model, which LaneSimulation can step.
+     * @return Whether every workout is done and every night is regular.
+     */
+    public boolean isBase() {
+        return exerciseProbability == 1.0 && !irregularSleep;
+    }
+
+    /**
+     * Returns the lift policy of the variant for a combination.
+     * @param lift Whether the person lifts or not.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @return The lift policy.
+     */
+    public LiftPolicy liftPolicy(boolean lift, int daysBetweenWorkouts) {
+        if (!lift || exerciseProbability == 1.0) {
+            return LiftPolicy.scheduled(lift, daysBetweenWorkouts);
+        }
+        return LiftPolicy.disordered(daysBetweenWorkouts, exerciseProbability);
+    }
+
+    /**
+     * Returns the sleep policy of the variant for a combination. Irregular nights are
+     * not recorded.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @return The sleep policy.
+     */
+    public SleepPolicy sleepPolicy(double hoursOfSleep) {
+        if (irregularSleep) {
+            return SleepPolicy.irregular(hoursOfSleep, true);
+        }
+        return SleepPolicy.regular(hoursOfSleep);
+    }
+
+    /**
+     * Returns a description of the variant, used in result cache keys and logs.
+     * @return The description.
+     */
+    @Override
+    public String toString() {
+        return "exerciseProbability=" + exerciseProbability + ",irregularSleep=" + irregularSleep;
+    }
+}
@@ -6,21 +6,22 @@
 public class MuscleFiber {
     private double fiberSize; // The size of the muscle fiber
     private double maxSize; // The maximum size the muscle fiber can reach
-    private static final double MIN_SIZE = 1.0; // The minimum size the muscle fiber can be
+    static final double MIN_SIZE = 1.0; // The minimum size the muscle fiber can be
 
     /**
      * Constructs a new MuscleFiber with the given slow twitch percentage.
      * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param random The random number generator used to draw the fiber.
      */
-    public MuscleFiber(int slowTwitchPercentage) {
+    public MuscleFiber(int slowTwitchPercentage, SimulationRandom random) {
         this.maxSize = 4.0;
         // Randomly generate muscle fiber size based on slow twitch percentage
         for (int i = 0; i < 20; i++) {
-            if (Math.random() * 100.0 > slowTwitchPercentage) {
+            if (random.nextDouble() * 100.0 > slowTwitchPercentage) {
                 maxSize++;
             }
         }
-        this.fiberSize = (0.2 + Math.random() * 0.4) * maxSize;
+        this.fiberSize = (0.2 + random.nextDouble() * 0.4) * maxSize;
         regulateMuscleFiber();
     }
 
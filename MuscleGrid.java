@@ -0,0 +1,810 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The MuscleGrid class holds the state of the simulated muscle tissue in a
+ * structure-of-arrays layout. Hormone levels, fiber sizes and maximum fiber sizes
+ * are stored in flat primitive arrays indexed by {@code i * gridSize + j}, so every
+ * phase of a simulated day walks contiguous memory instead of dereferencing one
+ * Patch and one MuscleFiber object per cell.
+ * The arithmetic of every phase is the same as in Patch and MuscleFiber.
+ * Large grids can be split into horizontal bands of rows that are stepped in parallel
+ * on the common ForkJoinPool. Each band draws from its own random stream, so a run is
+ * reproducible for a given seed and number of bands.
+ * A whole day can also be stepped by stepFused, which merges the phases and the
+ * metric sums into a single sweep over the grid.
+ * The metrics are kept as compensated running sums. Diffusion and muscle development,
+ * the last phases to write the hormones and the fibers each day, add the cells to the
+ * sums as they write them, so reading the metrics after a day does not rescan the
+ * grid. Other phases only mark the sums stale, and a stale sum is rebuilt on demand.
+ * When metrics are not needed for a day, setTrackMetrics(false) skips the sums.
+ */
+public class MuscleGrid {
+    private final int gridSize; // The number of rows and columns in the grid
+    private final int cellCount; // The total number of cells in the grid
+    private double[] anabolic; // The anabolic hormone level of each cell
+    private double[] catabolic; // The catabolic hormone level of each cell
+    private double[] anabolicNext; // The buffer receiving the diffused anabolic hormone
+    private double[] catabolicNext; // The buffer receiving the diffused catabolic hormone
+    private final double[] fiberSize; // The muscle fiber size of each cell
+    private final double[] maxSize; // The maximum muscle fiber size of each cell
+    private final DiffusionKernel diffusion; // The stencil spreading hormones to neighbours
+    private final MathBackend math; // How the logarithms are evaluated
+    private final double[] logFiberSize; // The fiber logarithms of daily activity, or null
+    private boolean logsFresh; // Whether logFiberSize matches the current fibers
+    private final SimulationRandom random; // The random number generator of the grid
+    private final int bands; // The number of row bands stepped in parallel
+    private final int[] bandStart; // The first row of each band, followed by gridSize
+    private final SimulationRandom[] bandRandom; // The random stream of each band
+    private final LiftSampler[] bandSamplers; // The lift sampler of each band, or null
+    private final KahanSum[] bandFiberSums; // The partial fiber size sums of each band
+    private final KahanSum[] bandAnabolicSums; // The partial anabolic sums of each band
+    private final KahanSum[] bandCatabolicSums; // The partial catabolic sums of each band
+    private final KahanSum fiberTotal; // The sum of all fiber sizes
+    private final KahanSum anabolicTotal; // The sum of all anabolic hormones
+    private final KahanSum catabolicTotal; // The sum of all catabolic hormones
+    private boolean fibersSummed; // Whether fiberTotal matches the current fibers
+    private boolean hormonesSummed; // Whether the hormone totals match the current hormones
+    private boolean trackMetrics; // Whether phases add the cells they write to the sums
+
+    // Grids smaller than this are always stepped on the calling thread
+    static final int PARALLEL_MIN_GRID_SIZE = 64;
+
+    /**
+     * Constructs a new MuscleGrid with the given size and slow twitch percentage,
+     * stepped on the calling thread.
+     * Hormones start at the Patch defaults and fibers are drawn like in MuscleFiber.
+     * @param gridSize The number of rows and columns in the grid.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param random The random number generator used to draw fibers and lifts.
+     */
+    public MuscleGrid(int gridSize, int slowTwitchPercentage, SimulationRandom random) {
+        this(gridSize, slowTwitchPercentage, random, 1);
+    }
+
+    /**
+     * Constructs a new MuscleGrid with the given size and slow twitch percentage.
+     * Grids of at least PARALLEL_MIN_GRID_SIZE rows are split into one band of rows
+     * per thread; smaller grids are stepped on the calling thread.
+     * @param gridSize The number of rows and columns in the grid.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param random The random number generator used to draw fibers and lifts.
+     * @param threads The number of threads to step the grid with.
+     */
+    public MuscleGrid(int gridSize, int slowTwitchPercentage, SimulationRandom random,
+                      int threads) {
+        this(gridSize, slowTwitchPercentage, random, threads, null);
+    }
+
+    /**
+     * Constructs a new MuscleGrid that starts from the muscle fibers of a replicate of
+     * an InitialStatePool instead of drawing them, when one is given.
+     * @param gridSize The number of rows and columns in the grid.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param random The random number generator used to draw fibers and lifts.
+     * @param threads The number of threads to step the grid with.
+     * @param initialState The pooled state to copy the fibers from, or null.
+     */
+    public MuscleGrid(int gridSize, int slowTwitchPercentage, SimulationRandom random,
+                      int threads, InitialStatePool.Replicate initialState) {
+        this.gridSize = gridSize;
+        this.cellCount = gridSize * gridSize;
+        this.anabolic = new double[cellCount];
+        this.catabolic = new double[cellCount];
+        this.anabolicNext = new double[cellCount];
+        this.catabolicNext = new double[cellCount];
+        this.fiberSize = new double[cellCount];
+        this.maxSize = new double[cellCount];
+        this.diffusion = new DiffusionKernel(gridSize);
+        this.math = MathBackend.current();
+        this.logFiberSize = math.cachesLogs() ? new double[cellCount] : null;
+        this.random = random;
+
+        this.bands = threads > 1 && gridSize >= PARALLEL_MIN_GRID_SIZE
+                ? Math.min(threads, gridSize) : 1;
+        this.bandStart = new int[bands + 1];
+        for (int b = 0; b <= bands; b++) {
+            bandStart[b] = (int) ((long) gridSize * b / bands);
+        }
+        this.bandFiberSums = new KahanSum[bands];
+        this.bandAnabolicSums = new KahanSum[bands];
+        this.bandCatabolicSums = new KahanSum[bands];
+        for (int b = 0; b < bands; b++) {
+            bandFiberSums[b] = new KahanSum();
+            bandAnabolicSums[b] = new KahanSum();
+            bandCatabolicSums[b] = new KahanSum();
+        }
+        this.fiberTotal = new KahanSum();
+        this.anabolicTotal = new KahanSum();
+        this.catabolicTotal = new KahanSum();
+        this.trackMetrics = true;
+        this.bandSamplers = LiftSampler.isSkipping() ? new LiftSampler[bands] : null;
+        for (int b = 0; bandSamplers != null && b < bands; b++) {
+            bandSamplers[b] = new LiftSampler();
+        }
+        this.bandRandom = new SimulationRandom[bands];
+        if (bands == 1) {
+            bandRandom[0] = random;
+        } else {
+            for (int b = 0; b < bands; b++) {
+                bandRandom[b] = random.split();
+            }
+        }
+
+        // Initialize the hormones and muscle fibers in the same row-major order as
+        // Simulation did, or copy the fibers of a pooled replicate
+        if (initialState != null) {
+            initialState.copyInto(gridSize, slowTwitchPercentage, maxSize, fiberSize);
+            Arrays.fill(anabolic, Patch.ANABOLIC_HORMONE_START);
+            Arrays.fill(catabolic, Patch.CATABOLIC_HORMONE_START);
+        } else if (bands == 1) {
+            initializeRows(slowTwitchPercentage, random, 0, gridSize);
+        } else {
+            runBands((b, from, to) ->
+                    initializeRows(slowTwitchPercentage, bandRandom[b], from, to));
+        }
+    }
+
+    /**
+     * The RowBand interface is a phase applied to a band of rows.
+     */
+    private interface RowBand {
+        /**
+         * Applies the phase to the rows {@code [fromRow, toRow)}.
+         * @param band The number of the band.
+         * @param fromRow The first row of the band, inclusive.
+         * @param toRow The last row of the band, exclusive.
+         */
+        void run(int band, int fromRow, int toRow);
+    }
+
+    /**
+     * Runs a phase on every band in parallel and waits for all of them, so the next
+     * phase sees the rows written by the neighbouring bands.
+     * @param task The phase to run.
+     */
+    private void runBands(RowBand task) {
+        IntStream.range(0, bands).parallel()
+                .forEach(b -> task.run(b, bandStart[b], bandStart[b + 1]));
+    }
+
+    /**
+     * Returns the number of rows and columns in the grid.
+     * @return The grid size.
+     */
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * Returns the total number of cells in the grid.
+     * @return The number of cells.
+     */
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    /**
+     * Returns the number of row bands the grid is stepped with.
+     * @return The number of bands, 1 when the grid is stepped on the calling thread.
+     */
+    public int getBands() {
+        return bands;
+    }
+
+    /**
+     * Returns how the grid evaluates its logarithms, chosen when it was constructed.
+     * @return The math backend of the grid.
+     */
+    public MathBackend getMathBackend() {
+        return math;
+    }
+
+    /**
+     * Returns whether the workouts of the grid skip to the activated cells, as chosen
+     * when it was constructed.
+     * @return Whether the lift sampling is "skip".
+     */
+    public boolean isSkippingLifts() {
+        return bandSamplers != null;
+    }
+
+    /**
+     * Sets whether the phases keep the metric sums up to date as they write cells.
+     * Turning it off saves the additions on days whose metrics are not reported;
+     * the metrics are then rebuilt by a rescan if they are read anyway.
+     * @param trackMetrics Whether to keep the metric sums up to date.
+     */
+    public void setTrackMetrics(boolean trackMetrics) {
+        this.trackMetrics = trackMetrics;
+    }
+
+    /**
+     * Marks the metric sums as stale, so the next metric read rescans the grid.
+     * Used to measure the cost of the reductions and after the state arrays are
+     * overwritten, like when a checkpoint is restored.
+     */
+    void invalidateMetrics() {
+        fibersSummed = false;
+        hormonesSummed = false;
+    }
+
+    /**
+     * Returns the flat index of the cell at the given row and column.
+     * @param i The row of the cell.
+     * @param j The column of the cell.
+     * @return The index of the cell in the state arrays.
+     */
+    public int index(int i, int j) {
+        return i * gridSize + j;
+    }
+
+    /**
+     * Returns the random number generator of the grid.
+     * @return The random number generator.
+     */
+    public SimulationRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Returns the random number generator of a band of rows. With a single band it is
+     * the generator of the grid.
+     * @param band The number of the band.
+     * @return The random number generator of the band.
+     */
+    public SimulationRandom getBandRandom(int band) {
+        return bandRandom[band];
+    }
+
+    /**
+     * Returns the anabolic hormone levels, indexed by {@link #index(int, int)}.
+     * The array is swapped with a buffer by regulateHormones, so it must not be
+     * kept across calls.
+     * @return The anabolic hormone array backing this grid.
+     */
+    public double[] getAnabolic() {
+        return anabolic;
+    }
+
+    /**
+     * Returns the catabolic hormone levels, indexed by {@link #index(int, int)}.
+     * The array is swapped with a buffer by regulateHormones, so it must not be
+     * kept across calls.
+     * @return The catabolic hormone array backing this grid.
+     */
+    public double[] getCatabolic() {
+        return catabolic;
+    }
+
+    /**
+     * Returns the muscle fiber sizes, indexed by {@link #index(int, int)}.
+     * @return The fiber size array backing this grid.
+     */
+    public double[] getFiberSize() {
+        return fiberSize;
+    }
+
+    /**
+     * Returns the maximum muscle fiber sizes, indexed by {@link #index(int, int)}.
+     * @return The maximum fiber size array backing this grid.
+     */
+    public double[] getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the starting hormones and draws the muscle fibers of a band of rows.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param rng The random number generator of the band.
+     * @param fromRow The first row, inclusive.
+     * @param toRow The last row, exclusive.
+     */
+    private void initializeRows(int slowTwitchPercentage, SimulationRandom rng,
+                                int fromRow, int toRow) {
+        for (int k = fromRow * gridSize; k < toRow * gridSize; k++) {
+            anabolic[k] = Patch.ANABOLIC_HORMONE_START;
+            catabolic[k] = Patch.CATABOLIC_HORMONE_START;
+
+            double max = 4.0;
+            for (int n = 0; n < 20; n++) {
+                if (rng.nextDouble() * 100.0 > slowTwitchPercentage) {
+                    max++;
+                }
+            }
+            maxSize[k] = max;
+            fiberSize[k] = regulateFiber((0.2 + rng.nextDouble() * 0.4) * max, max);
+        }
+    }
+
+    /**
+     * Updates the hormones of every cell based on daily activities.
+     */
+    public void performDailyActivity() {
+        hormonesSummed = false;
+        if (bands == 1) {
+            performDailyActivityRows(0, gridSize);
+        } else {
+            runBands((b, from, to) -> performDailyActivityRows(from, to));
+        }
+        logsFresh = logFiberSize != null;
+    }
+
+    /**
+     * Updates the hormones of a band of rows based on daily activities, keeping the
+     * fiber logarithms for lifting when the backend caches them.
+     * @param fromRow The first row, inclusive.
+     * @param toRow The last row, exclusive.
+     */
+    private void performDailyActivityRows(int fromRow, int toRow) {
+        for (int k = fromRow * gridSize; k < toRow * gridSize; k++) {
+            double logSize = math.log10(fiberSize[k]);
+            if (logFiberSize != null) {
+                logFiberSize[k] = logSize;
+            }
+            anabolic[k] += 2.5 * logSize;
+            catabolic[k] += 2.0 * logSize;
+        }
+    }
+
+    /**
+     * Updates the hormones of every cell based on weight lifting.
+     * @param intensity The intensity of the workout.
+     */
+    public void liftWeights(int intensity) {
+        hormonesSummed = false;
+        double probability = LiftSampler.probability(intensity);
+        if (bands == 1) {
+            liftWeightsRows(probability, startLift(0, probability, random, 0), random,
+                    0, gridSize);
+        } else {
+            runBands((b, from, to) -> liftWeightsRows(probability,
+                    startLift(b, probability, bandRandom[b], from), bandRandom[b], from, to));
+        }
+    }
+
+    /**
+     * Starts the workout of a band on its lift sampler.
+     * @param band The number of the band.
+     * @param probability The activation probability of the workout.
+     * @param rng The random number generator of the band.
+     * @param fromRow The first row of the band.
+     * @return The started sampler, or null if every cell draws its activation.
+     */
+    private LiftSampler startLift(int band, double probability, SimulationRandom rng,
+                                  int fromRow) {
+        if (bandSamplers == null) {
+            return null;
+        }
+        bandSamplers[band].start(probability, rng, fromRow * gridSize);
+        return bandSamplers[band];
+    }
+
+    /**
+     * Updates the hormones of a band of rows based on weight lifting.
+     * @param probability The activation probability of the workout.
+     * @param sampler The started lift sampler of the band, or null to draw every cell.
+     * @param rng The random number generator of the band.
+     * @param fromRow The first row, inclusive.
+     * @param toRow The last row, exclusive.
+     */
+    private void liftWeightsRows(double probability, LiftSampler sampler, SimulationRandom rng,
+                                 int fromRow, int toRow) {
+        int end = toRow * gridSize;
+        if (sampler == null) {
+            for (int k = fromRow * gridSize; k < end; k++) {
+                if (rng.nextDouble() < probability) {
+                    liftCell(k);
+                }
+            }
+            return;
+        }
+
+        if (!sampler.isRare()) {
+            // Activate every cell but the events
+            int event = sampler.first();
+            for (int k = fromRow * gridSize; k < end; k++) {
+                if (k != event) {
+                    liftCell(k);
+                } else {
+                    event = sampler.next(event);
+                }
+            }
+            return;
+        }
+        // Visit only the activated cells
+        for (int event = sampler.first(); event < end; event = sampler.next(event)) {
+            liftCell(event);
+        }
+    }
+
+    /**
+     * Updates the hormones of a cell activated by weight lifting.
+     * @param k The index of the cell.
+     */
+    private void liftCell(int k) {
+        double logSize = logsFresh ? logFiberSize[k] : math.log10(fiberSize[k]);
+        anabolic[k] += logSize * 55.0;
+        catabolic[k] += logSize * 44.0;
+    }
+
+    /**
+     * Updates the hormones of every cell based on sleep.
+     * @param hoursOfSleep The hours of sleep.
+     */
+    public void sleep(double hoursOfSleep) {
+        hormonesSummed = false;
+        if (bands == 1) {
+            sleepRows(hoursOfSleep, 0, gridSize);
+        } else {
+            runBands((b, from, to) -> sleepRows(hoursOfSleep, from, to));
+        }
+    }
+
+    /**
+     * Updates the hormones of a band of rows based on sleep.
+     * @param hoursOfSleep The hours of sleep.
+     * @param fromRow The first row, inclusive.
+     * @param toRow The last row, exclusive.
+     */
+    private void sleepRows(double hoursOfSleep, int fromRow, int toRow) {
+        for (int k = fromRow * gridSize; k < toRow * gridSize; k++) {
+            anabolic[k] -= 0.48 * math.log10(anabolic[k]) * hoursOfSleep;
+            catabolic[k] -= 0.5 * math.log10(catabolic[k]) * hoursOfSleep;
+        }
+    }
+
+    /**
+     * Multiplies the hormones of every cell by the given factors.
+     * @param anabolicFactor The factor applied to the anabolic hormone.
+     * @param catabolicFactor The factor applied to the catabolic hormone.
+     */
+    public void scaleHormones(double anabolicFactor, double catabolicFactor) {
+        hormonesSummed = false;
+        if (bands == 1) {
+            scaleHormonesRows(anabolicFactor, catabolicFactor, 0, gridSize);
+        } else {
+            runBands((b, from, to) ->
+                    scaleHormonesRows(anabolicFactor, catabolicFactor, from, to));
+        }
+    }
+
+    /**
+     * Multiplies the hormones of a band of rows by the given factors.
+     * @param anabolicFactor The factor applied to the anabolic hormone.
+     * @param catabolicFactor The factor applied to the catabolic hormone.
+     * @param fromRow The first row, inclusive.
+     * @param toRow The last row, exclusive.
+     */
+    private void scaleHormonesRows(double anabolicFactor, double catabolicFactor,
+                                   int fromRow, int toRow) {
+        for (int k = fromRow * gridSize; k < toRow * gridSize; k++) {
+            anabolic[k] *= anabolicFactor;
+            catabolic[k] *= catabolicFactor;
+        }
+    }
+
+    /**
+     * Diffuses the hormones to the neighbouring cells and balances them
+     * within the allowed limits.
+     * The diffused hormones are written to the preallocated buffers, which then
+     * become the current hormone arrays. Bands read the halo rows of their
+     * neighbours from the current arrays, which no band writes during diffusion.
+     */
+    public void regulateHormones() {
+        if (bands == 1) {
+            clearHormoneSums(0);
+            regulateHormonesRows(0, 0, gridSize);
+        } else {
+            runBands((b, from, to) -> {
+                clearHormoneSums(b);
+                regulateHormonesRows(b, from, to);
+            });
+        }
+        swapHormoneBuffers();
+        hormonesSummed = trackMetrics && combineHormoneSums();
+    }
+
+    /**
+     * Makes the diffusion buffers the current hormone arrays.
+     */
+    private void swapHormoneBuffers() {
+        double[] swap = anabolic;
+        anabolic = anabolicNext;
+        anabolicNext = swap;
+        swap = catabolic;
+        catabolic = catabolicNext;
+        catabolicNext = swap;
+    }
+
+    /**
+     * Diffuses the hormones of a band of rows into the buffers and, when metrics are
+     * tracked, adds the diffused hormones to the band's sums.
+     * @param band The number of the band.
+     * @param fromRow The first row, inclusive.
+     * @param toRow The last row, exclusive.
+     */
+    private void regulateHormonesRows(int band, int fromRow, int toRow) {
+        diffusion.diffuseRows(anabolic, anabolicNext,
+                Patch.ANABOLIC_HORMONE_MIN, Patch.ANABOLIC_HORMONE_MAX, fromRow, toRow,
+                trackMetrics ? bandAnabolicSums[band] : null);
+        diffusion.diffuseRows(catabolic, catabolicNext,
+                Patch.CATABOLIC_HORMONE_MIN, Patch.CATABOLIC_HORMONE_MAX, fromRow, toRow,
+                trackMetrics ? bandCatabolicSums[band] : null);
+    }
+
+    /**
+     * Develops the muscle fiber of every cell based on its hormones.
+     */
+    public void developMuscle() {
+        logsFresh = false;
+        if (bands == 1) {
+            bandFiberSums[0].reset();
+            developMuscleRows(anabolic, catabolic, 0, 0, gridSize);
+        } else {
+            runBands((b, from, to) -> {
+                bandFiberSums[b].reset();
+                developMuscleRows(anabolic, catabolic, b, from, to);
+            });
+        }
+        fibersSummed = trackMetrics && combineFiberSums();
+    }
+
+    /**
+     * Develops the muscle fibers of a band of rows based on the given hormones and,
+     * when metrics are tracked, adds the new fiber sizes to the band's sum.
+     * @param anabolicLevels The anabolic hormone levels to develop from.
+     * @param catabolicLevels The catabolic hormone levels to develop from.
+     * @param band The number of the band.
+     * @param fromRow The first row, inclusive.
+     * @param toRow The last row, exclusive.
+     */
+    private void developMuscleRows(double[] anabolicLevels, double[] catabolicLevels,
+                                   int band, int fromRow, int toRow) {
+        KahanSum total = bandFiberSums[band];
+        double s = total.getSum();
+        double comp = total.getCompensation();
+        for (int k = fromRow * gridSize; k < toRow * gridSize; k++) {
+            double logCatabolic = math.log10(catabolicLevels[k]);
+            double size = fiberSize[k];
+            size -= 0.20 * logCatabolic;
+            size += 0.20 * Math.min(math.log10(anabolicLevels[k]), 1.05 * logCatabolic);
+            size = regulateFiber(size, maxSize[k]);
+            fiberSize[k] = size;
+            if (trackMetrics) {
+                double y = size - comp;
+                double t = s + y;
+                comp = (t - s) - y;
+                s = t;
+            }
+        }
+        total.set(s, comp);
+    }
+
+    /**
+     * Steps a whole day in as few sweeps over the grid as diffusion allows.
+     * Daily activity, lifting and sleep are applied to a row just before the row above
+     * it is diffused, developed and added to the metric sums, so on a single band the
+     * day is one sweep; with several bands it is two, because a band's first row needs
+     * the previous band's last row. The result is bit-identical to calling
+     * performDailyActivity, liftWeights, sleep, regulateHormones and developMuscle,
+     * and the metrics of the new state are available without rescanning the grid.
+     * @param liftToday Whether the person lifts weights today.
+     * @param intensity The intensity of the workout.
+     * @param hoursOfSleep The hours of sleep.
+     */
+    public void stepFused(boolean liftToday, int intensity, double hoursOfSleep) {
+        stepFused(liftToday, intensity, 1.0, 1.0, hoursOfSleep);
+    }
+
+    /**
+     * Steps a whole day like stepFused, scaling the hormones by the given factors
+     * between lifting and sleep, like a call to scaleHormones between liftWeights and
+     * sleep would.
+     * @param liftToday Whether the person lifts weights today.
+     * @param intensity The intensity of the workout.
+     * @param anabolicFactor The factor applied to the anabolic hormone before sleep.
+     * @param catabolicFactor The factor applied to the catabolic hormone before sleep.
+     * @param hoursOfSleep The hours of sleep.
+     */
+    public void stepFused(boolean liftToday, int intensity, double anabolicFactor,
+                          double catabolicFactor, double hoursOfSleep) {
+        logsFresh = false;
+        double probability = LiftSampler.probability(intensity);
+        if (bands == 1) {
+            int n = gridSize;
+            clearHormoneSums(0);
+            bandFiberSums[0].reset();
+            LiftSampler sampler = liftToday ? startLift(0, probability, random, 0) : null;
+            prepareHormonesRows(liftToday, probability, sampler, anabolicFactor,
+                    catabolicFactor, hoursOfSleep, random, 0, 1);
+            for (int i = 0; i < n; i++) {
+                if (i + 1 < n) {
+                    prepareHormonesRows(liftToday, probability, sampler, anabolicFactor,
+                            catabolicFactor, hoursOfSleep, random, i + 1, i + 2);
+                }
+                regulateHormonesRows(0, i, i + 1);
+                developMuscleRows(anabolicNext, catabolicNext, 0, i, i + 1);
+            }
+        } else {
+            runBands((b, from, to) -> prepareHormonesRows(liftToday, probability,
+                    liftToday ? startLift(b, probability, bandRandom[b], from) : null,
+                    anabolicFactor, catabolicFactor, hoursOfSleep, bandRandom[b], from, to));
+            runBands((b, from, to) -> {
+                clearHormoneSums(b);
+                bandFiberSums[b].reset();
+                regulateHormonesRows(b, from, to);
+                developMuscleRows(anabolicNext, catabolicNext, b, from, to);
+            });
+        }
+        swapHormoneBuffers();
+        hormonesSummed = trackMetrics && combineHormoneSums();
+        fibersSummed = trackMetrics && combineFiberSums();
+    }
+
+    /**
+     * Applies daily activity, lifting, the scaling of the night and sleep to the
+     * hormones of a band of rows.
+     * @param liftToday Whether the person lifts weights today.
+     * @param probability The activation probability of the workout.
+     * @param sampler The started lift sampler of the band, or null to draw every cell.
+     * @param anabolicFactor The factor applied to the anabolic hormone before sleep.
+     * @param catabolicFactor The factor applied to the catabolic hormone before sleep.
+     * @param hoursOfSleep The hours of sleep.
+     * @param rng The random number generator of the band.
+     * @param fromRow The first row, inclusive.
+     * @param toRow The last row, exclusive.
+     */
+    private void prepareHormonesRows(boolean liftToday, double probability,
+                                     LiftSampler sampler, double anabolicFactor,
+                                     double catabolicFactor, double hoursOfSleep,
+                                     SimulationRandom rng, int fromRow, int toRow) {
+        boolean scaled = anabolicFactor != 1.0 || catabolicFactor != 1.0;
+        for (int k = fromRow * gridSize; k < toRow * gridSize; k++) {
+            double a = anabolic[k];
+            double c = catabolic[k];
+            double logSize = math.log10(fiberSize[k]);
+            a += 2.5 * logSize;
+            c += 2.0 * logSize;
+            if (liftToday && (sampler != null ? sampler.activates(k)
+                    : rng.nextDouble() < probability)) {
+                a += logSize * 55.0;
+                c += logSize * 44.0;
+            }
+            if (scaled) {
+                a *= anabolicFactor;
+                c *= catabolicFactor;
+            }
+            a -= 0.48 * math.log10(a) * hoursOfSleep;
+            c -= 0.5 * math.log10(c) * hoursOfSleep;
+            anabolic[k] = a;
+            catabolic[k] = c;
+        }
+    }
+
+    /**
+     * Returns the muscle mass of the grid.
+     * @return The sum of all fiber sizes divided by 100.
+     */
+    public double muscleMass() {
+        if (!fibersSummed) {
+            if (bands == 1) {
+                bandFiberSums[0].reset();
+                bandFiberSums[0].add(fiberSize, 0, cellCount);
+            } else {
+                runBands((b, from, to) -> {
+                    bandFiberSums[b].reset();
+                    bandFiberSums[b].add(fiberSize, from * gridSize, to * gridSize);
+                });
+            }
+            fibersSummed = combineFiberSums();
+        }
+        return fiberTotal.value() / 100.0;
+    }
+
+    /**
+     * Returns the average anabolic hormone level of the grid.
+     * @return The average anabolic hormone level.
+     */
+    public double averageAnabolicHormone() {
+        sumHormones();
+        return anabolicTotal.value() / cellCount;
+    }
+
+    /**
+     * Returns the average catabolic hormone level of the grid.
+     * @return The average catabolic hormone level.
+     */
+    public double averageCatabolicHormone() {
+        sumHormones();
+        return catabolicTotal.value() / cellCount;
+    }
+
+    /**
+     * Returns a 64-bit hash of the exact bits of every hormone level and fiber size, so
+     * a state can be recognised when it comes back without keeping a copy of it.
+     * @return The hash of the current state.
+     */
+    public long stateHash() {
+        long hash = 0x9e3779b97f4a7c15L;
+        for (int k = 0; k < cellCount; k++) {
+            hash = (hash ^ Double.doubleToRawLongBits(anabolic[k])) * 0x100000001b3L;
+            hash = (hash ^ Double.doubleToRawLongBits(catabolic[k])) * 0x100000001b3L;
+            hash = (hash ^ Double.doubleToRawLongBits(fiberSize[k])) * 0x100000001b3L;
+            hash = Long.rotateLeft(hash, 29);
+        }
+        return hash;
+    }
+
+    /**
+     * Rebuilds the hormone sums by rescanning the grid if they are stale.
+     */
+    private void sumHormones() {
+        if (hormonesSummed) {
+            return;
+        }
+        if (bands == 1) {
+            clearHormoneSums(0);
+            bandAnabolicSums[0].add(anabolic, 0, cellCount);
+            bandCatabolicSums[0].add(catabolic, 0, cellCount);
+        } else {
+            runBands((b, from, to) -> {
+                clearHormoneSums(b);
+                bandAnabolicSums[b].add(anabolic, from * gridSize, to * gridSize);
+                bandCatabolicSums[b].add(catabolic, from * gridSize, to * gridSize);
+            });
+        }
+        hormonesSummed = combineHormoneSums();
+    }
+
+    /**
+     * Resets the hormone sums of a band.
+     * @param band The number of the band.
+     */
+    private void clearHormoneSums(int band) {
+        bandAnabolicSums[band].reset();
+        bandCatabolicSums[band].reset();
+    }
+
+    /**
+     * Adds the hormone sums of the bands, in band order, into the hormone totals.
+     * @return Always true, so the caller can mark the totals as up to date.
+     */
+    private boolean combineHormoneSums() {
+        anabolicTotal.reset();
+        catabolicTotal.reset();
+        for (int b = 0; b < bands; b++) {
+            anabolicTotal.add(bandAnabolicSums[b]);
+            catabolicTotal.add(bandCatabolicSums[b]);
+        }
+        return true;
+    }
+
+    /**
+     * Adds the fiber size sums of the bands, in band order, into the fiber total.
+     * @return Always true, so the caller can mark the total as up to date.
+     */
+    private boolean combineFiberSums() {
+        fiberTotal.reset();
+        for (int b = 0; b < bands; b++) {
+            fiberTotal.add(bandFiberSums[b]);
+        }
+        return true;
+    }
+
+    /**
+     * Clamps a fiber size to the limits used by MuscleFiber.
+     * @param size The fiber size.
+     * @param max The maximum size of the fiber.
+     * @return The clamped size.
+     */
+    static double regulateFiber(double size, double max) {
+        if (size < MuscleFiber.MIN_SIZE) {
+            size = MuscleFiber.MIN_SIZE;
+        }
+        if (size > max) {
+            size = max;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * The Optimizer interface is a search strategy over the parameter combinations of
+ * FindBestComboSimulation. The strategy proposes batches of combinations, which are
+ * simulated in parallel, and is told the result of each before it proposes the next
+ * batch. Combinations are identified by their ParameterCombo index.
+ */
+public interface Optimizer {
+    /**
+     * Returns the next combinations to simulate.
+     * @param maxBatch The largest number of combinations the batch may hold.
+     * @return The indices of the combinations, or an empty array when the search is over.
+     */
+    int[] propose(int maxBatch);
+
+    /**
+     * Reports the result of a proposed combination.
+     * @param index The index of the combination.
+     * @param data The result of simulating it.
+     */
+    void report(int index, Data data);
+}
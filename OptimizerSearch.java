@@ -0,0 +1,85 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * The OptimizerSearch class drives an Optimizer over the parameter combinations of
+ * FindBestComboSimulation within a SearchBudget. Each proposed batch is simulated in
+ * parallel through FindBestComboSimulation.simulate, on the same random stream per
+ * combination as the exhaustive sweep, so a combination gets the same Data whichever
+ * search evaluates it.
+ */
+public class OptimizerSearch {
+    private final int slowTwitchPercentage; // The percentage of slow twitch muscles
+    private final int days; // The number of days to simulate
+    private final int maxRound; // The number of rounds per combination
+    private final long seed; // The master seed of the search
+    private final Logger logger; // The logger of the search
+    private final ForkJoinPool pool; // The pool simulating the combinations
+
+    /**
+     * Constructs a new OptimizerSearch.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param days The number of days to simulate.
+     * @param maxRound The number of rounds per combination.
+     * @param seed The master seed of the search.
+     * @param logger The logger of the search.
+     * @param pool The pool simulating the combinations.
+     */
+    public OptimizerSearch(int slowTwitchPercentage, int days, int maxRound, long seed,
+                           Logger logger, ForkJoinPool pool) {
+        this.slowTwitchPercentage = slowTwitchPercentage;
+        this.days = days;
+        this.maxRound = maxRound;
+        this.seed = seed;
+        this.logger = logger;
+        this.pool = pool;
+    }
+
+    /**
+     * Runs the optimizer until it ends or the budget is used up.
+     * @param optimizer The strategy proposing the combinations.
+     * @param budget The budget of the search; it is charged for every simulated day.
+     * @return The best data found, or null if nothing was simulated.
+     */
+    public Data run(Optimizer optimizer, SearchBudget budget) {
+        long daysPerCombo = (long) maxRound * days;
+        int batchSize = Math.max(4, 2 * pool.getParallelism());
+        Data bestData = null;
+        while (!budget.isExhausted()) {
+            int[] batch = optimizer.propose(Math.min(batchSize, budget.affordable(daysPerCombo)));
+            if (batch.length == 0) {
+                break;
+            }
+
+            Data[] results = new Data[batch.length];
+            pool.submit(() -> IntStream.range(0, batch.length).parallel().forEach(k -> {
+                ParameterCombo combo = ParameterCombo.fromIndex(batch[k]);
+                results[k] = FindBestComboSimulation.simulate(
+                        combo.getIntensity(),
+                        combo.isLift(),
+                        combo.getHoursOfSleep(),
+                        combo.getDaysBetweenWorkouts(),
+                        slowTwitchPercentage,
+                        days,
+                        maxRound,
+                        ParameterCombo.randomFor(seed, batch[k]),
+                        null,
+                        logger
+                );
+            })).join();
+            budget.spend(batch.length * daysPerCombo);
+
+            for (int k = 0; k < batch.length; k++) {
+                optimizer.report(batch[k], results[k]);
+                Data previous = bestData;
+                bestData = Data.better(bestData, results[k]);
+                if (bestData != previous) {
+                    logger.info("New best after " + budget.getSpentDays()
+                            + " simulated days: " + bestData);
+                }
+            }
+        }
+        return bestData;
+    }
+}
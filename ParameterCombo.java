@@ -0,0 +1,158 @@
+/**
+ * The ParameterCombo class represents one point of the parameter space explored by
+ * FindBestComboSimulation: an intensity, whether the person lifts, the hours of sleep
+ * and the days between workouts.
+ * The points are numbered in the order of the original nested sweep loops
+ * (intensity, then hours of sleep, then days between workouts, then lift false/true),
+ * so a sweep over a range of indices visits them in the same order.
+ */
+public class ParameterCombo {
+    private final int intensity; // The intensity of the workout
+    private final boolean lift; // Whether the person lifts or not
+    private final double hoursOfSleep; // The hours of sleep the person gets
+    private final int daysBetweenWorkouts; // The days between workouts
+
+    // Sizes of each dimension of the parameter space
+    static final int LIFT_STEPS = 2;
+    static final int WORKOUT_STEPS = FindBestComboSimulation.FINAL_DAYSBETWEENWORKOUTS
+            - FindBestComboSimulation.INIT_DAYSBETWEENWORKOUTS + 1;
+    static final int SLEEP_STEPS = (int) ((FindBestComboSimulation.FINAL_HOURSOFSLEEP
+            - FindBestComboSimulation.INIT_HOURSOFSLEEP) / FindBestComboSimulation.SLEEP_STEP) + 1;
+    static final int INTENSITY_STEPS = FindBestComboSimulation.FINAL_INTENSITY
+            - FindBestComboSimulation.INIT_INTENSITY + 1;
+
+    /**
+     * The number of points in the parameter space.
+     */
+    public static final int COUNT = INTENSITY_STEPS * SLEEP_STEPS * WORKOUT_STEPS * LIFT_STEPS;
+
+    /**
+     * Constructs a new ParameterCombo with the given parameters.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     */
+    public ParameterCombo(int intensity, boolean lift, double hoursOfSleep,
+                          int daysBetweenWorkouts) {
+        this.intensity = intensity;
+        this.lift = lift;
+        this.hoursOfSleep = hoursOfSleep;
+        this.daysBetweenWorkouts = daysBetweenWorkouts;
+    }
+
+    /**
+     * Returns the combination with the given index in sweep order.
+     * @param index The index of the combination, between 0 and COUNT - 1.
+     * @return The combination at that index.
+     */
+    public static ParameterCombo fromIndex(int index) {
+        boolean lift = index % LIFT_STEPS == 1;
+        index /= LIFT_STEPS;
+        int daysBetweenWorkouts = FindBestComboSimulation.INIT_DAYSBETWEENWORKOUTS
+                + index % WORKOUT_STEPS;
+        index /= WORKOUT_STEPS;
+        double hoursOfSleep = FindBestComboSimulation.INIT_HOURSOFSLEEP
+                + (index % SLEEP_STEPS) * FindBestComboSimulation.SLEEP_STEP;
+        index /= SLEEP_STEPS;
+        int intensity = FindBestComboSimulation.INIT_INTENSITY + index;
+        return new ParameterCombo(intensity, lift, hoursOfSleep, daysBetweenWorkouts);
+    }
+
+    /**
+     * Returns the index of the combination with the given step in every dimension,
+     * the inverse of fromIndex.
+     * @param intensityStep The step of the intensity, from 0 to INTENSITY_STEPS - 1.
+     * @param sleepStep The step of the hours of sleep, from 0 to SLEEP_STEPS - 1.
+     * @param workoutStep The step of the days between workouts, from 0 to WORKOUT_STEPS - 1.
+     * @param liftStep 1 if the person lifts, otherwise 0.
+     * @return The index of the combination.
+     */
+    public static int toIndex(int intensityStep, int sleepStep, int workoutStep, int liftStep) {
+        return ((intensityStep * SLEEP_STEPS + sleepStep) * WORKOUT_STEPS + workoutStep)
+                * LIFT_STEPS + liftStep;
+    }
+
+    /**
+     * Returns the step of the hours of sleep of a combination.
+     * @param index The index of the combination.
+     * @return The step of the hours of sleep, from 0 to SLEEP_STEPS - 1.
+     */
+    public static int sleepStep(int index) {
+        return index / (LIFT_STEPS * WORKOUT_STEPS) % SLEEP_STEPS;
+    }
+
+    /**
+     * Returns the index of the first combination equivalent to a combination. Without
+     * lifting the intensity and the days between workouts are ignored, so every
+     * combination without lifting is equivalent to the one with the same hours of
+     * sleep at the first intensity and days between workouts.
+     * @param index The index of the combination.
+     * @return The index of the first equivalent combination.
+     */
+    public static int canonicalIndex(int index) {
+        if (index % LIFT_STEPS == 1) {
+            return index;
+        }
+        return toIndex(0, sleepStep(index), 0, 0);
+    }
+
+    /**
+     * Returns the random number generator a combination is simulated from. Every
+     * combination with the same hours of sleep draws from the same stream of the master
+     * seed, so equivalent combinations give the same result, and combinations that
+     * only differ after their first workout share every earlier day.
+     * @param seed The master seed of the search.
+     * @param index The index of the combination.
+     * @return A new generator for the combination.
+     */
+    public static SimulationRandom randomFor(long seed, int index) {
+        return SimulationRandom.forStream(seed, sleepStep(index));
+    }
+
+    /**
+     * Returns the intensity of the workout.
+     * @return The intensity of the workout.
+     */
+    public int getIntensity() {
+        return intensity;
+    }
+
+    /**
+     * Returns whether the person lifts or not.
+     * @return Whether the person lifts or not.
+     */
+    public boolean isLift() {
+        return lift;
+    }
+
+    /**
+     * Returns the hours of sleep the person gets.
+     * @return The hours of sleep the person gets.
+     */
+    public double getHoursOfSleep() {
+        return hoursOfSleep;
+    }
+
+    /**
+     * Returns the days between workouts.
+     * @return The days between workouts.
+     */
+    public int getDaysBetweenWorkouts() {
+        return daysBetweenWorkouts;
+    }
+
+    /**
+     * Returns a string representation of the ParameterCombo object.
+     * @return A string representation of the ParameterCombo object.
+     */
+    @Override
+    public String toString() {
+        return "ParameterCombo{" +
+                "intensity=" + intensity +
+                ", lift=" + lift +
+                ", hoursOfSleep=" + hoursOfSleep +
+                ", daysBetweenWorkouts=" + daysBetweenWorkouts +
+                '}';
+    }
+}
@@ -8,19 +8,21 @@ public class Patch {
     private double catabolicHormone; // The level of catabolic hormones
 
     // Constants for hormone regulation
-    private static final double DIFFUSE_RATE = 0.75;
-    private static final double ANABOLIC_HORMONE_MAX = 200.0;
-    private static final double ANABOLIC_HORMONE_MIN = 50.0;
-    private static final double CATABOLIC_HORMONE_MAX = 250.0;
-    private static final double CATABOLIC_HORMONE_MIN = 52.0;
+    static final double DIFFUSE_RATE = 0.75;
+    static final double ANABOLIC_HORMONE_MAX = 200.0;
+    static final double ANABOLIC_HORMONE_MIN = 50.0;
+    static final double CATABOLIC_HORMONE_MAX = 250.0;
+    static final double CATABOLIC_HORMONE_MIN = 52.0;
+    static final double ANABOLIC_HORMONE_START = 50.0;
+    static final double CATABOLIC_HORMONE_START = 52.0;
 
     /**
      * Default constructor for the Patch class.
      * Initializes anabolic and catabolic hormone levels to their default starting values.
      */
     public Patch() {
-        this.anabolicHormone = 50.0;  // default starting value
-        this.catabolicHormone = 52.0; // default starting value
+        this.anabolicHormone = ANABOLIC_HORMONE_START;  // default starting value
+        this.catabolicHormone = CATABOLIC_HORMONE_START; // default starting value
         // No need to regulate hormones here, since they are already within the allowed limits
         //regulateHormones();
     }
@@ -42,8 +44,6 @@ public class Patch {
      * @param y The y-coordinate of the current patch in the grid.
      */
     public void diffuse(Patch[][] grid, int x, int y) {
-        int[] dx = {-1, -1, -1, 0, 0, 1, 1, 1};
-        int[] dy = {-1, 0, 1, -1, 1, -1, 0, 1};
         double anabolicShare = (anabolicHormone * DIFFUSE_RATE) / 8.0;
         double catabolicShare = (catabolicHormone * DIFFUSE_RATE) / 8.0;
 
@@ -51,8 +51,8 @@ public class Patch {
         double catabolicRemaining = catabolicHormone;
 
         for (int i = 0; i < 8; i++) {
-            int nx = x + dx[i];
-            int ny = y + dy[i];
+            int nx = x + DiffusionKernel.DX[i];
+            int ny = y + DiffusionKernel.DY[i];
 
             // Check if the neighboring patch is within the grid
             if (nx >= 0 && nx < grid.length && ny >= 0 && ny < grid[0].length) {
@@ -81,10 +81,12 @@ public class Patch {
      * Updates hormone levels based on weight lifting.
      * @param fiberSize The size of the muscle fiber.
      * @param intensity The intensity of the workout.
+     * @param random The random number generator deciding if the patch is activated.
      */
-    public void updateHormonesFromWeightLifting(double fiberSize, int intensity) {
+    public void updateHormonesFromWeightLifting(double fiberSize, int intensity,
+                                                SimulationRandom random) {
         double probability = Math.pow(intensity / 100.0, 2);
-        if (Math.random() * 1.0 < probability) {
+        if (random.nextDouble() < probability) {
             double logFiberSize = Math.log10(fiberSize);
             anabolicHormone += logFiberSize * 55.0;
             catabolicHormone += logFiberSize * 44.0;
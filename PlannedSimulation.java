@@ -0,0 +1,103 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The PlannedSimulation class extends the Simulation class and represents a simulation
+ * that follows a periodized TrainingPlan: its workout days, the intensity of every
+ * workout and the hours of every night are read from a compiled TrainingSchedule. It
+ * is the base model with the planned LiftPolicy and SleepPolicy.
+ */
+public class PlannedSimulation extends Simulation {
+    private final TrainingSchedule schedule; // The compiled plan the simulation follows
+
+    /**
+     * Constructs a new PlannedSimulation on the default grid.
+     * @param schedule The compiled plan, which can be shared with other simulations.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param random The random number generator of the simulation.
+     */
+    public PlannedSimulation(TrainingSchedule schedule, int slowTwitchPercentage,
+                             SimulationRandom random) {
+        this(schedule, slowTwitchPercentage, DEFAULT_GRID_SIZE, 1, random);
+    }
+
+    /**
+     * Constructs a new PlannedSimulation on a grid of the given size. The intensity,
+     * lifting and hours of sleep of the simulation are the peak intensity, whether the
+     * plan has workouts and the mean hours of sleep of the schedule.
+     * @param schedule The compiled plan, which can be shared with other simulations.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param gridSize The number of rows and columns of the grid.
+     * @param threads The number of threads to step the grid with.
+     * @param random The random number generator of the simulation.
+     */
+    public PlannedSimulation(TrainingSchedule schedule, int slowTwitchPercentage,
+                             int gridSize, int threads, SimulationRandom random) {
+        super(schedule.peakIntensity(), schedule.workouts() > 0, schedule.meanHours(), 1,
+                slowTwitchPercentage, gridSize, threads, random,
+                LiftPolicy.planned(schedule), SleepPolicy.planned(schedule));
+        this.schedule = schedule;
+    }
+
+    /**
+     * Returns the compiled plan the simulation follows.
+     * @return The schedule.
+     */
+    public TrainingSchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * The main method for the PlannedSimulation class.
+     * It reads a training plan, runs the simulation and writes the results to a CSV file
+     * named after the plan.
+     * An optional fourth argument seeds the random number generator, an optional fifth
+     * sets whether days are stepped in one fused pass and an optional sixth the format
+     * of the result file: "csv" or "binary".
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: java PlannedSimulation <plan.properties> " +
+                    "<slowTwitchPercentage> <daysToSimulate> [seed] [fused] [csv|binary]");
+            return;
+        }
+
+        int slowTwitchPercentage = Integer.parseInt(args[1]);
+        int days = Integer.parseInt(args[2]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : SimulationRandom.newSeed();
+        boolean fused = args.length > 4 && Boolean.parseBoolean(args[4]);
+        String format = args.length > 5 ? args[5] : "csv";
+
+        TrainingSchedule schedule;
+        try {
+            schedule = TrainingPlan.load(args[0]).compile(days);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        PlannedSimulation simulation = new PlannedSimulation(schedule, slowTwitchPercentage,
+                new SimulationRandom(seed));
+        simulation.fusedStep = fused;
+
+        String directoryPath = "PlannedExperiment";
+        File directory = new File(directoryPath);
+        if (!directory.exists()) {
+            directory.mkdirs(); // Create the directory if it doesn't exist
+        }
+
+        String filename = String.format("%s/%s_%d_%d", directoryPath, schedule.getName(),
+                slowTwitchPercentage, days);
+        // Stream the results to a file as each day is simulated
+        try (ResultWriter writer = ResultWriter.open(format, filename,
+                Simulation.RESULT_COLUMNS, days + 1)) {
+            Simulation.writeRow(writer, 0, simulation);
+            for (int i = 1; i <= days; i++) {
+                simulation.step(i);
+                Simulation.writeRow(writer, i, simulation);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
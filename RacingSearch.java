@@ -0,0 +1,184 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * The RacingSearch class finds the best parameter combination like the exhaustive
+ * sweep of FindBestComboSimulation, but spends its simulated days on the combinations
+ * that still have a chance to win.
+ *
+ * The search races every combination on the full horizon, in stages with a doubling
+ * number of replicates. The replicates of a combination are the rounds the exhaustive
+ * sweep simulates, in the same order and on the same random streams, so after a stage
+ * its statistics are those of the first rounds of the sweep. A combination is only
+ * dropped once the upper bound of the 95% confidence interval of its mean muscle mass
+ * falls below the lower bound of the leader's; no combination is cut for its rank
+ * alone, and none on a shortened horizon, whose ranking can differ from the full one.
+ * The race ends with one survivor or when max_round replicates have been run. The
+ * survivors then simulate only their missing rounds, up to max_round, on the same
+ * streams and are added to the statistics of the raced ones, which gives the
+ * statistics of the exhaustive sweep, so the returned Data is the exhaustive one
+ * whenever its combination is still in the race.
+ */
+public class RacingSearch {
+    private static final int INITIAL_REPLICATES = 4; // The replicates of the first stage
+
+    private final int slowTwitchPercentage; // The percentage of slow twitch muscles
+    private final int days; // The number of days to simulate
+    private final int maxRound; // The number of rounds of the final evaluation
+    private final long seed; // The master seed of the search
+    private final Logger logger; // The logger of the search
+    private final ForkJoinPool pool; // The pool simulating the combinations
+    private long simulatedDays; // The number of days simulated so far
+
+    /**
+     * Constructs a new RacingSearch.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param days The number of days to simulate.
+     * @param maxRound The number of rounds of the final evaluation.
+     * @param seed The master seed of the search.
+     * @param logger The logger of the search.
+     * @param pool The pool simulating the combinations.
+     */
+    public RacingSearch(int slowTwitchPercentage, int days, int maxRound, long seed,
+                        Logger logger, ForkJoinPool pool) {
+        this.slowTwitchPercentage = slowTwitchPercentage;
+        this.days = days;
+        this.maxRound = maxRound;
+        this.seed = seed;
+        this.logger = logger;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the number of days simulated by the search so far, over all replicates.
+     * @return The number of simulated days.
+     */
+    public long getSimulatedDays() {
+        return simulatedDays;
+    }
+
+    /**
+     * Returns the number of days the exhaustive sweep simulates.
+     * @return The number of simulated days of the exhaustive sweep.
+     */
+    public long getExhaustiveDays() {
+        return (long) ParameterCombo.COUNT * maxRound * days;
+    }
+
+    /**
+     * Runs the search and returns the best combination.
+     * @return The best data found.
+     */
+    public Data run() {
+        int[] survivors = IntStream.range(0, ParameterCombo.COUNT).toArray();
+        EnsembleResult[] statistics = new EnsembleResult[ParameterCombo.COUNT];
+        SimulationRandom[] streams = new SimulationRandom[ParameterCombo.COUNT];
+
+        // Race the combinations on the rounds of the sweep with more and more replicates
+        int rounds = 0;
+        int replicates = INITIAL_REPLICATES;
+        for (int stage = 0; survivors.length > 1 && rounds < maxRound; stage++) {
+            int batch = Math.min(replicates, maxRound - rounds);
+            evaluate(survivors, statistics, streams, batch, rounds);
+            rounds += batch;
+            replicates *= 2;
+            survivors = prune(survivors, statistics);
+            logStage(stage, batch, survivors.length);
+        }
+
+        // Complete the rounds of the survivors to those of the exhaustive sweep
+        if (rounds < maxRound) {
+            evaluate(survivors, statistics, streams, maxRound - rounds, rounds);
+        }
+
+        Data bestData = null;
+        for (int index : survivors) {
+            ParameterCombo combo = ParameterCombo.fromIndex(index);
+            Data data = FindBestComboSimulation.report(
+                    combo.getIntensity(),
+                    combo.isLift(),
+                    combo.getHoursOfSleep(),
+                    combo.getDaysBetweenWorkouts(),
+                    slowTwitchPercentage,
+                    FindBestComboSimulation.summarize(statistics[index]),
+                    logger
+            );
+            bestData = Data.better(bestData, data);
+        }
+        return bestData;
+    }
+
+    /**
+     * Simulates the next rounds of every surviving combination and adds them to its
+     * statistics. The rounds are split from the stream the exhaustive sweep gives the
+     * combination, continuing where the previous stage stopped, or, with a shared
+     * InitialStatePool, start from the next pooled states.
+     * @param survivors The indices of the surviving combinations.
+     * @param statistics The statistics of every combination.
+     * @param streams The stream of every combination, which the rounds are split from.
+     * @param replicates The number of rounds to simulate per combination.
+     * @param first The number of rounds already in the statistics.
+     */
+    private void evaluate(int[] survivors, EnsembleResult[] statistics,
+                          SimulationRandom[] streams, int replicates, int first) {
+        InitialStatePool initialStates = InitialStatePool.shared();
+        pool.submit(() -> IntStream.range(0, survivors.length).parallel().forEach(k -> {
+            int index = survivors[k];
+            ParameterCombo combo = ParameterCombo.fromIndex(index);
+            if (streams[index] == null) {
+                streams[index] = ParameterCombo.randomFor(seed, index);
+            }
+            statistics[index] = FindBestComboSimulation.simulateRounds(
+                    combo.getIntensity(),
+                    combo.isLift(),
+                    combo.getHoursOfSleep(),
+                    combo.getDaysBetweenWorkouts(),
+                    slowTwitchPercentage,
+                    days,
+                    replicates,
+                    streams[index],
+                    initialStates,
+                    first,
+                    statistics[index]
+            );
+        })).join();
+        simulatedDays += (long) survivors.length * replicates * days;
+    }
+
+    /**
+     * Returns the combinations still in the race: those whose confidence interval
+     * reaches the leader's. Their intervals overlap, so none of them is known to be
+     * worse than the leader.
+     * @param survivors The indices of the surviving combinations.
+     * @param statistics The statistics of every combination.
+     * @return The indices of the new survivors, in sweep order.
+     */
+    private static int[] prune(int[] survivors, EnsembleResult[] statistics) {
+        int leader = survivors[0];
+        for (int index : survivors) {
+            if (statistics[index].getMuscleMass().getMean()
+                    > statistics[leader].getMuscleMass().getMean()) {
+                leader = index;
+            }
+        }
+        double threshold = statistics[leader].getMuscleMass().getConfidenceLow();
+        return Arrays.stream(survivors)
+                .filter(index -> !(statistics[index].getMuscleMass().getConfidenceHigh()
+                        < threshold))
+                .toArray();
+    }
+
+    /**
+     * Logs the outcome of a stage.
+     * @param stage The number of the stage.
+     * @param replicates The number of replicates per combination.
+     * @param survivors The number of combinations left.
+     */
+    private void logStage(int stage, int replicates, int survivors) {
+        logger.info("Racing stage " + stage + ": " + replicates + " replicates of "
+                + days + " days, " + survivors + " combinations left, "
+                + simulatedDays + " days simulated");
+    }
+}
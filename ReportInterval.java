@@ -0,0 +1,97 @@
+/**
+ * The ReportInterval class decides on which days a simulation reports its metrics:
+ * every day, every N days, or only on the final day.
+ * On days that are not reported the grid can skip its metric sums entirely.
+ */
+public class ReportInterval {
+    private final int every; // Report every this many days, or 0 for the final day only
+
+    /**
+     * Constructs a new ReportInterval.
+     * @param every Report every this many days, or 0 for the final day only.
+     */
+    private ReportInterval(int every) {
+        this.every = every;
+    }
+
+    /**
+     * Returns an interval reporting every day, including day 0.
+     * @return The per-day interval.
+     */
+    public static ReportInterval perDay() {
+        return new ReportInterval(1);
+    }
+
+    /**
+     * Returns an interval reporting day 0, every n-th day and the final day.
+     * @param n The number of days between reports.
+     * @return The every-n-days interval.
+     */
+    public static ReportInterval everyNDays(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Report interval must be at least 1 day: " + n);
+        }
+        return new ReportInterval(n);
+    }
+
+    /**
+     * Returns an interval reporting only the final day.
+     * @return The final-only interval.
+     */
+    public static ReportInterval finalOnly() {
+        return new ReportInterval(0);
+    }
+
+    /**
+     * Parses an interval from a command line argument: "final" for the final day only,
+     * otherwise the number of days between reports.
+     * @param value The argument to parse.
+     * @return The parsed interval.
+     */
+    public static ReportInterval parse(String value) {
+        if (value.equalsIgnoreCase("final")) {
+            return finalOnly();
+        }
+        return everyNDays(Integer.parseInt(value));
+    }
+
+    /**
+     * Returns whether the given day is reported.
+     * @param day The day, from 0 to lastDay.
+     * @param lastDay The final day of the simulation.
+     * @return Whether the metrics of the day are reported.
+     */
+    public boolean includes(int day, int lastDay) {
+        if (day == lastDay) {
+            return true;
+        }
+        return every > 0 && day % every == 0;
+    }
+
+    /**
+     * Returns the number of days from 0 to lastDay that are reported.
+     * @param lastDay The final day of the simulation.
+     * @return The number of reported days.
+     */
+    public long count(int lastDay) {
+        return count(0, lastDay);
+    }
+
+    /**
+     * Returns the number of days from firstDay to lastDay that are reported, like the
+     * rows written by a run resumed after day firstDay - 1.
+     * @param firstDay The first day to count.
+     * @param lastDay The final day of the simulation.
+     * @return The number of reported days.
+     */
+    public long count(int firstDay, int lastDay) {
+        if (firstDay > lastDay) {
+            return 0;
+        }
+        if (every == 0) {
+            return 1;
+        }
+        return Math.floorDiv(lastDay, every) - Math.floorDiv(firstDay - 1, every)
+                + (lastDay % every == 0 ? 0 : 1);
+    }
+}
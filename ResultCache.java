@@ -0,0 +1,281 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The ResultCache class remembers simulation results across runs, so repeated and
+ * incremental sweeps only simulate the points that are new.
+ *
+ * Results are addressed by the SHA-256 digest of their key: the kind of result, the
+ * model version and every input that determines it, including the fingerprint of the
+ * random number generator it starts from. Values are arrays of doubles.
+ * Recently used results are kept in memory in an LRU tier; all results are kept in an
+ * append-only file whose index, from digest to file offset, is loaded when the cache
+ * is opened. A record cut short by a crash is dropped when the file is reopened.
+ *
+ * The cache is enabled by running Java with {@code -DresultCache=<file>}.
+ * Instances are thread-safe.
+ */
+public class ResultCache implements AutoCloseable {
+    /**
+     * The version of the simulation model; increase it whenever a change to the model
+     * changes its results, so results of the old model are not reused.
+     */
+    public static final int MODEL_VERSION = 2;
+
+    static final String PROPERTY = "resultCache"; // The system property naming the file
+    private static final int MAGIC = 0x4d535243; // The file signature "MSRC"
+    private static final int DIGEST_SIZE = 32; // The bytes of a SHA-256 digest
+    private static final int DEFAULT_CAPACITY = 100_000; // Results kept in memory
+
+    private static ResultCache shared; // The cache named by the system property
+    private static boolean sharedOpened; // Whether opening the shared cache was tried
+
+    private final RandomAccessFile file; // The append-only store
+    private final Map<String, Long> offsets; // The file offset of every stored result
+    private final LinkedHashMap<String, double[]> recent; // The LRU tier
+    private final int capacity; // The number of results kept in memory
+    private long hits; // The number of lookups that found a result
+    private long misses; // The number of lookups that did not
+
+    /**
+     * Constructs a new ResultCache on the given file, creating it if needed.
+     * @param filename The name of the file.
+     * @param capacity The number of results kept in memory.
+     * @throws IOException If the file cannot be read or is not a result cache.
+     */
+    public ResultCache(String filename, int capacity) throws IOException {
+        this.capacity = capacity;
+        this.offsets = new HashMap<>();
+        this.recent = new LinkedHashMap<>(16, 0.75f, true);
+        this.file = new RandomAccessFile(filename, "rw");
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the cache named by the resultCache system property, opening it on first
+     * use, or null if the property is not set or the cache cannot be opened.
+     * @return The shared cache, or null.
+     */
+    public static synchronized ResultCache shared() {
+        if (!sharedOpened) {
+            sharedOpened = true;
+            String filename = System.getProperty(PROPERTY);
+            if (filename != null && !filename.isEmpty()) {
+                try {
+                    File parent = new File(filename).getAbsoluteFile().getParentFile();
+                    if (parent != null) {
+                        parent.mkdirs();
+                    }
+                    shared = new ResultCache(filename, DEFAULT_CAPACITY);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the address of a result: the SHA-256 digest of the model version and the
+     * given parts, joined in order, of the MathBackend when it is approximate or
+     * vectorized and of the LiftSampler when it skips.
+     * @param parts The kind of result and every input that determines it.
+     * @return The hexadecimal digest.
+     */
+    public static String key(Object... parts) {
+        StringBuilder text = new StringBuilder("v").append(MODEL_VERSION);
+        for (Object part : parts) {
+            text.append('|').append(part);
+        }
+        if (MathBackend.current().isApproximate() || MathBackend.current().isVectorized()) {
+            // Approximate and vector logarithms give other results than the exact ones
+            text.append("|log10=").append(MathBackend.current().getName());
+        }
+        if (LiftSampler.isSkipping()) {
+            // Skipping draws other activated cells than one draw per cell
+            text.append("|lift=skip");
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(text.toString().getBytes(StandardCharsets.UTF_8));
+            return hex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the hexadecimal form of a digest.
+     * @param digest The digest.
+     * @return The lowercase hexadecimal digits.
+     */
+    private static String hex(byte[] digest) {
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Returns a stored result.
+     * @param key The address of the result, from key.
+     * @return A copy of the values, or null if the result is not stored.
+     */
+    public synchronized double[] get(String key) {
+        double[] values = recent.get(key);
+        if (values == null) {
+            Long offset = offsets.get(key);
+            if (offset == null) {
+                misses++;
+                return null;
+            }
+            try {
+                values = read(offset);
+            } catch (IOException e) {
+                e.printStackTrace();
+                misses++;
+                return null;
+            }
+            remember(key, values);
+        }
+        hits++;
+        return values.clone();
+    }
+
+    /**
+     * Stores a result, unless a result with the same address is already stored.
+     * @param key The address of the result, from key.
+     * @param values The values of the result.
+     */
+    public synchronized void put(String key, double[] values) {
+        if (offsets.containsKey(key)) {
+            return;
+        }
+        ByteBuffer record = ByteBuffer.allocate(DIGEST_SIZE + Integer.BYTES
+                + values.length * Double.BYTES);
+        for (int k = 0; k < DIGEST_SIZE; k++) {
+            record.put((byte) Integer.parseInt(key.substring(2 * k, 2 * k + 2), 16));
+        }
+        record.putInt(values.length);
+        for (double value : values) {
+            record.putDouble(value);
+        }
+        try {
+            long offset = file.length();
+            file.seek(offset);
+            file.write(record.array());
+            offsets.put(key, offset + DIGEST_SIZE);
+            remember(key, values.clone());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found a result.
+     * @return The number of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find a result.
+     * @return The number of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of stored results.
+     * @return The number of results.
+     */
+    public synchronized int size() {
+        return offsets.size();
+    }
+
+    /**
+     * Closes the file.
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Adds a result to the LRU tier, evicting the least recently used one when full.
+     * @param key The address of the result.
+     * @param values The values of the result.
+     */
+    private void remember(String key, double[] values) {
+        recent.put(key, values);
+        if (recent.size() > capacity) {
+            recent.remove(recent.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Reads the values of the record whose values start at the given offset.
+     * @param offset The offset of the value count of the record.
+     * @return The values.
+     * @throws IOException If the record cannot be read.
+     */
+    private double[] read(long offset) throws IOException {
+        file.seek(offset);
+        double[] values = new double[file.readInt()];
+        for (int k = 0; k < values.length; k++) {
+            values[k] = file.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Builds the index of the file, writing the header of a new file and dropping a
+     * record cut short at its end.
+     * @throws IOException If the file cannot be read or is not a result cache.
+     */
+    private void load() throws IOException {
+        long length = file.length();
+        if (length == 0) {
+            file.writeInt(MAGIC);
+            return;
+        }
+        if (length < Integer.BYTES || file.readInt() != MAGIC) {
+            throw new IOException("Not a result cache file");
+        }
+
+        byte[] digest = new byte[DIGEST_SIZE];
+        long position = Integer.BYTES;
+        while (position + DIGEST_SIZE + Integer.BYTES <= length) {
+            file.seek(position);
+            file.readFully(digest);
+            int count = file.readInt();
+            long end = position + DIGEST_SIZE + Integer.BYTES + (long) count * Double.BYTES;
+            if (count < 0 || end > length) {
+                break;
+            }
+            offsets.put(hex(digest), position + DIGEST_SIZE);
+            position = end;
+        }
+        if (position < length) {
+            file.setLength(position);
+        }
+    }
+}
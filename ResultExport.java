@@ -0,0 +1,57 @@
+import java.io.IOException;
+
+/**
+ * The ResultExport class converts a binary result file into the CSV file the
+ * simulation would have written, so it can be read by draw.py or a spreadsheet.
+ */
+public class ResultExport {
+    /**
+     * Writes every row of a binary result to a CSV file.
+     * @param reader The binary result to export.
+     * @param filename The name of the CSV file.
+     * @throws IOException If the CSV file cannot be written.
+     */
+    public static void exportCsv(BinaryResultReader reader, String filename) throws IOException {
+        try (CsvResultWriter writer = new CsvResultWriter(filename,
+                String.join(",", reader.getColumnNames()))) {
+            int columns = reader.getColumnCount();
+            for (long row = 0; row < reader.getRowCount(); row++) {
+                writer.startRow(reader.getDay(row));
+                for (int c = 1; c < columns; c++) {
+                    writer.addValue(reader.get(c, row));
+                }
+                writer.endRow();
+            }
+        }
+    }
+
+    /**
+     * The main method for the ResultExport class.
+     * It converts the binary result named by the first argument into a CSV file named
+     * by the optional second argument, by default the same name ending in .csv.
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java ResultExport <result.bin> [result.csv]");
+            return;
+        }
+
+        String input = args[0];
+        String output;
+        if (args.length > 1) {
+            output = args[1];
+        } else if (input.endsWith(BinaryResultWriter.EXTENSION)) {
+            output = input.substring(0, input.length() - BinaryResultWriter.EXTENSION.length())
+                    + ".csv";
+        } else {
+            output = input + ".csv";
+        }
+
+        try (BinaryResultReader reader = new BinaryResultReader(input)) {
+            exportCsv(reader, output);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
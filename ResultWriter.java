@@ -0,0 +1,79 @@
+import java.io.IOException;
+
+/**
+ * The ResultWriter interface receives the rows of a simulation result as they are
+ * produced: the day, then one value per remaining column.
+ * A row is written with startRow, one addValue per column and endRow.
+ */
+public interface ResultWriter extends AutoCloseable {
+    /**
+     * Opens a writer for the given format.
+     * @param format The format of the file: "csv" or "binary".
+     * @param basename The name of the file without its extension.
+     * @param columns The names of the columns, starting with the day.
+     * @param rows The number of rows that will be written.
+     * @return The new writer.
+     * @throws IOException If the file cannot be opened or written.
+     */
+    static ResultWriter open(String format, String basename, String[] columns, long rows)
+            throws IOException {
+        if (format.equalsIgnoreCase("csv")) {
+            return new CsvResultWriter(basename + ".csv", String.join(",", columns));
+        }
+        if (format.equalsIgnoreCase("binary")) {
+            return new BinaryResultWriter(basename + BinaryResultWriter.EXTENSION, columns, rows);
+        }
+        throw new IllegalArgumentException("Unknown result format: " + format);
+    }
+
+    /**
+     * Opens a writer continuing a result file after a day, for a run resumed from a
+     * checkpoint of that day: the rows up to the day are kept, the rows after it are
+     * removed, and the new rows are written after the kept ones. A missing file is
+     * opened like open does.
+     * @param format The format of the file: "csv" or "binary".
+     * @param basename The name of the file without its extension.
+     * @param columns The names of the columns, starting with the day.
+     * @param afterDay The last day whose row is kept.
+     * @param rows The number of rows that will be written after the kept ones.
+     * @return The new writer.
+     * @throws IOException If the file cannot be read, opened or written.
+     */
+    static ResultWriter resume(String format, String basename, String[] columns,
+                               long afterDay, long rows) throws IOException {
+        if (format.equalsIgnoreCase("csv")) {
+            return CsvResultWriter.resume(basename + ".csv", String.join(",", columns),
+                    afterDay);
+        }
+        if (format.equalsIgnoreCase("binary")) {
+            return BinaryResultWriter.resume(basename + BinaryResultWriter.EXTENSION, columns,
+                    afterDay, rows);
+        }
+        throw new IllegalArgumentException("Unknown result format: " + format);
+    }
+
+    /**
+     * Starts a new row with the day in its first column.
+     * @param day The day of the row.
+     */
+    void startRow(long day);
+
+    /**
+     * Adds a column to the current row.
+     * @param value The value of the column.
+     */
+    void addValue(double value);
+
+    /**
+     * Ends the current row.
+     * @throws IOException If the row cannot be written.
+     */
+    void endRow() throws IOException;
+
+    /**
+     * Writes the remaining rows and closes the file.
+     * @throws IOException If the rows cannot be written or the file cannot be closed.
+     */
+    @Override
+    void close() throws IOException;
+}
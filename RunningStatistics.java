@@ -0,0 +1,154 @@
+/**
+ * The RunningStatistics class keeps the mean and variance of a stream of values with
+ * Welford's online algorithm, so the statistics of many replicates are known without
+ * storing the replicates. The update is numerically stable: it never subtracts two
+ * large sums of squares.
+ * Two instances can be merged, so partial statistics computed on different threads
+ * can be combined.
+ */
+public class RunningStatistics {
+    private static final double Z_95 = 1.959963984540054; // The 97.5% normal quantile
+
+    // Two-sided 95% Student t critical values for 1 to 30 degrees of freedom
+    private static final double[] T_95 = {
+            12.706204736, 4.302652730, 3.182446305, 2.776445105, 2.570581836,
+            2.446911851, 2.364624252, 2.306004135, 2.262157163, 2.228138852,
+            2.200985160, 2.178812830, 2.160368656, 2.144786688, 2.131449546,
+            2.119905299, 2.109815578, 2.100922040, 2.093024054, 2.085963447,
+            2.079613845, 2.073873068, 2.068657610, 2.063898562, 2.059538553,
+            2.055529439, 2.051830516, 2.048407142, 2.045229642, 2.042272456
+    };
+
+    private long count; // The number of values added
+    private double mean; // The mean of the values added
+    private double m2; // The sum of squared differences from the mean
+
+    /**
+     * Adds a value.
+     * @param value The value to add.
+     */
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+
+    /**
+     * Adds all values summarized by another instance, as if they had been added here.
+     * @param other The statistics to merge.
+     */
+    public void add(RunningStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+    }
+
+    /**
+     * Returns the number of values added.
+     * @return The count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the values added.
+     * @return The mean, or NaN if no value was added.
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Returns the sample variance of the values added.
+     * @return The variance, or NaN if fewer than two values were added.
+     */
+    public double getVariance() {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    /**
+     * Returns the sample standard deviation of the values added.
+     * @return The standard deviation, or NaN if fewer than two values were added.
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the standard error of the mean.
+     * @return The standard error, or NaN if fewer than two values were added.
+     */
+    public double getStandardError() {
+        return Math.sqrt(getVariance() / count);
+    }
+
+    /**
+     * Returns the half width of the 95% confidence interval of the mean, using the
+     * Student t distribution so small ensembles are not overconfident.
+     * @return The half width, or NaN if fewer than two values were added.
+     */
+    public double getConfidenceHalfWidth() {
+        if (count < 2) {
+            return Double.NaN;
+        }
+        return tCritical95(count - 1) * getStandardError();
+    }
+
+    /**
+     * Returns the lower bound of the 95% confidence interval of the mean.
+     * @return The lower bound.
+     */
+    public double getConfidenceLow() {
+        return getMean() - getConfidenceHalfWidth();
+    }
+
+    /**
+     * Returns the upper bound of the 95% confidence interval of the mean.
+     * @return The upper bound.
+     */
+    public double getConfidenceHigh() {
+        return getMean() + getConfidenceHalfWidth();
+    }
+
+    /**
+     * Returns the two-sided 95% critical value of the Student t distribution, from a
+     * table up to 30 degrees of freedom and the Cornish-Fisher expansion above.
+     * @param degreesOfFreedom The degrees of freedom, at least 1.
+     * @return The critical value.
+     */
+    static double tCritical95(long degreesOfFreedom) {
+        if (degreesOfFreedom <= T_95.length) {
+            return T_95[(int) degreesOfFreedom - 1];
+        }
+        double z = Z_95;
+        double z3 = z * z * z;
+        double z5 = z3 * z * z;
+        double df = degreesOfFreedom;
+        return z + (z3 + z) / (4 * df) + (5 * z5 + 16 * z3 + 3 * z) / (96 * df * df);
+    }
+
+    /**
+     * Returns a string representation of the statistics.
+     * @return The mean, standard deviation and confidence interval.
+     */
+    @Override
+    public String toString() {
+        return "mean=" + getMean() +
+                ", sd=" + getStandardDeviation() +
+                ", ci95=[" + getConfidenceLow() + ", " + getConfidenceHigh() + "]" +
+                ", n=" + count;
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * The SearchBudget class limits a search by the number of days it simulates, over all
+ * replicates, by the wall-clock time it runs, or by both.
+ */
+public class SearchBudget {
+    private final long maxDays; // The days that may be simulated, or 0 for no limit
+    private final long deadline; // The System.nanoTime deadline, or 0 for no limit
+    private long spentDays; // The days simulated so far
+
+    /**
+     * Constructs a new SearchBudget. The clock starts now.
+     * @param maxDays The days that may be simulated, or 0 for no limit.
+     * @param maxSeconds The seconds the search may run, or 0 for no limit.
+     */
+    public SearchBudget(long maxDays, double maxSeconds) {
+        this.maxDays = maxDays;
+        this.deadline = maxSeconds > 0 ? System.nanoTime() + (long) (maxSeconds * 1e9) : 0;
+    }
+
+    /**
+     * Parses a budget from a command line argument: a number of simulated days, or a
+     * number of seconds followed by "s".
+     * @param value The argument to parse.
+     * @return The parsed budget.
+     */
+    public static SearchBudget parse(String value) {
+        if (value.endsWith("s")) {
+            return new SearchBudget(0, Double.parseDouble(value.substring(0, value.length() - 1)));
+        }
+        return new SearchBudget(Long.parseLong(value), 0);
+    }
+
+    /**
+     * Records simulated days.
+     * @param days The number of days simulated.
+     */
+    public void spend(long days) {
+        spentDays += days;
+    }
+
+    /**
+     * Returns the number of days simulated so far.
+     * @return The spent days.
+     */
+    public long getSpentDays() {
+        return spentDays;
+    }
+
+    /**
+     * Returns how many evaluations of the given cost still fit in the day budget.
+     * @param daysPerEvaluation The days one evaluation simulates.
+     * @return The number of evaluations, Integer.MAX_VALUE without a day limit.
+     */
+    public int affordable(long daysPerEvaluation) {
+        if (maxDays <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.min(Integer.MAX_VALUE,
+                Math.max(0, (maxDays - spentDays) / daysPerEvaluation));
+    }
+
+    /**
+     * Returns whether the budget is used up.
+     * @return Whether no more work should be started.
+     */
+    public boolean isExhausted() {
+        if (maxDays > 0 && spentDays >= maxDays) {
+            return true;
+        }
+        return deadline != 0 && System.nanoTime() - deadline >= 0;
+    }
+}
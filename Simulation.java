@@ -1,25 +1,34 @@
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
 
 /**
  * The Simulation class represents a simulation of muscle development.
- * It includes properties such as grid size, patches, muscle fibers,
+ * It includes properties such as grid size, the muscle grid,
  * workout intensity, sleep hours, and methods to perform daily activities,
  * lift weights, sleep, regulate hormones, and develop muscle.
+ * The hormones and muscle fibers are stored in a structure-of-arrays MuscleGrid, and
+ * the days are stepped by a DayPipeline whose LiftPolicy and SleepPolicy make the
+ * model variants: the base model lifts on schedule and sleeps regular hours.
  */
-public class Simulation {
-    public int GRID_SIZE = 17; // The size of the grid
-    public Patch[][] patches; // The patches in the grid
-    public MuscleFiber[][] muscleFibers; // The muscle fibers in the grid
+public class Simulation implements SimulationModel {
+    public static final int DEFAULT_GRID_SIZE = 17; // The default size of the grid
+    static final String[] RESULT_COLUMNS = {
+            "Day", "Muscle Mass", "Anabolic Hormone", "Catabolic Hormone"
+    }; // The columns of a result file
+    static final int DEFAULT_CHECKPOINT_DAYS = 30; // The days between checkpoints
+    public int GRID_SIZE; // The size of the grid
+    public MuscleGrid grid; // The hormones and muscle fibers in the grid
+    public DayPipeline pipeline; // The stages stepping the days
     public int intensity; // The intensity of the workout
     public boolean lift; // Whether the person lifts or not
     public double hoursOfSleep; // The hours of sleep the person gets
     public int daysBetweenWorkouts; // The days between workouts
     public int slowTwitchPercentage; // The percentage of slow twitch muscles
+    public SimulationRandom random; // The random number generator of the simulation
+    public boolean fusedStep; // Whether step runs the whole day in one fused pass
 
     /**
-     * Constructs a new Simulation with the given parameters.
+     * Constructs a new Simulation with the given parameters and an unpredictable seed.
      * @param intensity The intensity of the workout.
      * @param lift Whether the person lifts or not.
      * @param hoursOfSleep The hours of sleep the person gets.
@@ -33,28 +42,152 @@ public class Simulation {
             int daysBetweenWorkouts,
             int slowTwitchPercentage
     ) {
+        this(intensity, lift, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage,
+                new SimulationRandom());
+    }
+
+    /**
+     * Constructs a new Simulation with the given parameters.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param random The random number generator of the simulation.
+     */
+    public Simulation(
+            int intensity,
+            boolean lift,
+            double hoursOfSleep,
+            int daysBetweenWorkouts,
+            int slowTwitchPercentage,
+            SimulationRandom random
+    ) {
+        this(intensity, lift, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage,
+                DEFAULT_GRID_SIZE, 1, random);
+    }
+
+    /**
+     * Constructs a new Simulation with the given parameters on a grid of the given size.
+     * Large grids are stepped in parallel bands of rows, one per thread.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param gridSize The number of rows and columns of the grid.
+     * @param threads The number of threads to step the grid with.
+     * @param random The random number generator of the simulation.
+     */
+    public Simulation(
+            int intensity,
+            boolean lift,
+            double hoursOfSleep,
+            int daysBetweenWorkouts,
+            int slowTwitchPercentage,
+            int gridSize,
+            int threads,
+            SimulationRandom random
+    ) {
+        this(intensity, lift, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage, gridSize,
+                threads, random, LiftPolicy.scheduled(lift, daysBetweenWorkouts),
+                SleepPolicy.regular(hoursOfSleep));
+    }
+
+    /**
+     * Constructs a new Simulation of a model variant on the default grid.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param random The random number generator of the simulation.
+     * @param liftPolicy The policy deciding the workouts.
+     * @param sleepPolicy The policy deciding the nights.
+     */
+    public Simulation(
+            int intensity,
+            boolean lift,
+            double hoursOfSleep,
+            int daysBetweenWorkouts,
+            int slowTwitchPercentage,
+            SimulationRandom random,
+            LiftPolicy liftPolicy,
+            SleepPolicy sleepPolicy
+    ) {
+        this(intensity, lift, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage,
+                DEFAULT_GRID_SIZE, 1, random, liftPolicy, sleepPolicy);
+    }
+
+    /**
+     * Constructs a new Simulation of a model variant on a grid of the given size.
+     * Large grids are stepped in parallel bands of rows, one per thread.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param gridSize The number of rows and columns of the grid.
+     * @param threads The number of threads to step the grid with.
+     * @param random The random number generator of the simulation.
+     * @param liftPolicy The policy deciding the workouts.
+     * @param sleepPolicy The policy deciding the nights.
+     */
+    public Simulation(
+            int intensity,
+            boolean lift,
+            double hoursOfSleep,
+            int daysBetweenWorkouts,
+            int slowTwitchPercentage,
+            int gridSize,
+            int threads,
+            SimulationRandom random,
+            LiftPolicy liftPolicy,
+            SleepPolicy sleepPolicy
+    ) {
+        this(intensity, lift, hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage, gridSize,
+                threads, random, null, liftPolicy, sleepPolicy);
+    }
+
+    /**
+     * Constructs a new Simulation of a model variant whose grid starts from the muscle
+     * fibers of a replicate of an InitialStatePool, when one is given.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param gridSize The number of rows and columns of the grid.
+     * @param threads The number of threads to step the grid with.
+     * @param random The random number generator of the simulation.
+     * @param initialState The pooled state the grid starts from, or null.
+     * @param liftPolicy The policy deciding the workouts.
+     * @param sleepPolicy The policy deciding the nights.
+     */
+    public Simulation(
+            int intensity,
+            boolean lift,
+            double hoursOfSleep,
+            int daysBetweenWorkouts,
+            int slowTwitchPercentage,
+            int gridSize,
+            int threads,
+            SimulationRandom random,
+            InitialStatePool.Replicate initialState,
+            LiftPolicy liftPolicy,
+            SleepPolicy sleepPolicy
+    ) {
+        this.GRID_SIZE = gridSize;
         this.intensity = intensity;
         this.lift = lift;
         this.hoursOfSleep = hoursOfSleep;
         this.daysBetweenWorkouts = daysBetweenWorkouts;
         this.slowTwitchPercentage = slowTwitchPercentage;
+        this.random = random;
 
-        // Initialize the grid of patches and muscle fibers
-        patches = new Patch[GRID_SIZE][GRID_SIZE];
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                patches[i][j] = new Patch();
-            }
-        }
-
-        // Initialize the muscle fibers
-        muscleFibers = new MuscleFiber[17][17];
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                muscleFibers[i][j] = new MuscleFiber(slowTwitchPercentage);
-            }
-        }
-
+        // Initialize the grid of hormones and muscle fibers
+        grid = new MuscleGrid(GRID_SIZE, slowTwitchPercentage, random, threads, initialState);
+        pipeline = new DayPipeline(grid, intensity, liftPolicy, sleepPolicy, random);
     }
 
     /**
@@ -74,150 +207,139 @@ public class Simulation {
     }
 
     /**
-     * Returns the patches in the simulation.
-     * @return The patches in the simulation.
+     * Returns the random number generator of the simulation.
+     * @return The random number generator of the simulation.
+     */
+    public SimulationRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Returns the grid of hormones and muscle fibers in the simulation.
+     * @return The grid of the simulation.
+     */
+    public MuscleGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns the pipeline stepping the days of the simulation.
+     * @return The pipeline of the simulation.
      */
-    public Patch[][] getPatches() {
-        return patches;
+    public DayPipeline getPipeline() {
+        return pipeline;
     }
 
     /**
-     * Update the hormones in the patches based on daily activities.
+     * Update the hormones in the grid based on daily activities.
      */
     public void performDailyActivity() {
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                patches[i][j].updateHormonesFromDailyActivities(muscleFibers[i][j].getFiberSize());
-            }
-        }
+        pipeline.performDailyActivity();
     }
 
 
     /**
-     * Lift weights and update the hormones in the patches.
+     * Lift weights and update the hormones in the grid, if the lift policy does the
+     * workout.
+     * @param day The number of the day.
      */
-    public void liftWeights() {
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                patches[i][j]
-                        .updateHormonesFromWeightLifting(
-                                muscleFibers[i][j].getFiberSize(),
-                                intensity
-                        );
-            }
-        }
+    public void liftWeights(int day) {
+        pipeline.liftWeights(day);
     }
 
     /**
-     * Sleep and update the hormones in the patches.
+     * Sleep the hours of the sleep policy and update the hormones in the grid.
+     * @param day The number of the day.
      */
-    public void sleep() {
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                patches[i][j].updateHormonesFromSleep(hoursOfSleep);
-            }
-        }
+    public void sleep(int day) {
+        pipeline.sleep(day);
     }
 
     /**
-     * Regulate the hormones in the patches.
+     * Regulate the hormones in the grid.
      */
     public void regulateHormones() {
-        // buffer matrix to store the diffused hormones
-        Patch[][] bufferPatches = new Patch[GRID_SIZE][GRID_SIZE];
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                bufferPatches[i][j] = new Patch(0.0, 0.0);
-            }
-        }
+        pipeline.regulateHormones();
+    }
 
-        // diffuse hormones
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                patches[i][j].diffuse(bufferPatches, i, j);
-            }
-        }
+    /**
+     * Develop the muscle fibers based on the hormones in the grid.
+     */
+    public void developMuscle() {
+        pipeline.developMuscle();
+    }
 
-        // combine the remaining hormones with the diffused hormones
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                patches[i][j].setAnabolicHormone(
-                        patches[i][j]
-                                .getAnabolicHormone()
-                                + bufferPatches[i][j].getAnabolicHormone()
-                );
-                patches[i][j].setCatabolicHormone(
-                        patches[i][j].getCatabolicHormone()
-                                + bufferPatches[i][j].getCatabolicHormone()
-                );
-                patches[i][j].balanceHormones();
-            }
-        }
+    /**
+     * Simulates one day: daily activity, lifting on workout days, sleep, hormone
+     * regulation and muscle development.
+     * When fusedStep is set the day is stepped by MuscleGrid.stepFused where the
+     * policies allow it, which gives the same results with far fewer passes over the
+     * grid.
+     * @param day The number of the day, starting at 1.
+     */
+    @Override
+    public void step(int day) {
+        pipeline.step(day, fusedStep);
     }
 
     /**
-     * Develop the muscle fibers based on the hormones in the patches.
+     * Sets whether the grid keeps its metric sums up to date on the next days.
+     * @param trackMetrics Whether the metrics will be read.
      */
-    public void developMuscle() {
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                muscleFibers[i][j]
-                        .developMuscle(
-                                patches[i][j].getAnabolicHormone(),
-                                patches[i][j].getCatabolicHormone()
-                        );
-            }
-        }
+    @Override
+    public void setTrackMetrics(boolean trackMetrics) {
+        grid.setTrackMetrics(trackMetrics);
     }
 
     /**
      * Returns the muscle mass in the simulation.
      * @return The muscle mass in the simulation.
      */
+    @Override
     public double muscleMass() {
-        double mass = 0;
-        for (int i = 0; i < patches.length; i++) {
-            for (int j = 0; j < patches[0].length; j++) {
-                mass += muscleFibers[i][j].getFiberSize();
-            }
-        }
         // Assume Muscle Mass in the NetLogo plot is calculated as:
         // sum of all fiber sizes / 100
-        return mass / 100.0;
+        return grid.muscleMass();
     }
 
     /**
      * Returns the average anabolic hormone level in the simulation.
      * @return The average anabolic hormone level in the simulation.
      */
+    @Override
     public double averageAnabolicHormone() {
-        double total = 0;
-        for (int i = 0; i < patches.length; i++) {
-            for (int j = 0; j < patches[0].length; j++) {
-                total += patches[i][j].getAnabolicHormone();
-            }
-        }
-        return total / (patches.length * patches[0].length);
+        return grid.averageAnabolicHormone();
     }
 
     /**
      * Returns the average catabolic hormone level in the simulation.
      * @return The average catabolic hormone level in the simulation.
      */
+    @Override
     public double averageCatabolicHormone() {
-        double total = 0;
-        for (int i = 0; i < patches.length; i++) {
-            for (int j = 0; j < patches[0].length; j++) {
-                total += patches[i][j].getCatabolicHormone();
-            }
-        }
-        return total / (patches.length * patches[0].length);
+        return grid.averageCatabolicHormone();
     }
 
     /**
      * The main method for the Simulation class.
      * It takes command line arguments for the simulation parameters, runs the simulation,
      * and writes the results to a CSV file.
+     * An optional seventh argument seeds the random number generator, an optional
+     * eighth argument sets the grid size, an optional ninth the number of threads
+     * (one for a seeded run, otherwise the number of processors, by default; grids of
+     * 64 rows or more give different results for the same seed with a different number
+     * of threads), an optional tenth whether days are stepped in one fused pass, an optional
+     * eleventh which days are written: a number of days between rows, or "final", and
+     * an optional twelfth the format of the result file: "csv" or "binary".
+     * When Java is run with {@code -Dcheckpoint=<file>} the state of the simulation is
+     * saved to the file every checkpointEvery days (30 by default) and on the final day;
+     * a run started with an existing checkpoint of the same parameters continues after
+     * its day, with the saved random state: the rows of the result file up to that day
+     * are kept and the days after it are appended. That resumes a stopped run and
+     * extends a finished one to more days.
+     * With {@code -DsteadyState=exact} or {@code -DsteadyState=<tolerance>} a
+     * SteadyStateDetector watches the run, and once it has converged to its periodic
+     * regime the remaining days are fast-forwarded.
      * @param args The command line arguments.
      */
     public static void main(String[] args) {
@@ -225,7 +347,8 @@ public class Simulation {
         if (args.length < 6) {
             System.out.println("Usage: java Simulation " +
                     "<intensity> <lift> <hoursOfSleep> <daysBetweenWorkouts> " +
-                    "<slowTwitchPercentage> <daysToSimulate>");
+                    "<slowTwitchPercentage> <daysToSimulate> [seed] [gridSize] [threads] " +
+                    "[fused] [reportEvery|final] [csv|binary]");
             return;
         }
 
@@ -236,57 +359,184 @@ public class Simulation {
         int daysBetweenWorkouts = Integer.parseInt(args[3]);
         int slowTwitchPercentage = Integer.parseInt(args[4]);
         int days = Integer.parseInt(args[5]);
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : SimulationRandom.newSeed();
+        int gridSize = args.length > 7 ? Integer.parseInt(args[7]) : DEFAULT_GRID_SIZE;
+        // Every band of a large grid draws from its own stream, so a seeded run keeps
+        // one band unless the threads are given, and repeats on every machine
+        int threads = args.length > 8 ? Integer.parseInt(args[8])
+                : args.length > 6 ? 1 : Runtime.getRuntime().availableProcessors();
+        boolean fused = args.length > 9 && Boolean.parseBoolean(args[9]);
+        ReportInterval report = args.length > 10 ? ReportInterval.parse(args[10])
+                : ReportInterval.perDay();
+        String format = args.length > 11 ? args[11] : "csv";
 
         // Create a new simulation
+        SimulationRandom random = new SimulationRandom(seed);
+        long fingerprint = random.fingerprint();
         Simulation simulation = new Simulation(
                 intensity,
                 lift,
                 hoursOfSleep,
                 daysBetweenWorkouts,
-                slowTwitchPercentage
+                slowTwitchPercentage,
+                gridSize,
+                threads,
+                random
         );
 
-        // Run the simulation for the specified number of days
-        double[] muscleMass = new double[days + 1];
-        double[] averageAnabolicHormone = new double[days + 1];
-        double[] averageCatabolicHormone = new double[days + 1];
-
-        // Initialize the first day
-        muscleMass[0] = simulation.muscleMass();
-        averageAnabolicHormone[0] = simulation.averageAnabolicHormone();
-        averageCatabolicHormone[0] = simulation.averageCatabolicHormone();
-
-        // Run the simulation for the specified number of days
-        for (int i = 1; i <= days; i++) {
-            simulation.performDailyActivity();
-            if (lift && i % daysBetweenWorkouts == 0) {
-                simulation.liftWeights();
+        // Continue from the checkpoint of an earlier run of the same parameters
+        String checkpoint = SimulationCheckpoint.configuredFile();
+        int checkpointEvery = SimulationCheckpoint.configuredInterval(DEFAULT_CHECKPOINT_DAYS);
+        int startDay = 0;
+        if (checkpoint != null && new File(checkpoint).exists()) {
+            try {
+                SimulationCheckpoint restored = SimulationCheckpoint.load(checkpoint);
+                restored.checkParameters(intensity, lift, hoursOfSleep, daysBetweenWorkouts,
+                        slowTwitchPercentage, gridSize);
+                simulation = restored.getSimulation();
+                startDay = restored.getDay();
+                fingerprint = restored.getFingerprint();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            if (startDay >= days) {
+                System.out.println("The checkpoint is already at day " + startDay);
+                return;
             }
-            simulation.sleep();
-            simulation.regulateHormones();
-            simulation.developMuscle();
-
-            muscleMass[i] = simulation.muscleMass();
-            averageAnabolicHormone[i] = simulation.averageAnabolicHormone();
-            averageCatabolicHormone[i] = simulation.averageCatabolicHormone();
         }
+        simulation.fusedStep = fused;
 
-        // Constructing the CSV filename based on parameters
+        // A run reporting only its final day can reuse the result of an earlier run
+        ResultCache cache = report.count(days) == 1 ? ResultCache.shared() : null;
+        String key = cache == null ? null : ResultCache.key("simulation", intensity, lift,
+                hoursOfSleep, daysBetweenWorkouts, slowTwitchPercentage, days, gridSize,
+                simulation.getGrid().getBands(), fingerprint);
+
+        // Constructing the result filename based on parameters
         String sleepHoursFormatted = args[2].replace('.', 'n');
-        String filename = String.format("%d_%s_%s_%d_%d_%d.csv", intensity, lift ?
+        String filename = String.format("%d_%s_%s_%d_%d_%d", intensity, lift ?
                 "true" : "false", sleepHoursFormatted, daysBetweenWorkouts,
                 slowTwitchPercentage, days);
 
-        // Write to CSV
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            writer.println("Day,Muscle Mass,Anabolic Hormone,Catabolic Hormone");
-            for (int i = 0; i <= days; i++) {
-                writer.printf("%d,%.2f,%.2f,%.2f\n", i, muscleMass[i], averageAnabolicHormone[i],
-                        averageCatabolicHormone[i]);
+        // Stream each reported day to the result file as soon as it is simulated; a
+        // resumed run keeps the rows up to its checkpoint and writes the days after it
+        try (ResultWriter writer = startDay == 0
+                ? ResultWriter.open(format, filename, RESULT_COLUMNS, report.count(0, days))
+                : ResultWriter.resume(format, filename, RESULT_COLUMNS, startDay,
+                        report.count(startDay + 1, days))) {
+            double[] cached = cache == null ? null : cache.get(key);
+            if (cached != null) {
+                writeRow(writer, days, cached);
+                return;
+            }
+
+            // Write the first day
+            if (startDay == 0 && report.includes(0, days)) {
+                writeRow(writer, 0, simulation);
+            }
+
+            // Run the simulation for the specified number of days, only keeping the
+            // metric sums up to date on the days that are reported or watched for a
+            // steady state, and fast-forward the days after the run has converged
+            SteadyStateDetector steady = SteadyStateDetector.configure(simulation);
+            boolean approximate = false;
+            for (int i = startDay + 1; i <= days; i++) {
+                boolean reported = report.includes(i, days);
+                simulation.getGrid().setTrackMetrics(reported || steady != null);
+                simulation.step(i);
+
+                if (reported) {
+                    writeRow(writer, i, simulation);
+                }
+                if (checkpoint != null && (i % checkpointEvery == 0 || i == days)) {
+                    SimulationCheckpoint.save(checkpoint, simulation, i, fingerprint);
+                }
+                if (steady != null && i < days && steady.observe(i, simulation)) {
+                    fastForward(writer, simulation, steady, report, days);
+                    approximate = !steady.isExact();
+                    if (checkpoint != null) {
+                        SimulationCheckpoint.save(checkpoint, simulation,
+                                approximate ? i : days, fingerprint);
+                    }
+                    break;
+                }
+            }
+            if (cache != null && !approximate) {
+                cache.put(key, new double[] {
+                        simulation.muscleMass(),
+                        simulation.averageAnabolicHormone(),
+                        simulation.averageCatabolicHormone()
+                });
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Writes the reported days after a simulation has converged to its periodic regime,
+     * from the metrics of its last period. A run that repeats its state exactly is then
+     * stepped less than one period further, to the state it would have on the final
+     * day; a run converged within a tolerance stays at the day it converged.
+     * @param writer The writer receiving the rows.
+     * @param simulation The converged simulation.
+     * @param steady The detector that found the regime.
+     * @param report The days that are reported.
+     * @param days The final day of the simulation.
+     * @throws IOException If a row cannot be written.
+     */
+    private static void fastForward(ResultWriter writer, Simulation simulation,
+                                    SteadyStateDetector steady, ReportInterval report,
+                                    int days) throws IOException {
+        int converged = steady.getConvergedDay();
+        System.out.println("Converged on day " + converged + " with a period of "
+                + steady.getPeriod() + (steady.getPeriod() == 1 ? " day" : " days")
+                + (steady.isExact() ? "" : " within the tolerance")
+                + "; fast-forwarding to day " + days);
+        for (int d = converged + 1; d <= days; d++) {
+            if (report.includes(d, days)) {
+                writeRow(writer, d, steady.getMetrics(d));
+            }
+        }
+        if (steady.isExact()) {
+            int remaining = (days - converged) % steady.getPeriod();
+            for (int d = converged + 1; d <= converged + remaining; d++) {
+                simulation.step(d);
+            }
+        }
+    }
+
+    /**
+     * Writes metrics known without the simulation, like cached or fast-forwarded ones,
+     * as one result row.
+     * @param writer The writer receiving the row.
+     * @param day The day of the metrics.
+     * @param metrics The muscle mass and the average anabolic and catabolic hormones.
+     * @throws IOException If the row cannot be written.
+     */
+    static void writeRow(ResultWriter writer, int day, double[] metrics) throws IOException {
+        writer.startRow(day);
+        for (double value : metrics) {
+            writer.addValue(value);
+        }
+        writer.endRow();
+    }
+
+    /**
+     * Writes the metrics of a simulation at the end of a day as one result row.
+     * @param writer The writer receiving the row.
+     * @param day The day that was simulated.
+     * @param simulation The simulation to report.
+     * @throws IOException If the row cannot be written.
+     */
+    static void writeRow(ResultWriter writer, int day, Simulation simulation)
+            throws IOException {
+        writer.startRow(day);
+        writer.addValue(simulation.muscleMass());
+        writer.addValue(simulation.averageAnabolicHormone());
+        writer.addValue(simulation.averageCatabolicHormone());
+        writer.endRow();
+    }
 }
 
@@ -0,0 +1,351 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The SimulationCheckpoint class saves the full state of a Simulation to a compact
+ * binary file and restores it, so a run stopped at any day continues exactly as if it
+ * had never stopped, and a finished run can be extended to more days.
+ *
+ * The file is little-endian:
+ * <pre>
+ *  0  int     magic "MSCP"
+ *  4  int     format version
+ *  8  int     intensity
+ * 12  int     lift, 0 or 1
+ * 16  double  hours of sleep
+ * 24  int     days between workouts
+ * 28  int     slow twitch percentage
+ * 32  int     grid size
+ * 36  int     number of bands
+ * 40  int     last simulated day
+ * 44  int     sampling flags: 1 if log10 is approximated, 2 if lifts skip to the
+ *             activated cells
+ * 48  long    fingerprint of the generator the run started from
+ * 56  longs   the state of the generator of the grid, then of every band
+ *     doubles anabolic, catabolic, fiber size and maximum fiber size of every cell
+ * </pre>
+ * A checkpoint is written to a temporary file that then replaces the old one, so a
+ * run stopped while saving still leaves the previous checkpoint intact. The approximate
+ * MathBackend and the "skip" LiftSampler draw other values than the defaults, so a
+ * checkpoint is only restored with the same ones.
+ */
+public class SimulationCheckpoint {
+    static final String PROPERTY = "checkpoint"; // The system property naming the file
+    static final String EVERY_PROPERTY = "checkpointEvery"; // The property of the interval
+    static final int MAGIC = 'M' | 'S' << 8 | 'C' << 16 | 'P' << 24; // The file signature
+    static final int VERSION = 2; // The version of the format
+    static final int APPROXIMATE_LOG = 1; // The flag of an approximate log10
+    static final int SKIPPING_LIFTS = 2; // The flag of lifts skipping to activated cells
+    static final int VECTOR_LOG = 4; // The flag of lanes taking log10 a vector at a time
+    private static final int FIXED_HEADER_SIZE = 56; // The bytes before the generators
+    private static final int STATE_WORDS = 4; // The longs of a generator state
+    private static final int CHUNK_SIZE = 1 << 16; // The bytes moved per channel call
+
+    private final Simulation simulation; // The restored simulation
+    private final int day; // The last simulated day
+    private final long fingerprint; // The fingerprint of the starting generator
+
+    /**
+     * Constructs a new SimulationCheckpoint.
+     * @param simulation The restored simulation.
+     * @param day The last simulated day.
+     * @param fingerprint The fingerprint of the generator the run started from.
+     */
+    private SimulationCheckpoint(Simulation simulation, int day, long fingerprint) {
+        this.simulation = simulation;
+        this.day = day;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns the restored simulation, ready to step the day after getDay.
+     * @return The simulation.
+     */
+    public Simulation getSimulation() {
+        return simulation;
+    }
+
+    /**
+     * Returns the last day simulated before the checkpoint was saved.
+     * @return The day.
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * Returns the fingerprint of the generator the run started from, which identifies
+     * the run in the ResultCache.
+     * @return The fingerprint.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the file named by the checkpoint system property, or null if it is not set.
+     * @return The name of the checkpoint file, or null.
+     */
+    public static String configuredFile() {
+        String filename = System.getProperty(PROPERTY);
+        return filename == null || filename.isEmpty() ? null : filename;
+    }
+
+    /**
+     * Returns the interval set by the checkpointEvery system property.
+     * @param defaultInterval The interval used when the property is not set.
+     * @return The number of units of work between checkpoints.
+     */
+    public static int configuredInterval(int defaultInterval) {
+        String value = System.getProperty(EVERY_PROPERTY);
+        return value == null || value.isEmpty() ? defaultInterval
+                : Math.max(1, Integer.parseInt(value));
+    }
+
+    /**
+     * Saves the state of a simulation at the end of a day.
+     * @param filename The name of the checkpoint file.
+     * @param simulation The simulation to save.
+     * @param day The last simulated day.
+     * @param fingerprint The fingerprint of the generator the run started from.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void save(String filename, Simulation simulation, int day, long fingerprint)
+            throws IOException {
+        MuscleGrid grid = simulation.getGrid();
+        int bands = grid.getBands();
+        ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_SIZE
+                + (bands + 1) * STATE_WORDS * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION)
+                .putInt(simulation.intensity).putInt(simulation.lift ? 1 : 0)
+                .putDouble(simulation.hoursOfSleep)
+                .putInt(simulation.daysBetweenWorkouts).putInt(simulation.slowTwitchPercentage)
+                .putInt(grid.getGridSize()).putInt(bands).putInt(day).putInt(flags(grid))
+                .putLong(fingerprint);
+        putState(header, grid.getRandom());
+        for (int b = 0; b < bands; b++) {
+            putState(header, grid.getBandRandom(b));
+        }
+        header.flip();
+
+        Path target = Paths.get(filename);
+        Path temporary = Paths.get(filename + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            writeDoubles(channel, chunk, grid.getAnabolic());
+            writeDoubles(channel, chunk, grid.getCatabolic());
+            writeDoubles(channel, chunk, grid.getFiberSize());
+            writeDoubles(channel, chunk, grid.getMaxSize());
+            channel.force(false);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores a simulation from a checkpoint. The grid is built with as many bands as
+     * the saved one, whatever the number of threads of the new run, so every band
+     * continues its own random stream.
+     * @param filename The name of the checkpoint file.
+     * @return The checkpoint holding the restored simulation.
+     * @throws IOException If the file cannot be read or is not a checkpoint.
+     */
+    public static SimulationCheckpoint load(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.READ)) {
+            ByteBuffer header = read(channel,
+                    ByteBuffer.allocate(FIXED_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+            if (header.getInt() != MAGIC) {
+                throw new IOException(filename + " is not a simulation checkpoint");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version);
+            }
+            int intensity = header.getInt();
+            boolean lift = header.getInt() != 0;
+            double hoursOfSleep = header.getDouble();
+            int daysBetweenWorkouts = header.getInt();
+            int slowTwitchPercentage = header.getInt();
+            int gridSize = header.getInt();
+            int bands = header.getInt();
+            int day = header.getInt();
+            int flags = header.getInt();
+            long fingerprint = header.getLong();
+
+            // Build a grid with the saved bands, then overwrite its drawn state
+            Simulation simulation = new Simulation(intensity, lift, hoursOfSleep,
+                    daysBetweenWorkouts, slowTwitchPercentage, gridSize, bands,
+                    new SimulationRandom(0));
+            MuscleGrid grid = simulation.getGrid();
+            if (grid.getBands() != bands) {
+                throw new IOException("The checkpoint has " + bands
+                        + " bands but the grid would have " + grid.getBands());
+            }
+            if (flags(grid) != flags) {
+                throw new IOException("The checkpoint was saved with "
+                        + describe(flags) + " but the run uses " + describe(flags(grid)));
+            }
+            ByteBuffer states = read(channel, ByteBuffer.allocate(
+                    (bands + 1) * STATE_WORDS * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN));
+            grid.getRandom().setState(getState(states));
+            for (int b = 0; b < bands; b++) {
+                grid.getBandRandom(b).setState(getState(states));
+            }
+
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            chunk.flip();
+            readDoubles(channel, chunk, grid.getAnabolic());
+            readDoubles(channel, chunk, grid.getCatabolic());
+            readDoubles(channel, chunk, grid.getFiberSize());
+            readDoubles(channel, chunk, grid.getMaxSize());
+            grid.invalidateMetrics();
+            return new SimulationCheckpoint(simulation, day, fingerprint);
+        }
+    }
+
+    /**
+     * Checks that a restored simulation has the parameters of the run resuming it.
+     * @param intensity The intensity of the workout.
+     * @param lift Whether the person lifts or not.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @param daysBetweenWorkouts The days between workouts.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param gridSize The number of rows and columns of the grid.
+     * @throws IOException If the checkpoint belongs to a different run.
+     */
+    public void checkParameters(int intensity, boolean lift, double hoursOfSleep,
+                                int daysBetweenWorkouts, int slowTwitchPercentage,
+                                int gridSize) throws IOException {
+        if (simulation.intensity != intensity || simulation.lift != lift
+                || simulation.hoursOfSleep != hoursOfSleep
+                || simulation.daysBetweenWorkouts != daysBetweenWorkouts
+                || simulation.slowTwitchPercentage != slowTwitchPercentage
+                || simulation.getGridSize() != gridSize) {
+            throw new IOException("The checkpoint was saved by a run with other parameters");
+        }
+    }
+
+    /**
+     * Returns the sampling flags of a grid: whether it approximates log10 and whether
+     * its lifts skip to the activated cells.
+     * @param grid The grid.
+     * @return The flags.
+     */
+    private static int flags(MuscleGrid grid) {
+        return (grid.getMathBackend().isApproximate() ? APPROXIMATE_LOG : 0)
+                | (grid.isSkippingLifts() ? SKIPPING_LIFTS : 0);
+    }
+
+    /**
+     * Returns a description of sampling flags for error messages.
+     * @param flags The flags.
+     * @return The math backend and lift sampling the flags stand for.
+     */
+    static String describe(int flags) {
+        return ((flags & APPROXIMATE_LOG) != 0 ? "an approximate"
+                : (flags & VECTOR_LOG) != 0 ? "a vector" : "an exact") + " log10 and "
+                + ((flags & SKIPPING_LIFTS) != 0 ? "skip" : "cells") + " lift sampling";
+    }
+
+    /**
+     * Appends the state of a generator to a buffer.
+     * @param buffer The buffer.
+     * @param random The generator.
+     */
+    private static void putState(ByteBuffer buffer, SimulationRandom random) {
+        for (long word : random.getState()) {
+            buffer.putLong(word);
+        }
+    }
+
+    /**
+     * Reads the state of a generator from a buffer.
+     * @param buffer The buffer.
+     * @return The four words of the state.
+     */
+    private static long[] getState(ByteBuffer buffer) {
+        long[] state = new long[STATE_WORDS];
+        for (int k = 0; k < STATE_WORDS; k++) {
+            state[k] = buffer.getLong();
+        }
+        return state;
+    }
+
+    /**
+     * Fills a buffer from a channel.
+     * @param channel The channel to read.
+     * @param buffer The buffer to fill.
+     * @return The buffer, flipped for reading.
+     * @throws IOException If the channel ends before the buffer is full.
+     */
+    private static ByteBuffer read(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("The checkpoint is cut short");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Writes an array of doubles through a chunk buffer.
+     * @param channel The channel to write.
+     * @param chunk The buffer, empty.
+     * @param values The values to write.
+     * @throws IOException If the channel cannot be written.
+     */
+    private static void writeDoubles(FileChannel channel, ByteBuffer chunk, double[] values)
+            throws IOException {
+        int k = 0;
+        while (k < values.length) {
+            int count = Math.min(values.length - k, chunk.remaining() / Double.BYTES);
+            chunk.asDoubleBuffer().put(values, k, count);
+            chunk.position(chunk.position() + count * Double.BYTES);
+            k += count;
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+            chunk.clear();
+        }
+    }
+
+    /**
+     * Reads an array of doubles through a chunk buffer, which may hold bytes left over
+     * from the previous array.
+     * @param channel The channel to read.
+     * @param chunk The buffer, ready for reading.
+     * @param values The array to fill.
+     * @throws IOException If the channel ends before the array is full.
+     */
+    private static void readDoubles(FileChannel channel, ByteBuffer chunk, double[] values)
+            throws IOException {
+        int k = 0;
+        while (k < values.length) {
+            if (chunk.remaining() < Double.BYTES) {
+                chunk.compact();
+                if (channel.read(chunk) < 0) {
+                    throw new IOException("The checkpoint is cut short");
+                }
+                chunk.flip();
+                continue;
+            }
+            int count = Math.min(values.length - k, chunk.remaining() / Double.BYTES);
+            chunk.asDoubleBuffer().get(values, k, count);
+            chunk.position(chunk.position() + count * Double.BYTES);
+            k += count;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * The SimulationMetrics interface reports the three metrics of the model at the end of
+ * the last simulated day, without giving a way to advance the simulation. Statistics
+ * over replicates only read it, so replicates that are stepped together, like the lanes
+ * of a LaneSimulation, can be added one by one.
+ */
+public interface SimulationMetrics {
+    /**
+     * Returns the muscle mass.
+     * @return The muscle mass.
+     */
+    double muscleMass();
+
+    /**
+     * Returns the average anabolic hormone level.
+     * @return The average anabolic hormone level.
+     */
+    double averageAnabolicHormone();
+
+    /**
+     * Returns the average catabolic hormone level.
+     * @return The average catabolic hormone level.
+     */
+    double averageCatabolicHormone();
+}
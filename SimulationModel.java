@@ -0,0 +1,20 @@
+/**
+ * The SimulationModel interface is a simulation that can be advanced one day at a time
+ * and reports the three metrics of the model through SimulationMetrics, so engines
+ * running many replicates do not depend on how a simulation stores its grid.
+ */
+public interface SimulationModel extends SimulationMetrics {
+    /**
+     * Simulates one day.
+     * @param day The number of the day, starting at 1.
+     */
+    void step(int day);
+
+    /**
+     * Sets whether the metrics of the next days will be read, so a model can skip
+     * keeping them up to date on days that are not reported.
+     * @param trackMetrics Whether the metrics will be read.
+     */
+    default void setTrackMetrics(boolean trackMetrics) {
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The SimulationRandom class is the random number generator used by the simulations.
+ * It implements the xoshiro256** generator, which is fast, has a period of 2^256 - 1
+ * and can jump ahead by 2^128 draws, so one generator can be split into independent
+ * non-overlapping streams.
+ * Each simulation owns its generator, so simulations running on different threads
+ * never contend on a shared seed, and a run started from the same seed is reproducible.
+ * Instances are not thread-safe.
+ */
+public class SimulationRandom {
+    private long s0; // The first word of the generator state
+    private long s1; // The second word of the generator state
+    private long s2; // The third word of the generator state
+    private long s3; // The fourth word of the generator state
+
+    // Constants of the SplitMix64 generator used to expand seeds
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    // Polynomial advancing the state by 2^128 draws
+    private static final long[] JUMP = {
+            0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL,
+            0xa9582618e03fc9aaL, 0x39abdc4529b1661cL
+    };
+
+    /**
+     * Constructs a new SimulationRandom with an unpredictable seed.
+     */
+    public SimulationRandom() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Constructs a new SimulationRandom from the given seed.
+     * @param seed The seed of the generator.
+     */
+    public SimulationRandom(long seed) {
+        // Expand the seed into four well mixed words with SplitMix64
+        long x = seed;
+        s0 = mix64(x += GOLDEN_GAMMA);
+        s1 = mix64(x += GOLDEN_GAMMA);
+        s2 = mix64(x += GOLDEN_GAMMA);
+        s3 = mix64(x + GOLDEN_GAMMA);
+    }
+
+    /**
+     * Constructs a new SimulationRandom with the same state as the given one.
+     * @param other The generator to copy.
+     */
+    private SimulationRandom(SimulationRandom other) {
+        this.s0 = other.s0;
+        this.s1 = other.s1;
+        this.s2 = other.s2;
+        this.s3 = other.s3;
+    }
+
+    /**
+     * Returns the generator of stream number {@code stream} derived from a master seed.
+     * Streams of the same master seed are statistically independent, so they can be
+     * given to replicates or threads in any order and still reproduce the same run.
+     * @param masterSeed The seed of the whole run.
+     * @param stream The number of the stream.
+     * @return A new generator for that stream.
+     */
+    public static SimulationRandom forStream(long masterSeed, long stream) {
+        return new SimulationRandom(mix64(masterSeed ^ mix64(stream + GOLDEN_GAMMA)));
+    }
+
+    /**
+     * Returns a new unpredictable master seed, to be logged so the run can be repeated.
+     * @return A new seed.
+     */
+    public static long newSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Returns the next 64 random bits.
+     * @return A random long.
+     */
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    /**
+     * Returns a random double uniformly distributed in [0, 1).
+     * @return A random double.
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Returns a random float uniformly distributed in [0, 1).
+     * @return A random float.
+     */
+    public float nextFloat() {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    /**
+     * Advances this generator by 2^128 draws.
+     */
+    public void jump() {
+        long t0 = 0;
+        long t1 = 0;
+        long t2 = 0;
+        long t3 = 0;
+        for (long word : JUMP) {
+            for (int b = 0; b < 64; b++) {
+                if ((word & (1L << b)) != 0) {
+                    t0 ^= s0;
+                    t1 ^= s1;
+                    t2 ^= s2;
+                    t3 ^= s3;
+                }
+                nextLong();
+            }
+        }
+        s0 = t0;
+        s1 = t1;
+        s2 = t2;
+        s3 = t3;
+    }
+
+    /**
+     * Returns a new generator that continues this one's sequence, then jumps this one
+     * ahead by 2^128 draws, so the two never produce overlapping values.
+     * @return The split off generator.
+     */
+    public SimulationRandom split() {
+        SimulationRandom child = new SimulationRandom(this);
+        jump();
+        return child;
+    }
+
+    /**
+     * Returns a new generator with the same state as this one, which draws the same
+     * values from now on.
+     * @return The copy.
+     */
+    public SimulationRandom copy() {
+        return new SimulationRandom(this);
+    }
+
+    /**
+     * Returns the four words of the generator state, so it can be saved in a checkpoint.
+     * @return A copy of the state.
+     */
+    public long[] getState() {
+        return new long[] {s0, s1, s2, s3};
+    }
+
+    /**
+     * Restores a state returned by getState, so the generator continues exactly where
+     * the saved one stopped.
+     * @param state The four words of the state.
+     */
+    public void setState(long[] state) {
+        if (state.length != 4) {
+            throw new IllegalArgumentException("The state has four words, not " + state.length);
+        }
+        if ((state[0] | state[1] | state[2] | state[3]) == 0) {
+            throw new IllegalArgumentException("The state must not be all zero");
+        }
+        s0 = state[0];
+        s1 = state[1];
+        s2 = state[2];
+        s3 = state[3];
+    }
+
+    /**
+     * Returns a 64-bit digest of the current state, identifying the sequence the
+     * generator will produce, so results simulated from it can be looked up later.
+     * @return The fingerprint of the state.
+     */
+    public long fingerprint() {
+        return mix64(mix64(mix64(mix64(s0) ^ s1) ^ s2) ^ s3);
+    }
+
+    /**
+     * Scrambles a 64-bit value with the SplitMix64 finalizer.
+     * @param z The value to scramble.
+     * @return The scrambled value.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
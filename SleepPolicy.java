@@ -0,0 +1,258 @@
+/**
+ * The SleepPolicy interface is the sleep stage of a DayPipeline: it decides how many
+ * hours the person sleeps each night and how much a night that is shorter or longer
+ * than usual moves the hormones before they recover during sleep.
+ */
+public interface SleepPolicy {
+    /**
+     * Returns the hours slept the night of a day.
+     * @param day The number of the day.
+     * @param random The random number generator of the simulation.
+     * @return The hours of sleep.
+     */
+    double hours(int day, SimulationRandom random);
+
+    /**
+     * Returns the factor the anabolic hormone is multiplied by before a night of sleep.
+     * @param hours The hours slept that night.
+     * @return The factor; 1 leaves the hormone unchanged.
+     */
+    double anabolicFactor(double hours);
+
+    /**
+     * Returns the factor the catabolic hormone is multiplied by before a night of sleep.
+     * @param hours The hours slept that night.
+     * @return The factor; 1 leaves the hormone unchanged.
+     */
+    double catabolicFactor(double hours);
+
+    /**
+     * Returns whether the hours of sleep are drawn from the random number generator.
+     * @return Whether the policy is random.
+     */
+    boolean isRandom();
+
+    /**
+     * Returns the policy of the base model: the same hours every night.
+     * @param hoursOfSleep The hours of sleep the person gets.
+     * @return The policy.
+     */
+    static SleepPolicy regular(double hoursOfSleep) {
+        return new Regular(hoursOfSleep);
+    }
+
+    /**
+     * Returns the policy of DisorderedSleepingHours: nights up to 5 hours shorter or
+     * longer than usual when the sleep is irregular, which scale the hormones by the
+     * ratio of the hours slept to the usual hours.
+     * @param hoursOfSleep The usual hours of sleep.
+     * @param irregularSleep Whether the sleep is irregular.
+     * @return The policy.
+     */
+    static SleepPolicy irregular(double hoursOfSleep, boolean irregularSleep) {
+        return new Irregular(hoursOfSleep, irregularSleep);
+    }
+
+    /**
+     * Returns the policy of a PlannedSimulation: the nights of a compiled
+     * TrainingSchedule, which move the hormones only through the hours slept, like
+     * the regular nights of the base model.
+     * @param schedule The schedule.
+     * @return The policy.
+     */
+    static SleepPolicy planned(TrainingSchedule schedule) {
+        return new Planned(schedule);
+    }
+
+    /**
+     * The Regular class sleeps the same hours every night.
+     */
+    final class Regular implements SleepPolicy {
+        private final double hoursOfSleep; // The hours of sleep the person gets
+
+        /**
+         * Constructs a new Regular policy.
+         * @param hoursOfSleep The hours of sleep the person gets.
+         */
+        Regular(double hoursOfSleep) {
+            this.hoursOfSleep = hoursOfSleep;
+        }
+
+        /**
+         * Returns the hours of sleep of every night.
+         * @param day The number of the day, not used.
+         * @param random The random number generator of the simulation, not used.
+         * @return The hours of sleep.
+         */
+        @Override
+        public double hours(int day, SimulationRandom random) {
+            return hoursOfSleep;
+        }
+
+        /**
+         * Returns 1: regular nights do not move the anabolic hormone.
+         * @param hours The hours slept that night.
+         * @return Always 1.
+         */
+        @Override
+        public double anabolicFactor(double hours) {
+            return 1.0;
+        }
+
+        /**
+         * Returns 1: regular nights do not move the catabolic hormone.
+         * @param hours The hours slept that night.
+         * @return Always 1.
+         */
+        @Override
+        public double catabolicFactor(double hours) {
+            return 1.0;
+        }
+
+        /**
+         * Returns false: the hours are fixed.
+         * @return Always false.
+         */
+        @Override
+        public boolean isRandom() {
+            return false;
+        }
+    }
+
+    /**
+     * The Irregular class sleeps a random number of hours around the usual ones.
+     */
+    final class Irregular implements SleepPolicy {
+        private final double hoursOfSleep; // The usual hours of sleep
+        private final boolean irregularSleep; // Indicates if sleep is irregular
+        private double lastHours = Double.NaN; // The hours of the last night, or NaN
+
+        /**
+         * Constructs a new Irregular policy.
+         * @param hoursOfSleep The usual hours of sleep.
+         * @param irregularSleep Whether the sleep is irregular.
+         */
+        Irregular(double hoursOfSleep, boolean irregularSleep) {
+            this.hoursOfSleep = hoursOfSleep;
+            this.irregularSleep = irregularSleep;
+        }
+
+        /**
+         * Returns the hours slept tonight: the usual hours, moved by a uniform amount
+         * between -5 and 5 hours when the sleep is irregular, and at least 0.
+         * @param day The number of the day, not used.
+         * @param random The random number generator of the simulation.
+         * @return The hours of sleep.
+         */
+        @Override
+        public double hours(int day, SimulationRandom random) {
+            double adjustedSleep = hoursOfSleep;
+            if (irregularSleep) {
+                // Generate a random value between -5 and 5
+                double randomAdjustment = -5 + random.nextDouble() * 10;
+                adjustedSleep += randomAdjustment;
+                // Ensure that sleep hours do not go below 0
+                adjustedSleep = Math.max(adjustedSleep, 0);
+            }
+            lastHours = adjustedSleep;
+            return adjustedSleep;
+        }
+
+        /**
+         * Returns the hours of the last night, so they can be reported without keeping
+         * every night.
+         * @return The hours slept the last night, or NaN before the first.
+         */
+        public double getLastHours() {
+            return lastHours;
+        }
+
+        /**
+         * Returns the factor of the anabolic hormone: a tenth of the relative change of
+         * the hours slept.
+         * @param hours The hours slept that night.
+         * @return The factor.
+         */
+        @Override
+        public double anabolicFactor(double hours) {
+            double sleepFactor = hours / hoursOfSleep;
+            return 1 + 0.1 * (sleepFactor - 1);
+        }
+
+        /**
+         * Returns the factor of the catabolic hormone: a tenth of the relative change of
+         * the hours slept, in the other direction.
+         * @param hours The hours slept that night.
+         * @return The factor.
+         */
+        @Override
+        public double catabolicFactor(double hours) {
+            double sleepFactor = hours / hoursOfSleep;
+            return 1 - 0.1 * (sleepFactor - 1);
+        }
+
+        /**
+         * Returns whether the sleep is irregular, so the hours are drawn.
+         * @return Whether the policy is random.
+         */
+        @Override
+        public boolean isRandom() {
+            return irregularSleep;
+        }
+    }
+
+    /**
+     * The Planned class sleeps the hours a TrainingSchedule gives every night.
+     */
+    final class Planned implements SleepPolicy {
+        private final TrainingSchedule schedule; // The compiled nights
+
+        /**
+         * Constructs a new Planned policy.
+         * @param schedule The schedule.
+         */
+        Planned(TrainingSchedule schedule) {
+            this.schedule = schedule;
+        }
+
+        /**
+         * Returns the hours the schedule gives the night of a day.
+         * @param day The number of the day, from 1 to the last day of the schedule.
+         * @param random The random number generator of the simulation, not used.
+         * @return The hours of sleep.
+         */
+        @Override
+        public double hours(int day, SimulationRandom random) {
+            return schedule.hours(day);
+        }
+
+        /**
+         * Returns 1: planned nights do not move the anabolic hormone.
+         * @param hours The hours slept that night.
+         * @return Always 1.
+         */
+        @Override
+        public double anabolicFactor(double hours) {
+            return 1.0;
+        }
+
+        /**
+         * Returns 1: planned nights do not move the catabolic hormone.
+         * @param hours The hours slept that night.
+         * @return Always 1.
+         */
+        @Override
+        public double catabolicFactor(double hours) {
+            return 1.0;
+        }
+
+        /**
+         * Returns false: the hours are compiled.
+         * @return Always false.
+         */
+        @Override
+        public boolean isRandom() {
+            return false;
+        }
+    }
+}
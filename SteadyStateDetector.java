@@ -0,0 +1,162 @@
+/**
+ * The SteadyStateDetector class notices when a simulation with fixed parameters has
+ * settled into its periodic regime, so the remaining days can be fast-forwarded.
+ *
+ * The schedule repeats every period days, as given by the LiftPolicy: every day
+ * without lifting, every daysBetweenWorkouts days with it. When the step is
+ * deterministic, that is without lifting or at an intensity of 100 where every cell
+ * lifts, a state that comes back exactly after one period repeats forever, so every
+ * later day is known exactly. States are compared through MuscleGrid.stateHash and the
+ * metrics, so no copy of the grid is kept. With a tolerance, a run is also considered
+ * converged once every metric has changed by at most that fraction over one period,
+ * for CONFIRM_PERIODS periods in a row; later days then repeat the last period, which
+ * is an approximation.
+ *
+ * The detector is enabled by running Java with {@code -DsteadyState=exact} or
+ * {@code -DsteadyState=<tolerance>}.
+ */
+public class SteadyStateDetector {
+    static final String PROPERTY = "steadyState"; // The system property enabling detection
+    static final int CONFIRM_PERIODS = 3; // The periods in a row within the tolerance
+
+    private final int period; // The number of days after which the schedule repeats
+    private final boolean hashing; // Whether exact repeats of the state are detected
+    private final double tolerance; // The relative change per period, or 0 for exact only
+    private final long[] hashes; // The state hash of the last day of every phase
+    private final double[] muscleMass; // The muscle mass of the last day of every phase
+    private final double[] anabolic; // The anabolic hormone of the last day of every phase
+    private final double[] catabolic; // The catabolic hormone of the last day of every phase
+    private int observed; // The number of days observed
+    private int matchingDays; // The days in a row within the tolerance of a period ago
+    private int convergedDay; // The day the run converged, or -1
+    private boolean exact; // Whether the run repeats its state exactly
+
+    /**
+     * Constructs a new SteadyStateDetector.
+     * @param period The number of days after which the schedule repeats.
+     * @param hashing Whether the step is deterministic, so exact repeats are detected.
+     * @param tolerance The relative change of the metrics over a period accepted as
+     *                  converged, or 0 to only accept exact repeats.
+     */
+    public SteadyStateDetector(int period, boolean hashing, double tolerance) {
+        this.period = period;
+        this.hashing = hashing;
+        this.tolerance = tolerance;
+        this.hashes = new long[period];
+        this.muscleMass = new double[period];
+        this.anabolic = new double[period];
+        this.catabolic = new double[period];
+        this.convergedDay = -1;
+    }
+
+    /**
+     * Returns a detector for a simulation as configured by the steadyState system
+     * property, or null if detection is disabled or can never succeed for the
+     * simulation: its workouts or nights are drawn at random, so it has no period.
+     * @param simulation The simulation to watch.
+     * @return The detector, or null.
+     */
+    public static SteadyStateDetector configure(Simulation simulation) {
+        String value = System.getProperty(PROPERTY);
+        DayPipeline pipeline = simulation.getPipeline();
+        int period = pipeline.getLiftPolicy().period();
+        if (value == null || value.isEmpty() || period == 0
+                || pipeline.getSleepPolicy().isRandom()) {
+            return null;
+        }
+        double tolerance = value.equalsIgnoreCase("exact") ? 0 : Double.parseDouble(value);
+        boolean deterministic = !simulation.lift || simulation.intensity >= 100;
+        if (!deterministic && tolerance <= 0) {
+            return null;
+        }
+        return new SteadyStateDetector(period, deterministic, tolerance);
+    }
+
+    /**
+     * Records the state of a simulation at the end of a day and checks whether it has
+     * converged. The metric sums of the grid should be tracked on every observed day.
+     * @param day The day that was simulated; days must be observed in order.
+     * @param simulation The simulation.
+     * @return Whether the simulation has converged.
+     */
+    public boolean observe(int day, Simulation simulation) {
+        if (convergedDay >= 0) {
+            return true;
+        }
+        int phase = day % period;
+        long hash = hashing ? simulation.getGrid().stateHash() : 0;
+        double mass = simulation.muscleMass();
+        double anabolicLevel = simulation.averageAnabolicHormone();
+        double catabolicLevel = simulation.averageCatabolicHormone();
+
+        if (observed >= period) {
+            if (hashing && hash == hashes[phase] && mass == muscleMass[phase]
+                    && anabolicLevel == anabolic[phase] && catabolicLevel == catabolic[phase]) {
+                convergedDay = day;
+                exact = true;
+            } else if (tolerance > 0 && close(mass, muscleMass[phase])
+                    && close(anabolicLevel, anabolic[phase])
+                    && close(catabolicLevel, catabolic[phase])) {
+                if (++matchingDays >= CONFIRM_PERIODS * period) {
+                    convergedDay = day;
+                }
+            } else {
+                matchingDays = 0;
+            }
+        }
+        hashes[phase] = hash;
+        muscleMass[phase] = mass;
+        anabolic[phase] = anabolicLevel;
+        catabolic[phase] = catabolicLevel;
+        observed++;
+        return convergedDay >= 0;
+    }
+
+    /**
+     * Returns whether two values differ by at most the tolerance, relative to the
+     * larger one.
+     * @param value The new value.
+     * @param previous The value of one period before.
+     * @return Whether the change is within the tolerance.
+     */
+    private boolean close(double value, double previous) {
+        return Math.abs(value - previous)
+                <= tolerance * Math.max(Math.abs(value), Math.abs(previous));
+    }
+
+    /**
+     * Returns the number of days after which the schedule repeats.
+     * @return The period in days.
+     */
+    public int getPeriod() {
+        return period;
+    }
+
+    /**
+     * Returns the day the simulation converged.
+     * @return The day, or -1 if it has not converged.
+     */
+    public int getConvergedDay() {
+        return convergedDay;
+    }
+
+    /**
+     * Returns whether the simulation repeats its state exactly, so the fast-forwarded
+     * days are the days a full run would simulate.
+     * @return Whether the convergence is exact.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Returns the metrics of a day after convergence: those of the observed day of the
+     * last period in the same phase of the schedule.
+     * @param day A day after the converged day.
+     * @return The muscle mass and the average anabolic and catabolic hormones.
+     */
+    public double[] getMetrics(int day) {
+        int phase = day % period;
+        return new double[] {muscleMass[phase], anabolic[phase], catabolic[phase]};
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Logger;
+
+/**
+ * The StepBenchmark class builds the operations measured by the JMH benchmarks in the
+ * benchmark directory: every phase of a simulated day, the metric reductions, a step,
+ * a full run, a step of interleaved lanes and a slice of the FindBestComboSimulation
+ * sweep.
+ *
+ * JMH only accepts benchmarks in a named package, and classes in a named package
+ * cannot name the classes of the simulation, so the benchmarks look this class up by
+ * name and measure the operations it returns. Every operation returns a value
+ * depending on the work done, which the benchmarks hand to JMH so the JIT cannot
+ * remove it.
+ */
+public class StepBenchmark {
+    static final long SEED = 42; // The seed of every simulation
+
+    /**
+     * Returns a new simulation for the benchmarks, after one warm day.
+     * @param gridSize The number of rows and columns of the grid.
+     * @param threads The number of threads to step the grid with.
+     * @return The simulation.
+     */
+    private static Simulation newSimulation(int gridSize, int threads) {
+        Simulation simulation = new Simulation(95, true, 8.0, 5, 50, gridSize, threads,
+                new SimulationRandom(SEED));
+        simulation.step(1);
+        return simulation;
+    }
+
+    /**
+     * Returns the operations on a grid of the given size, by name: every phase of a
+     * day, "metrics" rescanning the grid, "step", "fusedStep" and "run", which
+     * simulates a new grid for the given days. The phases and the metrics share one
+     * simulation; the steps have their own.
+     * @param gridSize The number of rows and columns of the grid.
+     * @param threads The number of threads to step the grid with.
+     * @param days The number of days of a run.
+     * @return The operations, in the order above.
+     */
+    public static Map<String, DoubleSupplier> gridOperations(int gridSize, int threads,
+                                                             int days) {
+        Map<String, DoubleSupplier> operations = new LinkedHashMap<>();
+        Simulation simulation = newSimulation(gridSize, threads);
+        MuscleGrid grid = simulation.getGrid();
+        operations.put("performDailyActivity", () -> {
+            simulation.performDailyActivity();
+            return grid.getAnabolic()[0];
+        });
+        operations.put("liftWeights", () -> {
+            simulation.liftWeights(1);
+            return grid.getAnabolic()[0];
+        });
+        operations.put("sleep", () -> {
+            simulation.sleep(1);
+            return grid.getAnabolic()[0];
+        });
+        operations.put("regulateHormones", () -> {
+            simulation.regulateHormones();
+            return grid.getAnabolic()[0];
+        });
+        operations.put("developMuscle", () -> {
+            simulation.developMuscle();
+            return grid.getFiberSize()[0];
+        });
+        operations.put("metrics", () -> {
+            grid.invalidateMetrics();
+            return simulation.muscleMass() + simulation.averageAnabolicHormone()
+                    + simulation.averageCatabolicHormone();
+        });
+        Simulation stepped = newSimulation(gridSize, threads);
+        operations.put("step", () -> {
+            stepped.step(5);
+            return stepped.muscleMass();
+        });
+        Simulation fused = newSimulation(gridSize, threads);
+        fused.fusedStep = true;
+        operations.put("fusedStep", () -> {
+            fused.step(5);
+            return fused.muscleMass();
+        });
+        operations.put("run", () -> {
+            Simulation run = new Simulation(95, true, 8.0, 5, 50, gridSize, threads,
+                    new SimulationRandom(SEED));
+            for (int i = 1; i <= days; i++) {
+                run.getGrid().setTrackMetrics(i == days);
+                run.step(i);
+            }
+            return run.muscleMass();
+        });
+        return operations;
+    }
+
+    /**
+     * Returns a step of lanes of the base model stepped together, like the rounds of
+     * the sweep, with the given MathBackend.
+     * @param backend The name of the MathBackend of the lanes.
+     * @param gridSize The number of rows and columns of the grid.
+     * @param lanes The number of lanes.
+     * @return The operation.
+     */
+    public static DoubleSupplier laneStep(String backend, int gridSize, int lanes) {
+        SimulationRandom[] random = new SimulationRandom[lanes];
+        for (int l = 0; l < lanes; l++) {
+            random[l] = SimulationRandom.forStream(SEED, l);
+        }
+        MathBackend previous = MathBackend.current();
+        MathBackend.setCurrent(MathBackend.parse(backend));
+        LaneSimulation simulation;
+        try {
+            simulation = new LaneSimulation(95, true, 8.0, 5, 50, gridSize, random);
+        } finally {
+            MathBackend.setCurrent(previous);
+        }
+        simulation.step(1);
+        return () -> {
+            simulation.step(5);
+            return simulation.muscleMass(0);
+        };
+    }
+
+    /**
+     * Returns a slice of the exhaustive sweep of FindBestComboSimulation, planned by a
+     * SweepPlanner like the sweep itself, run on a pool.
+     * @param pool The pool simulating the combinations.
+     * @param groups The number of hours of sleep in the slice.
+     * @param days The number of days of every simulation.
+     * @param rounds The number of rounds of every combination.
+     * @return The operation.
+     */
+    public static DoubleSupplier sweep(ForkJoinPool pool, int groups, int days, int rounds) {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        return () -> new SweepPlanner(50, days, rounds, SEED, logger, null)
+                .run(pool, groups).getMuscleMass();
+    }
+}
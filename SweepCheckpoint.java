@@ -0,0 +1,269 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * The SweepCheckpoint class records the progress of an exhaustive sweep of
+ * FindBestComboSimulation: which combinations are done and the best Data so far.
+ * A sweep restarted from it skips the finished combinations; every combination draws
+ * from the stream of the master seed given by ParameterCombo.randomFor, or starts its
+ * rounds from the InitialStatePool of the master seed, so the resumed sweep finds
+ * exactly what an uninterrupted one would. Ties go to the combination that comes first
+ * in sweep order, like in Data.better, whatever order the combinations finished in.
+ *
+ * The file is little-endian:
+ * <pre>
+ *  0  int     magic "MSSC"
+ *  4  int     format version
+ *  8  int     slow twitch percentage
+ * 12  int     days
+ * 16  int     rounds per combination
+ * 20  int     number of combinations
+ * 24  long    master seed
+ * 32  double  exercise probability of the ModelVariant
+ * 40  int     whether the ModelVariant sleeps irregularly
+ * 44  int     whether the rounds start from an InitialStatePool
+ * 48  int     sampling flags, like SimulationCheckpoint: 1 if log10 is approximated,
+ *             2 if lifts skip to the activated cells, 4 if lanes take log10 with
+ *             VectorOperators.LOG10
+ * 52  int     reserved
+ * 56  longs   the bits of the finished combinations
+ *     int     index of the best combination, or -1
+ *     ints    its intensity, lift, days between workouts and slow twitch percentage
+ *     doubles its hours of sleep, muscle mass, anabolic and catabolic hormones, and
+ *             the standard deviation and confidence of the muscle mass
+ * </pre>
+ * Like SimulationCheckpoint, the file is replaced atomically, and is only resumed with
+ * the MathBackend and LiftSampler it was saved with. Instances are thread-safe.
+ */
+public class SweepCheckpoint {
+    static final int MAGIC = 'M' | 'S' << 8 | 'S' << 16 | 'C' << 24; // The file signature
+    static final int VERSION = 5; // The version of the format
+    static final int DEFAULT_INTERVAL = 16; // The combinations between saves
+    private static final int DATA_SIZE = 4 * Integer.BYTES + 6 * Double.BYTES; // Best Data
+
+    private final String filename; // The checkpoint file
+    private final int slowTwitchPercentage; // The percentage of slow twitch muscles
+    private final int days; // The number of days simulated per combination
+    private final int maxRound; // The number of rounds per combination
+    private final long seed; // The master seed of the sweep
+    private final ModelVariant variant; // The variant of the model swept
+    private final boolean pooled; // Whether the rounds start from an InitialStatePool
+    private final int flags; // The math backend and lift sampling of the sweep
+    private final int saveEvery; // The combinations recorded between saves
+    private final BitSet done; // The finished combinations
+    private Data bestData; // The best data so far, or null
+    private int bestIndex; // The combination of the best data, or -1
+    private int unsaved; // The combinations recorded since the last save
+
+    /**
+     * Constructs a new SweepCheckpoint with no finished combinations.
+     * @param filename The checkpoint file.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param days The number of days simulated per combination.
+     * @param maxRound The number of rounds per combination.
+     * @param seed The master seed of the sweep.
+     * @param variant The variant of the model swept.
+     * @param pooled Whether the rounds start from an InitialStatePool.
+     * @param saveEvery The combinations recorded between saves.
+     */
+    private SweepCheckpoint(String filename, int slowTwitchPercentage, int days, int maxRound,
+                            long seed, ModelVariant variant, boolean pooled, int saveEvery) {
+        this.filename = filename;
+        this.slowTwitchPercentage = slowTwitchPercentage;
+        this.days = days;
+        this.maxRound = maxRound;
+        this.seed = seed;
+        this.variant = variant;
+        this.pooled = pooled;
+        this.flags = (MathBackend.current().isApproximate()
+                ? SimulationCheckpoint.APPROXIMATE_LOG : 0)
+                | (LiftSampler.isSkipping() ? SimulationCheckpoint.SKIPPING_LIFTS : 0)
+                | (MathBackend.current().isVectorized() ? SimulationCheckpoint.VECTOR_LOG : 0);
+        this.saveEvery = saveEvery;
+        this.done = new BitSet(ParameterCombo.COUNT);
+        this.bestIndex = -1;
+    }
+
+    /**
+     * Opens the checkpoint of a sweep with the current MathBackend and LiftSampler,
+     * loading the progress saved in the file if it exists.
+     * @param filename The checkpoint file.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param days The number of days simulated per combination.
+     * @param maxRound The number of rounds per combination.
+     * @param seed The master seed of the sweep.
+     * @param variant The variant of the model swept.
+     * @param pooled Whether the rounds start from an InitialStatePool.
+     * @param saveEvery The combinations recorded between saves.
+     * @return The checkpoint.
+     * @throws IOException If the file cannot be read or belongs to another sweep.
+     */
+    public static SweepCheckpoint open(String filename, int slowTwitchPercentage, int days,
+                                       int maxRound, long seed, ModelVariant variant,
+                                       boolean pooled, int saveEvery) throws IOException {
+        SweepCheckpoint checkpoint = new SweepCheckpoint(filename, slowTwitchPercentage, days,
+                maxRound, seed, variant, pooled, saveEvery);
+        if (new File(filename).exists()) {
+            checkpoint.load();
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Returns whether a combination is already done.
+     * @param index The index of the combination.
+     * @return Whether its result is recorded.
+     */
+    public synchronized boolean isDone(int index) {
+        return done.get(index);
+    }
+
+    /**
+     * Returns the number of finished combinations.
+     * @return The number of combinations done.
+     */
+    public synchronized int getDoneCount() {
+        return done.cardinality();
+    }
+
+    /**
+     * Returns the best data of all finished combinations.
+     * @return The best data, or null if no combination is done.
+     */
+    public synchronized Data getBestData() {
+        return bestData;
+    }
+
+    /**
+     * Records the result of a finished combination, saving the checkpoint every
+     * saveEvery combinations.
+     * @param index The index of the combination.
+     * @param data The result of the combination.
+     */
+    public synchronized void record(int index, Data data) {
+        if (done.get(index)) {
+            return;
+        }
+        done.set(index);
+        if (bestData == null || data.getMuscleMass() > bestData.getMuscleMass()
+                || (data.getMuscleMass() == bestData.getMuscleMass() && index < bestIndex)) {
+            bestData = data;
+            bestIndex = index;
+        }
+        if (++unsaved >= saveEvery) {
+            try {
+                save();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes the progress to the checkpoint file.
+     * @throws IOException If the file cannot be written.
+     */
+    public synchronized void save() throws IOException {
+        long[] bits = done.toLongArray();
+        int words = (ParameterCombo.COUNT + 63) / 64;
+        ByteBuffer buffer = ByteBuffer.allocate(56 + words * Long.BYTES + Integer.BYTES
+                + DATA_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(slowTwitchPercentage).putInt(days)
+                .putInt(maxRound).putInt(ParameterCombo.COUNT).putLong(seed)
+                .putDouble(variant.getExerciseProbability())
+                .putInt(variant.isIrregularSleep() ? 1 : 0).putInt(pooled ? 1 : 0)
+                .putInt(flags).putInt(0);
+        for (int w = 0; w < words; w++) {
+            buffer.putLong(w < bits.length ? bits[w] : 0);
+        }
+        buffer.putInt(bestIndex);
+        if (bestData != null) {
+            buffer.putInt(bestData.getIntensity()).putInt(bestData.isLift() ? 1 : 0)
+                    .putInt(bestData.getDaysBetweenWorkouts())
+                    .putInt(bestData.getSlowTwitchPercentage())
+                    .putDouble(bestData.getHoursOfSleep())
+                    .putDouble(bestData.getMuscleMass())
+                    .putDouble(bestData.getAnabolicHormone())
+                    .putDouble(bestData.getCatabolicHormone())
+                    .putDouble(bestData.getMuscleMassStandardDeviation())
+                    .putDouble(bestData.getMuscleMassConfidence());
+        }
+        buffer.flip();
+
+        Path temporary = Paths.get(filename + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, Paths.get(filename), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        unsaved = 0;
+    }
+
+    /**
+     * Loads the progress saved in the checkpoint file.
+     * @throws IOException If the file cannot be read or belongs to another sweep.
+     */
+    private void load() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(filename)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(filename + " is not a sweep checkpoint");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version);
+            }
+            if (buffer.getInt() != slowTwitchPercentage || buffer.getInt() != days
+                    || buffer.getInt() != maxRound || buffer.getInt() != ParameterCombo.COUNT
+                    || buffer.getLong() != seed
+                    || buffer.getDouble() != variant.getExerciseProbability()
+                    || (buffer.getInt() != 0) != variant.isIrregularSleep()
+                    || (buffer.getInt() != 0) != pooled) {
+                throw new IOException("The checkpoint was saved by a sweep with other "
+                        + "parameters, another seed, another model variant or other "
+                        + "initial states");
+            }
+            int saved = buffer.getInt();
+            buffer.getInt();
+            if (saved != flags) {
+                throw new IOException("The checkpoint was saved with "
+                        + SimulationCheckpoint.describe(saved) + " but the sweep uses "
+                        + SimulationCheckpoint.describe(flags));
+            }
+            long[] bits = new long[(ParameterCombo.COUNT + 63) / 64];
+            for (int w = 0; w < bits.length; w++) {
+                bits[w] = buffer.getLong();
+            }
+            done.or(BitSet.valueOf(bits));
+            bestIndex = buffer.getInt();
+            if (bestIndex >= 0) {
+                int intensity = buffer.getInt();
+                boolean lift = buffer.getInt() != 0;
+                int daysBetweenWorkouts = buffer.getInt();
+                int twitch = buffer.getInt();
+                double hoursOfSleep = buffer.getDouble();
+                bestData = new Data(intensity, lift, hoursOfSleep, daysBetweenWorkouts,
+                        twitch, buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+                bestData.setMuscleMassStandardDeviation(buffer.getDouble());
+                bestData.setMuscleMassConfidence(buffer.getDouble());
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The checkpoint is cut short", e);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * The SweepPlanner class runs the exhaustive sweep of FindBestComboSimulation without
+ * simulating the same days twice. It gives the same Data for every combination as
+ * FindBestComboSimulation.simulate, which simulates one combination on its own.
+ *
+ * The combinations are planned per hours of sleep, since all combinations with the
+ * same hours of sleep draw from the same random stream (see ParameterCombo.randomFor):
+ * <ul>
+ * <li>Without lifting the intensity and the days between workouts are ignored, so the
+ * combinations without lifting are canonicalized to one configuration that is
+ * simulated once.</li>
+ * <li>A combination lifting every d days does not lift before day d, so its first
+ * d - 1 days are those of the configuration without lifting. That trunk is simulated
+ * once, and the lanes of every combination are forked from it at the end of day
+ * d - 1 and only simulate the days from d on.</li>
+ * </ul>
+ * With a shared InitialStatePool every group starts its rounds from the pooled states.
+ * Forking needs the lanes of the base model; other ModelVariants draw at random while
+ * they step, so their combinations are only canonicalized.
+ * Groups of the same hours of sleep are planned in parallel, and the forks of a group
+ * too. Ties go to the combination that comes first in sweep order.
+ */
+public class SweepPlanner {
+    private static final int CONFIGS = 1 + ParameterCombo.WORKOUT_STEPS
+            * ParameterCombo.INTENSITY_STEPS; // Canonical configurations per group
+
+    private final int slowTwitchPercentage; // The percentage of slow twitch muscles
+    private final int days; // The number of days to simulate
+    private final int maxRound; // The number of rounds to simulate per combination
+    private final long seed; // The master seed of the sweep
+    private final Logger logger; // The logger to log the results
+    private final SweepCheckpoint checkpoint; // The progress of the sweep, or null
+    private final AtomicLong simulatedDays; // The days simulated in all lanes
+
+    /**
+     * Constructs a new SweepPlanner.
+     * @param slowTwitchPercentage The percentage of slow twitch muscles.
+     * @param days The number of days to simulate.
+     * @param maxRound The number of rounds to simulate per combination.
+     * @param seed The master seed of the sweep.
+     * @param logger The logger to log the results.
+     * @param checkpoint The progress of the sweep, or null.
+     */
+    public SweepPlanner(int slowTwitchPercentage, int days, int maxRound, long seed,
+                        Logger logger, SweepCheckpoint checkpoint) {
+        this.slowTwitchPercentage = slowTwitchPercentage;
+        this.days = days;
+        this.maxRound = maxRound;
+        this.seed = seed;
+        this.logger = logger;
+        this.checkpoint = checkpoint;
+        this.simulatedDays = new AtomicLong();
+    }
+
+    /**
+     * Returns the number of days simulated so far, over all rounds.
+     * @return The simulated days.
+     */
+    public long getSimulatedDays() {
+        return simulatedDays.get();
+    }
+
+    /**
+     * Returns the number of days the sweep would simulate without planning.
+     * @return The days of simulating every combination on its own.
+     */
+    public long getExhaustiveDays() {
+        return (long) ParameterCombo.COUNT * maxRound * days;
+    }
+
+    /**
+     * Runs the sweep on a pool and returns the best combination.
+     * @param pool The pool simulating the groups.
+     * @return The best data of the sweep, including the combinations already done in the
+     *         checkpoint, or null if no combination was simulated.
+     */
+    public Data run(ForkJoinPool pool) {
+        return run(pool, ParameterCombo.SLEEP_STEPS);
+    }
+
+    /**
+     * Runs the slice of the sweep with the fewest hours of sleep on a pool and returns
+     * its best combination. The benchmarks measure such slices.
+     * @param pool The pool simulating the groups.
+     * @param groups The number of hours of sleep of the slice, from the first one.
+     * @return The best data of the slice, including the combinations already done in
+     *         the checkpoint, or null if no combination was simulated.
+     */
+    public Data run(ForkJoinPool pool, int groups) {
+        Data[] results = new Data[ParameterCombo.COUNT];
+        pool.submit(() -> IntStream.range(0, groups).parallel()
+                .forEach(sleepStep -> runGroup(sleepStep, results))).join();
+        if (checkpoint != null) {
+            return checkpoint.getBestData();
+        }
+        Data bestData = null;
+        for (Data data : results) {
+            bestData = Data.better(bestData, data);
+        }
+        return bestData;
+    }
+
+    /**
+     * Simulates the combinations with the same hours of sleep and stores their data.
+     * @param sleepStep The step of the hours of sleep of the group.
+     * @param results The data of every combination, by index.
+     */
+    private void runGroup(int sleepStep, Data[] results) {
+        int[] indices = new int[ParameterCombo.COUNT / ParameterCombo.SLEEP_STEPS];
+        int count = 0;
+        for (int i = 0; i < ParameterCombo.INTENSITY_STEPS; i++) {
+            for (int w = 0; w < ParameterCombo.WORKOUT_STEPS; w++) {
+                for (int l = 0; l < ParameterCombo.LIFT_STEPS; l++) {
+                    int index = ParameterCombo.toIndex(i, sleepStep, w, l);
+                    if (checkpoint == null || !checkpoint.isDone(index)) {
+                        indices[count++] = index;
+                    }
+                }
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+
+        double hoursOfSleep = ParameterCombo.fromIndex(indices[0]).getHoursOfSleep();
+        double[][] values = evaluate(hoursOfSleep,
+                ParameterCombo.randomFor(seed, indices[0]));
+        for (int k = 0; k < count; k++) {
+            int index = indices[k];
+            ParameterCombo combo = ParameterCombo.fromIndex(index);
+            Data data = FindBestComboSimulation.report(combo.getIntensity(), combo.isLift(),
+                    hoursOfSleep, combo.getDaysBetweenWorkouts(), slowTwitchPercentage,
+                    values[config(combo)], logger);
+            results[index] = data;
+            if (checkpoint != null) {
+                checkpoint.record(index, data);
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical configuration of a combination within its group.
+     * @param combo The combination.
+     * @return 0 without lifting, otherwise 1 plus the steps of the days between
+     *         workouts and of the intensity.
+     */
+    private static int config(ParameterCombo combo) {
+        if (!combo.isLift()) {
+            return 0;
+        }
+        int workoutStep = combo.getDaysBetweenWorkouts()
+                - FindBestComboSimulation.INIT_DAYSBETWEENWORKOUTS;
+        int intensityStep = combo.getIntensity() - FindBestComboSimulation.INIT_INTENSITY;
+        return 1 + workoutStep * ParameterCombo.INTENSITY_STEPS + intensityStep;
+    }
+
+    /**
+     * Returns the values of every canonical configuration of a group, from the result
+     * cache when it holds all of them, otherwise by simulating the group.
+     * @param hoursOfSleep The hours of sleep of the group.
+     * @param random The random number generator of the group.
+     * @return The summarized values of every configuration.
+     */
+    private double[][] evaluate(double hoursOfSleep, SimulationRandom random) {
+        ModelVariant variant = ModelVariant.current();
+        InitialStatePool initialStates = InitialStatePool.shared();
+        ResultCache cache = ResultCache.shared();
+        String[] keys = new String[CONFIGS];
+        double[][] values = new double[CONFIGS][];
+        boolean cached = cache != null;
+        for (int c = 0; c < CONFIGS; c++) {
+            if (cache != null) {
+                keys[c] = FindBestComboSimulation.cacheKey(variant, intensity(c), c > 0,
+                        hoursOfSleep, daysBetweenWorkouts(c), slowTwitchPercentage, days,
+                        maxRound, random, initialStates);
+                values[c] = cache.get(keys[c]);
+                cached &= values[c] != null;
+            }
+        }
+        if (cached) {
+            return values;
+        }
+
+        if (variant.isBase()) {
+            EnsembleResult[] results = simulateForked(hoursOfSleep, random, initialStates);
+            for (int c = 0; c < CONFIGS; c++) {
+                values[c] = FindBestComboSimulation.summarize(results[c]);
+            }
+        } else {
+            IntStream.range(0, CONFIGS).parallel().forEach(c -> {
+                Ensemble ensemble = new Ensemble(maxRound, days, false);
+                Ensemble.ModelFactory models = (roundRandom, roundState) ->
+                        new FindBestComboSimulation(intensity(c), c > 0, hoursOfSleep,
+                                daysBetweenWorkouts(c), slowTwitchPercentage, variant,
+                                roundRandom, roundState);
+                EnsembleResult result = initialStates != null
+                        ? ensemble.run(models, initialStates, 0)
+                        : ensemble.run(models, random.copy());
+                values[c] = FindBestComboSimulation.summarize(result);
+            });
+            simulatedDays.addAndGet((long) CONFIGS * maxRound * days);
+        }
+        if (cache != null) {
+            for (int c = 0; c < CONFIGS; c++) {
+                cache.put(keys[c], values[c]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Simulates every canonical configuration of a group of the base model. Every batch
+     * of rounds steps one trunk without lifting and forks the lanes of the configurations
+     * lifting every d days from it at the end of day d - 1. The rounds draw from the
+     * generators Ensemble.runLanes gives them and are added to the statistics in the same
+     * order, so every configuration gets the statistics FindBestComboSimulation.simulate
+     * would compute for it.
+     * @param hoursOfSleep The hours of sleep of the group.
+     * @param random The random number generator of the group.
+     * @param initialStates The pool the rounds start from instead, or null.
+     * @return The statistics of every configuration.
+     */
+    private EnsembleResult[] simulateForked(double hoursOfSleep, SimulationRandom random,
+                                            InitialStatePool initialStates) {
+        EnsembleResult[] results = new EnsembleResult[CONFIGS];
+        for (int c = 0; c < CONFIGS; c++) {
+            results[c] = new EnsembleResult(-1);
+        }
+        for (int first = 0; first < maxRound; first += LaneSimulation.DEFAULT_LANES) {
+            int lanes = Math.min(LaneSimulation.DEFAULT_LANES, maxRound - first);
+            SimulationRandom[] batch = new SimulationRandom[lanes];
+            InitialStatePool.Replicate[] states = initialStates != null
+                    ? new InitialStatePool.Replicate[lanes] : null;
+            for (int l = 0; l < batch.length; l++) {
+                if (states != null) {
+                    states[l] = initialStates.replicate(first + l);
+                    batch[l] = states[l].random();
+                } else {
+                    batch[l] = random.split();
+                }
+            }
+
+            // The trunk, with the state at the end of the day before every first workout
+            LaneSimulation trunk = new LaneSimulation(FindBestComboSimulation.INIT_INTENSITY,
+                    false, hoursOfSleep, FindBestComboSimulation.INIT_DAYSBETWEENWORKOUTS,
+                    slowTwitchPercentage, Simulation.DEFAULT_GRID_SIZE, batch, states);
+            LaneSimulation[] branches = new LaneSimulation[ParameterCombo.WORKOUT_STEPS];
+            for (int day = 1; day <= days; day++) {
+                int w = day - FindBestComboSimulation.INIT_DAYSBETWEENWORKOUTS;
+                if (w >= 0 && w < branches.length) {
+                    branches[w] = trunk.fork(FindBestComboSimulation.INIT_INTENSITY, false,
+                            day);
+                }
+                trunk.step(day);
+            }
+            addLanes(results[0], trunk);
+
+            // The forks of every workout interval, in parallel
+            IntStream.range(0, ParameterCombo.WORKOUT_STEPS).parallel().forEach(w -> {
+                int daysBetweenWorkouts = FindBestComboSimulation.INIT_DAYSBETWEENWORKOUTS + w;
+                for (int i = 0; i < ParameterCombo.INTENSITY_STEPS; i++) {
+                    EnsembleResult result = results[1 + w * ParameterCombo.INTENSITY_STEPS + i];
+                    if (branches[w] == null) {
+                        // The first workout is after the final day
+                        addLanes(result, trunk);
+                        continue;
+                    }
+                    LaneSimulation fork = branches[w].fork(
+                            FindBestComboSimulation.INIT_INTENSITY + i, true, daysBetweenWorkouts);
+                    for (int day = daysBetweenWorkouts; day <= days; day++) {
+                        fork.step(day);
+                    }
+                    addLanes(result, fork);
+                    simulatedDays.addAndGet((long) lanes * (days - daysBetweenWorkouts + 1));
+                }
+            });
+            simulatedDays.addAndGet((long) lanes * days);
+        }
+        return results;
+    }
+
+    /**
+     * Adds the final metrics of every lane, in lane order.
+     * @param result The statistics of a configuration.
+     * @param simulation The lanes after the final day.
+     */
+    private static void addLanes(EnsembleResult result, LaneSimulation simulation) {
+        for (int l = 0; l < simulation.getLanes(); l++) {
+            result.addFinal(simulation.lane(l));
+        }
+    }
+
+    /**
+     * Returns the intensity of a canonical configuration.
+     * @param config The configuration.
+     * @return The intensity.
+     */
+    private static int intensity(int config) {
+        return FindBestComboSimulation.INIT_INTENSITY
+                + (config == 0 ? 0 : (config - 1) % ParameterCombo.INTENSITY_STEPS);
+    }
+
+    /**
+     * Returns the days between workouts of a canonical configuration.
+     * @param config The configuration.
+     * @return The days between workouts.
+     */
+    private static int daysBetweenWorkouts(int config) {
+        return FindBestComboSimulation.INIT_DAYSBETWEENWORKOUTS
+                + (config == 0 ? 0 : (config - 1) / ParameterCombo.INTENSITY_STEPS);
+    }
+}
@@ -0,0 +1,289 @@
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The TrainingPlan class describes a periodized training program: on which days the
+ * person lifts, the intensity of consecutive workouts, deload weeks with lighter
+ * workouts and the hours of sleep of every weekday.
+ * Plans are read from properties files such as:
+ * <pre>
+ * name=deload_every_fourth_week
+ * workoutDays=Mon,Wed,Fri
+ * intensities=80,85,90
+ * deloadEvery=4
+ * deloadPercentage=60
+ * sleep=7.5,7.5,7.5,7.5,7,9,9
+ * </pre>
+ * The workouts are done on the listed {@code workoutDays}, or every
+ * {@code daysBetweenWorkouts} days like the base model; an empty list means no
+ * workouts. The {@code intensities} are used by consecutive workouts and then repeated.
+ * Every {@code deloadEvery}-th week is a deload week, whose workouts are done at
+ * {@code deloadPercentage}% of the intensity of the next workout without moving on to
+ * the one after it, and not at all at 0%. The {@code sleep} is the same every night or
+ * given from Monday to Sunday; day 1 is a {@code firstDay}, Monday by default. A plan
+ * giving only its name is the base model: a workout at intensity 95 every 5 days and 8
+ * hours of sleep.
+ *
+ * A plan is compiled once per number of days into a TrainingSchedule, which is shared
+ * by every simulation following the plan for that many days. Instances are
+ * thread-safe.
+ */
+public class TrainingPlan {
+    static final String[] WEEKDAYS = {
+            "Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"
+    }; // The names of the weekdays, from Monday
+
+    private final String name; // The name of the plan
+    private final boolean[] workoutDays; // The weekdays of the workouts, or null
+    private final int daysBetweenWorkouts; // The days between workouts, without weekdays
+    private final int[] intensities; // The intensities of consecutive workouts
+    private final int deloadEvery; // The weeks from one deload week to the next, or 0
+    private final int deloadPercentage; // The intensity of deload workouts, in percent
+    private final double[] sleep; // The hours of sleep from Monday to Sunday
+    private final int firstDay; // The weekday of day 1, 0 for Monday
+    private final Map<Integer, TrainingSchedule> schedules; // The compiled schedules
+
+    /**
+     * Constructs a new TrainingPlan from parsed properties.
+     * @param properties The properties of the plan.
+     */
+    public TrainingPlan(Properties properties) {
+        this.name = properties.getProperty("name");
+        if (name == null) {
+            throw new IllegalArgumentException("The plan is missing the name property");
+        }
+        String days = properties.getProperty("workoutDays");
+        if (days != null && properties.getProperty("daysBetweenWorkouts") != null) {
+            throw new IllegalArgumentException(
+                    "A plan gives either workoutDays or daysBetweenWorkouts, not both");
+        }
+        this.workoutDays = days == null ? null : parseWorkoutDays(days);
+        this.daysBetweenWorkouts = Integer.parseInt(
+                properties.getProperty("daysBetweenWorkouts", "5"));
+        if (daysBetweenWorkouts < 1) {
+            throw new IllegalArgumentException("The days between workouts must be positive: "
+                    + daysBetweenWorkouts);
+        }
+        this.intensities = parseIntensities(properties.getProperty("intensities", "95"));
+        this.deloadEvery = Integer.parseInt(properties.getProperty("deloadEvery", "0"));
+        if (deloadEvery < 0) {
+            throw new IllegalArgumentException("The weeks between deloads cannot be negative: "
+                    + deloadEvery);
+        }
+        this.deloadPercentage = Integer.parseInt(
+                properties.getProperty("deloadPercentage", "60"));
+        if (deloadPercentage < 0 || deloadPercentage > 100) {
+            throw new IllegalArgumentException("The deload percentage must be in [0, 100]: "
+                    + deloadPercentage);
+        }
+        this.sleep = parseSleep(properties.getProperty("sleep", "8.0"));
+        this.firstDay = weekday(properties.getProperty("firstDay", "Mon"));
+        this.schedules = new HashMap<>();
+    }
+
+    /**
+     * Reads a TrainingPlan from a properties file.
+     * @param filename The name of the file.
+     * @return The plan.
+     * @throws IOException If the file cannot be read.
+     */
+    public static TrainingPlan load(String filename) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(filename)) {
+            properties.load(reader);
+        }
+        return new TrainingPlan(properties);
+    }
+
+    /**
+     * Returns the name of the plan.
+     * @return The name of the plan.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the plan compiled for days 1 to {@code days}. Every number of days is
+     * compiled once, and the same schedule is returned to every caller.
+     * @param days The number of days to simulate.
+     * @return The schedule.
+     */
+    public synchronized TrainingSchedule compile(int days) {
+        if (days < 0) {
+            throw new IllegalArgumentException("The days to simulate cannot be negative: "
+                    + days);
+        }
+        return schedules.computeIfAbsent(days, this::compileDays);
+    }
+
+    /**
+     * Compiles the plan for days 1 to {@code days}.
+     * @param days The number of days to simulate.
+     * @return The schedule.
+     */
+    private TrainingSchedule compileDays(int days) {
+        byte[] intensity = new byte[days + 1];
+        float[] hours = new float[days + 1];
+        int workout = 0;
+        for (int d = 1; d <= days; d++) {
+            int weekday = (firstDay + d - 1) % 7;
+            hours[d] = (float) sleep[weekday];
+            if (isWorkoutDay(d, weekday)) {
+                int planned = intensities[workout % intensities.length];
+                if (isDeloadWeek(d)) {
+                    planned = planned * deloadPercentage / 100;
+                } else {
+                    workout++;
+                }
+                intensity[d] = (byte) planned;
+            }
+        }
+        return new TrainingSchedule(name, intensity, hours, period());
+    }
+
+    /**
+     * Returns the number of days after which the compiled days repeat: the cycles of
+     * the workout days, the deload weeks and the nights, times the number of those
+     * cycles the intensities need to line up again with the workouts.
+     * @return The period in days.
+     */
+    int period() {
+        int cycle = workoutDays == null ? daysBetweenWorkouts : 7;
+        if (deloadEvery > 0) {
+            cycle = lcm(cycle, 7 * deloadEvery);
+        }
+        for (double hours : sleep) {
+            if (hours != sleep[0]) {
+                cycle = lcm(cycle, 7);
+                break;
+            }
+        }
+        int workouts = 0;
+        for (int d = 1; d <= cycle; d++) {
+            if (isWorkoutDay(d, (firstDay + d - 1) % 7) && !isDeloadWeek(d)) {
+                workouts++;
+            }
+        }
+        return workouts == 0 ? cycle : cycle * (intensities.length / gcd(workouts,
+                intensities.length));
+    }
+
+    /**
+     * Returns whether a workout is planned on a day.
+     * @param day The number of the day, starting at 1.
+     * @param weekday The weekday of the day, 0 for Monday.
+     * @return Whether the day is a workout day.
+     */
+    private boolean isWorkoutDay(int day, int weekday) {
+        return workoutDays == null ? day % daysBetweenWorkouts == 0 : workoutDays[weekday];
+    }
+
+    /**
+     * Returns whether a day is in a deload week; the weeks start on day 1.
+     * @param day The number of the day, starting at 1.
+     * @return Whether the workouts of the day are deload workouts.
+     */
+    private boolean isDeloadWeek(int day) {
+        return deloadEvery > 0 && (day - 1) / 7 % deloadEvery == deloadEvery - 1;
+    }
+
+    /**
+     * Parses a comma separated list of weekdays.
+     * @param value The list, which may be empty.
+     * @return Whether there is a workout on every weekday, from Monday.
+     */
+    private static boolean[] parseWorkoutDays(String value) {
+        boolean[] days = new boolean[7];
+        for (String day : value.split(",")) {
+            if (!day.trim().isEmpty()) {
+                days[weekday(day)] = true;
+            }
+        }
+        return days;
+    }
+
+    /**
+     * Parses a comma separated list of workout intensities.
+     * @param value The list.
+     * @return The intensities.
+     */
+    private static int[] parseIntensities(String value) {
+        String[] parts = value.split(",");
+        int[] intensities = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            intensities[i] = Integer.parseInt(parts[i].trim());
+            if (intensities[i] < 0 || intensities[i] > 100) {
+                throw new IllegalArgumentException("Intensities must be in [0, 100]: "
+                        + intensities[i]);
+            }
+        }
+        return intensities;
+    }
+
+    /**
+     * Parses the hours of sleep of every night, or of the nights from Monday to Sunday.
+     * @param value One number, or seven comma separated numbers.
+     * @return The hours of sleep from Monday to Sunday.
+     */
+    private static double[] parseSleep(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 1 && parts.length != 7) {
+            throw new IllegalArgumentException(
+                    "The sleep is one number of hours or one per weekday: " + value);
+        }
+        double[] hours = new double[7];
+        for (int i = 0; i < 7; i++) {
+            hours[i] = Double.parseDouble(parts[parts.length == 1 ? 0 : i].trim());
+            if (!(hours[i] >= 0)) {
+                throw new IllegalArgumentException("The hours of sleep cannot be negative: "
+                        + hours[i]);
+            }
+        }
+        return hours;
+    }
+
+    /**
+     * Returns the weekday of a name.
+     * @param name The name of the weekday, such as "Mon" or "monday".
+     * @return The weekday, 0 for Monday.
+     */
+    private static int weekday(String name) {
+        String prefix = name.trim();
+        for (int i = 0; i < WEEKDAYS.length; i++) {
+            if (prefix.length() >= 3 && WEEKDAYS[i].regionMatches(true, 0, prefix, 0, 3)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown weekday: " + name);
+    }
+
+    /**
+     * Returns the greatest common divisor of two positive numbers.
+     * @param a The first number.
+     * @param b The second number.
+     * @return The greatest common divisor.
+     */
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int r = a % b;
+            a = b;
+            b = r;
+        }
+        return a;
+    }
+
+    /**
+     * Returns the least common multiple of two positive numbers.
+     * @param a The first number.
+     * @param b The second number.
+     * @return The least common multiple.
+     */
+    private static int lcm(int a, int b) {
+        return a / gcd(a, b) * b;
+    }
+}
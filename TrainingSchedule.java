@@ -0,0 +1,141 @@
+/**
+ * The TrainingSchedule class is a TrainingPlan compiled for a number of days: whether
+ * the person lifts on every day is one bit of a bitset, the intensity of every workout
+ * one byte and the hours of every night one float, indexed by the day. Stepping a day
+ * then reads three array elements instead of evaluating the plan.
+ *
+ * Schedules are immutable, so one schedule is shared by every replicate, run and thread
+ * that follows the plan. The hours are stored as floats, which is exact for the
+ * quarter hours plans are written in.
+ */
+public final class TrainingSchedule {
+    private final String name; // The name of the plan
+    private final int days; // The last day of the schedule
+    private final long[] workouts; // Bit d is set if the person lifts on day d
+    private final byte[] intensity; // The intensity of the workout of every day, or 0
+    private final float[] sleep; // The hours slept the night of every day
+    private final int period; // The number of days after which the schedule repeats
+    private final long fingerprint; // Identifies the schedule, for result cache keys
+
+    /**
+     * Constructs a new TrainingSchedule from compiled days; day 0 is not used.
+     * @param name The name of the plan.
+     * @param intensity The intensity of the workout of every day, or 0 on rest days.
+     * @param sleep The hours slept the night of every day.
+     * @param period The number of days after which the schedule repeats.
+     */
+    TrainingSchedule(String name, byte[] intensity, float[] sleep, int period) {
+        this.name = name;
+        this.days = intensity.length - 1;
+        this.intensity = intensity;
+        this.sleep = sleep;
+        this.period = period;
+        this.workouts = new long[(days >> 6) + 1];
+        long fingerprint = period;
+        for (int d = 1; d <= days; d++) {
+            if (intensity[d] > 0) {
+                workouts[d >> 6] |= 1L << d;
+            }
+            fingerprint = fingerprint * 31 + intensity[d];
+            fingerprint = fingerprint * 31 + Float.floatToIntBits(sleep[d]);
+        }
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns the name of the plan the schedule was compiled from.
+     * @return The name of the plan.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the last day of the schedule; days 1 to this day can be simulated.
+     * @return The number of days.
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * Returns whether the person lifts on a day.
+     * @param day The number of the day, from 1 to getDays().
+     * @return Whether the day is a workout day.
+     */
+    public boolean isWorkoutDay(int day) {
+        return (workouts[day >> 6] & 1L << day) != 0;
+    }
+
+    /**
+     * Returns the intensity of the workout of a day.
+     * @param day The number of the day, from 1 to getDays().
+     * @return The intensity, or 0 on rest days.
+     */
+    public int intensity(int day) {
+        return intensity[day];
+    }
+
+    /**
+     * Returns the hours slept the night of a day.
+     * @param day The number of the day, from 1 to getDays().
+     * @return The hours of sleep.
+     */
+    public double hours(int day) {
+        return sleep[day];
+    }
+
+    /**
+     * Returns the number of days after which the workouts, intensities and nights of the
+     * schedule repeat.
+     * @return The period of the schedule in days.
+     */
+    public int period() {
+        return period;
+    }
+
+    /**
+     * Returns the number of workouts in the schedule.
+     * @return The number of workout days.
+     */
+    public int workouts() {
+        int count = 0;
+        for (long bits : workouts) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the highest intensity of the workouts.
+     * @return The peak intensity, or 0 without workouts.
+     */
+    public int peakIntensity() {
+        int peak = 0;
+        for (int d = 1; d <= days; d++) {
+            peak = Math.max(peak, intensity[d]);
+        }
+        return peak;
+    }
+
+    /**
+     * Returns the mean hours slept per night.
+     * @return The mean hours of sleep.
+     */
+    public double meanHours() {
+        double total = 0;
+        for (int d = 1; d <= days; d++) {
+            total += sleep[d];
+        }
+        return days == 0 ? 0 : total / days;
+    }
+
+    /**
+     * Returns a digest identifying the days of the schedule, so results simulated with
+     * it can be looked up later.
+     * @return The fingerprint of the schedule.
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+}
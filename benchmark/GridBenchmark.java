@@ -0,0 +1,148 @@
+package benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The GridBenchmark class measures the kernels of one simulation on a MuscleGrid:
+ * every phase of a simulated day, the metric reductions, a step, a fused step and a
+ * full run, for every grid size and number of threads stepping the grid.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class GridBenchmark {
+    @Param({"17", "64", "256"})
+    public int gridSize; // The number of rows and columns of the grid
+
+    @Param({"1", "8"})
+    public int threads; // The number of threads stepping the grid
+
+    @Param({"365"})
+    public int days; // The number of days of a full run
+
+    private DoubleSupplier performDailyActivity; // Daily activity on every cell
+    private DoubleSupplier liftWeights; // Lifting on every cell
+    private DoubleSupplier sleep; // Sleep on every cell
+    private DoubleSupplier regulateHormones; // Diffusion and clamping of the hormones
+    private DoubleSupplier developMuscle; // Growth of every fiber
+    private DoubleSupplier metrics; // A rescan of the metrics of the grid
+    private DoubleSupplier step; // One simulated day
+    private DoubleSupplier fusedStep; // One simulated day in one fused pass
+    private DoubleSupplier run; // A new simulation run for every day
+
+    /**
+     * Builds the simulations of the trial.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, DoubleSupplier> operations = Operations.grid(gridSize, threads, days);
+        performDailyActivity = operations.get("performDailyActivity");
+        liftWeights = operations.get("liftWeights");
+        sleep = operations.get("sleep");
+        regulateHormones = operations.get("regulateHormones");
+        developMuscle = operations.get("developMuscle");
+        metrics = operations.get("metrics");
+        step = operations.get("step");
+        fusedStep = operations.get("fusedStep");
+        run = operations.get("run");
+    }
+
+    /**
+     * Measures daily activity.
+     * @return The anabolic hormone of the first cell.
+     */
+    @Benchmark
+    public double performDailyActivity() {
+        return performDailyActivity.getAsDouble();
+    }
+
+    /**
+     * Measures lifting.
+     * @return The anabolic hormone of the first cell.
+     */
+    @Benchmark
+    public double liftWeights() {
+        return liftWeights.getAsDouble();
+    }
+
+    /**
+     * Measures sleep.
+     * @return The anabolic hormone of the first cell.
+     */
+    @Benchmark
+    public double sleep() {
+        return sleep.getAsDouble();
+    }
+
+    /**
+     * Measures the diffusion and clamping of the hormones.
+     * @return The anabolic hormone of the first cell.
+     */
+    @Benchmark
+    public double regulateHormones() {
+        return regulateHormones.getAsDouble();
+    }
+
+    /**
+     * Measures muscle development.
+     * @return The fiber size of the first cell.
+     */
+    @Benchmark
+    public double developMuscle() {
+        return developMuscle.getAsDouble();
+    }
+
+    /**
+     * Measures a rescan of the muscle mass and average hormone levels.
+     * @return The sum of the metrics.
+     */
+    @Benchmark
+    public double metrics() {
+        return metrics.getAsDouble();
+    }
+
+    /**
+     * Measures one simulated day.
+     * @return The muscle mass.
+     */
+    @Benchmark
+    public double step() {
+        return step.getAsDouble();
+    }
+
+    /**
+     * Measures one simulated day in one fused pass.
+     * @return The muscle mass.
+     */
+    @Benchmark
+    public double fusedStep() {
+        return fusedStep.getAsDouble();
+    }
+
+    /**
+     * Measures a full run of a new simulation.
+     * @return The final muscle mass.
+     */
+    @Benchmark
+    public double run() {
+        return run.getAsDouble();
+    }
+}
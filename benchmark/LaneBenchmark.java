@@ -0,0 +1,58 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The LaneBenchmark class measures a simulated day of replicates stepped together in
+ * the lanes of a LaneSimulation, as the sweep does, for every grid size, number of
+ * lanes and MathBackend.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class LaneBenchmark {
+    @Param({"17"})
+    public int gridSize; // The number of rows and columns of the grid
+
+    @Param({"8"})
+    public int lanes; // The number of replicates stepped together
+
+    @Param({"cached", "vector"})
+    public String mathBackend; // The name of the MathBackend of the lanes
+
+    private DoubleSupplier step; // One simulated day of every lane
+
+    /**
+     * Builds the lanes of the trial.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        step = Operations.laneStep(mathBackend, gridSize, lanes);
+    }
+
+    /**
+     * Measures one simulated day of every lane.
+     * @return The muscle mass of the first lane.
+     */
+    @Benchmark
+    public double step() {
+        return step.getAsDouble();
+    }
+}
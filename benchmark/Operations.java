@@ -0,0 +1,73 @@
+package benchmark;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleSupplier;
+
+/**
+ * The Operations class looks up the operations the benchmarks measure. They are built
+ * by the StepBenchmark class of the simulation, which is in the unnamed package and
+ * cannot be named from here, so it is called by reflection once per trial; the
+ * measured calls go straight to the returned DoubleSupplier.
+ */
+class Operations {
+    private static final String FACTORY = "StepBenchmark"; // The class building them
+
+    /**
+     * Returns the operations on a grid, by name.
+     * @param gridSize The number of rows and columns of the grid.
+     * @param threads The number of threads to step the grid with.
+     * @param days The number of days of a run.
+     * @return The operations.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, DoubleSupplier> grid(int gridSize, int threads, int days) {
+        return (Map<String, DoubleSupplier>) call("gridOperations",
+                new Class<?>[] {int.class, int.class, int.class}, gridSize, threads, days);
+    }
+
+    /**
+     * Returns a step of lanes stepped together.
+     * @param backend The name of the MathBackend of the lanes.
+     * @param gridSize The number of rows and columns of the grid.
+     * @param lanes The number of lanes.
+     * @return The operation.
+     */
+    static DoubleSupplier laneStep(String backend, int gridSize, int lanes) {
+        return (DoubleSupplier) call("laneStep",
+                new Class<?>[] {String.class, int.class, int.class}, backend, gridSize, lanes);
+    }
+
+    /**
+     * Returns a slice of the planned combination sweep run on a pool.
+     * @param pool The pool simulating the combinations.
+     * @param groups The number of hours of sleep in the slice.
+     * @param days The number of days of every simulation.
+     * @param rounds The number of rounds of every combination.
+     * @return The operation.
+     */
+    static DoubleSupplier sweep(ForkJoinPool pool, int groups, int days, int rounds) {
+        return (DoubleSupplier) call("sweep",
+                new Class<?>[] {ForkJoinPool.class, int.class, int.class, int.class},
+                pool, groups, days, rounds);
+    }
+
+    /**
+     * Calls a static method of the StepBenchmark class.
+     * @param name The name of the method.
+     * @param types The parameter types of the method.
+     * @param args The arguments.
+     * @return The value returned by the method.
+     */
+    private static Object call(String name, Class<?>[] types, Object... args) {
+        try {
+            return Class.forName(FACTORY).getMethod(name, types).invoke(null, args);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Cannot build the operation " + name,
+                    e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + FACTORY + "." + name, e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package benchmark;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The SweepBenchmark class measures a slice of the exhaustive FindBestComboSimulation
+ * sweep, planned by a SweepPlanner, on a pool of every number of threads: every
+ * combination of the first hours of sleep.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class SweepBenchmark {
+    @Param({"1", "8"})
+    public int threads; // The number of threads of the pool
+
+    @Param({"1"})
+    public int groups; // The number of hours of sleep in the slice
+
+    @Param({"30"})
+    public int days; // The number of days of every simulation
+
+    @Param({"8"})
+    public int rounds; // The number of rounds of every combination
+
+    private ForkJoinPool pool; // The pool simulating the combinations
+    private DoubleSupplier sweep; // The slice of the sweep
+
+    /**
+     * Starts the pool of the trial.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new ForkJoinPool(threads);
+        sweep = Operations.sweep(pool, groups, days, rounds);
+    }
+
+    /**
+     * Stops the pool of the trial.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Measures the slice of the sweep.
+     * @return The best muscle mass of the slice.
+     */
+    @Benchmark
+    public double sweep() {
+        return sweep.getAsDouble();
+    }
+}